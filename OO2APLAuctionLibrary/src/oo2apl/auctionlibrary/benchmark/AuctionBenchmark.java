@@ -0,0 +1,154 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.Auction;
+import oo2apl.auctionlibrary.p2pauction.metrics.AuctioneerMetrics;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Harness that runs complete auctions by feeding synthetic participant responses straight into
+ * Auction.handleParticipantResponse, i.e. without agents, messages or a platform. Per round the responses are generated
+ * before the clock starts, so only the auction specification itself is measured. Each configuration is first run a number
+ * of warm-up iterations, so that the JIT has compiled the hot paths, before the measured iterations are run.
+ *
+ * Allocation is measured with the per-thread allocation counter of the HotSpot thread MX bean. On JVMs that do not offer
+ * this counter the allocation rate is reported as -1.
+ *
+ * The concurrent benchmark runs many Vickrey auctions in one shared auctioneer context, where several threads process the
+ * interleaved responses of all auctions, as the worker agents of an auction house would do.
+ *
+ * @author Bas Testerink
+ */
+public final class AuctionBenchmark {
+	private final static AgentID AUCTIONEER = new AgentID(new UUID(0, 0));
+	private final double minimalPrice, maximalPrice, decrementPerRound;
+	private final int quantityForSale;
+	private final long seed;
+	private AuctioneerMetrics metrics = null; // The metrics that the auctions record, null if they are not measured
+
+	/**
+	 * @param minimalPrice The minimal price of the auctions and the lowest valuation of the bidders.
+	 * @param maximalPrice The starting price of Dutch auctions and the highest valuation of the bidders.
+	 * @param decrementPerRound The clock decrement of Dutch auctions.
+	 * @param quantityForSale The amount of units that is sold per auction.
+	 * @param seed Seed for the synthetic markets.
+	 */
+	public AuctionBenchmark(final double minimalPrice, final double maximalPrice, final double decrementPerRound, final int quantityForSale, final long seed){
+		this.minimalPrice = minimalPrice;
+		this.maximalPrice = maximalPrice;
+		this.decrementPerRound = decrementPerRound;
+		this.quantityForSale = quantityForSale;
+		this.seed = seed;
+	}
+
+	/** Let the auctions that are run from now on record their metrics in the given metrics, or not if null. This measures 
+	 * the overhead of the metrics. */
+	public final void setMetrics(final AuctioneerMetrics metrics){ this.metrics = metrics; }
+
+	/** Run the given amount of warm-up and measured auctions of the given type with the given amount of bidders. */
+	public final BenchmarkResult run(final AuctionType type, final int nrOfBidders, final int warmupIterations, final int measuredIterations){
+		return run(type, "", (OrganizeAuction<Object> trigger) -> {}, nrOfBidders, warmupIterations, measuredIterations);
+	}
+
+	/** Run the given amount of warm-up and measured auctions of the given type with the given amount of bidders, where
+	 * the given configuration applies optional settings to the trigger of each auction. */
+	public final BenchmarkResult run(final AuctionType type, final String variant, final Consumer<OrganizeAuction<Object>> configuration,
+			final int nrOfBidders, final int warmupIterations, final int measuredIterations){
+		SyntheticMarket market = new SyntheticMarket(nrOfBidders, this.minimalPrice, this.maximalPrice, 1, this.seed);
+		List<AgentID> participants = market.getBidders();
+		for(int i = 0; i < warmupIterations; i++)
+			runAuction(type, configuration, market, participants, new BenchmarkResult(type, variant, nrOfBidders));
+		BenchmarkResult result = new BenchmarkResult(type, variant, nrOfBidders);
+		for(int i = 0; i < measuredIterations; i++){
+			runAuction(type, configuration, market, participants, result);
+			result.addIteration();
+		}
+		return result;
+	}
+
+	/** Run a single auction from its announcement to its final result. */
+	private final void runAuction(final AuctionType type, final Consumer<OrganizeAuction<Object>> configuration, final SyntheticMarket market, 
+			final List<AgentID> participants, final BenchmarkResult result){
+		OrganizeAuction<Object> trigger = new OrganizeAuction<>(type, new Object(), participants, this.minimalPrice, this.maximalPrice, this.decrementPerRound, this.quantityForSale);
+		configuration.accept(trigger);
+		UUID auctionID = UUID.randomUUID();
+		Auction<Object> auction = AuctioneerContext.makeAuction(trigger, auctionID);
+		if(this.metrics != null) auction.setMetrics(this.metrics);
+		AuctionAnnouncement<Object> announcement = auction.makeInitialAnnouncement(auctionID, AUCTIONEER);
+		double price = announcement.getPrice();
+		while(true){
+			// Generate the responses of this round outside of the measurement
+			List<ParticipantResponse> responses = market.makeResponses(auctionID, type, price, this.decrementPerRound);
+			int last = responses.size() - 1;
+			long allocationStart = allocatedBytes();
+			long start = System.nanoTime();
+			for(int i = 0; i < last; i++)
+				auction.handleParticipantResponse(responses.get(i));
+			long closingStart = System.nanoTime();
+			AuctionResult<?> roundResult = auction.handleParticipantResponse(responses.get(last));
+			long end = System.nanoTime();
+			long allocationEnd = allocatedBytes();
+			result.addRound(responses.size(), end - start, end - closingStart, allocationStart < 0 ? -1 : allocationEnd - allocationStart);
+			if(roundResult.getType() == ResultType.FINISHED) break;
+			price = roundResult.getPrice();
+		}
+	}
+
+	/**
+	 * Run Vickrey auctions in a shared auctioneer context where the given amount of threads process the responses of all
+	 * auctions in an interleaved order.
+	 * @return The amount of processed responses per second.
+	 */
+	public final double runConcurrent(final int nrOfAuctions, final int nrOfBidders, final int nrOfThreads) throws InterruptedException {
+		SyntheticMarket market = new SyntheticMarket(nrOfBidders, this.minimalPrice, this.maximalPrice, 1, this.seed);
+		List<AgentID> participants = market.getBidders();
+		AuctioneerContext context = new AuctioneerContext();
+		List<ParticipantResponse> responses = new ArrayList<>(nrOfAuctions * nrOfBidders);
+		for(int i = 0; i < nrOfAuctions; i++){
+			OrganizeAuction<Object> trigger = new OrganizeAuction<>(AuctionType.VICKREY, new Object(), participants, this.minimalPrice, this.maximalPrice, this.decrementPerRound, this.quantityForSale);
+			UUID auctionID = context.newAuction(trigger, AUCTIONEER).getAuctionID();
+			responses.addAll(market.makeResponses(auctionID, AuctionType.VICKREY, this.minimalPrice, this.decrementPerRound));
+		}
+		Collections.shuffle(responses, new Random(this.seed));
+		Thread[] threads = new Thread[nrOfThreads];
+		for(int t = 0; t < nrOfThreads; t++){
+			final int offset = t;
+			threads[t] = new Thread(() -> {
+				for(int i = offset; i < responses.size(); i += nrOfThreads){
+					AuctionResult<?> result = context.handleParticipantResponse(responses.get(i));
+					if(result.getType() == ResultType.FINISHED)
+						context.clearData(result.getAuctionID());
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for(Thread thread : threads) thread.start();
+		for(Thread thread : threads) thread.join();
+		return responses.size() * 1e9 / (System.nanoTime() - start);
+	}
+
+	/** Bytes allocated so far by the current thread, or -1 if this cannot be measured. */
+	private static final long allocatedBytes(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+			if(hotspotBean.isThreadAllocatedMemorySupported() && hotspotBean.isThreadAllocatedMemoryEnabled())
+				return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
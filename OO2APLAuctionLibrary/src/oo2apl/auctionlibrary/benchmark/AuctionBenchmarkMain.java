@@ -0,0 +1,61 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import oo2apl.auctionlibrary.p2pauction.metrics.AuctioneerMetrics;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Runs the auction benchmark suite for all auction types at 10, 1k, 100k and 1M bidders and prints a table with the
+ * throughput (participant responses per second), the latency per round, the latency of closing a round (moving to the
+ * next round or determining the winners) and the allocated bytes per response. Optionally the bidder counts can be given
+ * as program arguments, e.g. "10 1000". Run with a large heap (e.g. -Xmx8g) for the 1M bidder configurations. 
+ * Vickrey auctions are also run with streaming clearing and Dutch auctions with clock skipping. All types are run 
+ * again while the auctions record metrics, which shows the overhead of the metrics. 
+ * Finally the throughput of 1000 concurrent Vickrey auctions of 1000 bidders in a shared auctioneer context is printed 
+ * for an increasing amount of threads.
+ *
+ * @author Bas Testerink
+ */
+public class AuctionBenchmarkMain {
+	private final static int[] DEFAULT_BIDDER_COUNTS = {10, 1000, 100000, 1000000};
+	private final static AuctionType[] TYPES = {AuctionType.VICKREY, AuctionType.ENGLISH, AuctionType.DUTCH};
+
+	public static void main(String[] args) throws InterruptedException {
+		int[] bidderCounts = DEFAULT_BIDDER_COUNTS;
+		if(args.length > 0){
+			bidderCounts = new int[args.length];
+			for(int i = 0; i < args.length; i++)
+				bidderCounts[i] = Integer.parseInt(args[i]);
+		}
+		AuctionBenchmark benchmark = new AuctionBenchmark(20d, 120d, 1d, 10, 1);
+		System.out.println(BenchmarkResult.header());
+		for(AuctionType type : TYPES){
+			for(int nrOfBidders : bidderCounts){
+				// Keep the total amount of processed responses per configuration roughly equal
+				int iterations = Math.max(1, Math.min(50, 1000000 / nrOfBidders));
+				System.out.println(benchmark.run(type, nrOfBidders, iterations, iterations));
+			}
+		}
+		for(int nrOfBidders : bidderCounts){
+			int iterations = Math.max(1, Math.min(50, 1000000 / nrOfBidders));
+			System.out.println(benchmark.run(AuctionType.VICKREY, "streaming", (OrganizeAuction<Object> trigger) -> trigger.setStreamingClearing(), nrOfBidders, iterations, iterations));
+		}
+		for(int nrOfBidders : bidderCounts){
+			int iterations = Math.max(1, Math.min(50, 1000000 / nrOfBidders));
+			System.out.println(benchmark.run(AuctionType.DUTCH, "skipping", (OrganizeAuction<Object> trigger) -> trigger.setClockSkipping(), nrOfBidders, iterations, iterations));
+		}
+		// The same auctions while they record metrics, to compare the overhead
+		benchmark.setMetrics(new AuctioneerMetrics(() -> 0));
+		for(AuctionType type : TYPES){
+			for(int nrOfBidders : bidderCounts){
+				int iterations = Math.max(1, Math.min(50, 1000000 / nrOfBidders));
+				System.out.println(benchmark.run(type, "metrics", (OrganizeAuction<Object> trigger) -> {}, nrOfBidders, iterations, iterations));
+			}
+		}
+		benchmark.setMetrics(null);
+		System.out.println(String.format("%-8s %14s", "threads", "responses/s"));
+		for(int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads <<= 1){
+			benchmark.runConcurrent(1000, 1000, threads); // Warm-up
+			System.out.println(String.format("%-8d %14.0f", threads, benchmark.runConcurrent(1000, 1000, threads)));
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Container for the measurements of one benchmark configuration, accumulated over the measured iterations.
+ *
+ * @author Bas Testerink
+ */
+public final class BenchmarkResult {
+	private final AuctionType type;
+	private final String variant;
+	private final int nrOfBidders;
+	private int iterations, rounds;
+	private long responses, totalNanos, maxRoundNanos, closingNanos, maxClosingNanos, allocatedBytes;
+
+	/**
+	 * @param type The auction type that was benchmarked.
+	 * @param variant Short name of the optional settings of the auctions, empty for the default settings.
+	 * @param nrOfBidders The amount of bidders per auction.
+	 */
+	public BenchmarkResult(final AuctionType type, final String variant, final int nrOfBidders){
+		this.type = type;
+		this.variant = variant;
+		this.nrOfBidders = nrOfBidders;
+	}
+
+	/** Register a single round; the round time includes the closing time, which is the time spent on the response that completed the round. */
+	final void addRound(final int responses, final long roundNanos, final long closingNanos, final long allocatedBytes){
+		this.rounds++;
+		this.responses += responses;
+		this.totalNanos += roundNanos;
+		this.maxRoundNanos = Math.max(this.maxRoundNanos, roundNanos);
+		this.closingNanos += closingNanos;
+		this.maxClosingNanos = Math.max(this.maxClosingNanos, closingNanos);
+		// A negative amount means that allocation is not measurable on this JVM, which is then remembered
+		this.allocatedBytes = allocatedBytes < 0 || this.allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+	}
+
+	final void addIteration(){ this.iterations++; }
+
+	public final AuctionType getType(){ return this.type; }
+	public final String getVariant(){ return this.variant; }
+	public final int getNrOfBidders(){ return this.nrOfBidders; }
+	public final int getIterations(){ return this.iterations; }
+	/** Average amount of rounds per auction. */
+	public final double getRoundsPerAuction(){ return this.iterations == 0 ? 0 : this.rounds / (double) this.iterations; }
+	/** Processed participant responses per second. */
+	public final double getThroughput(){ return this.totalNanos == 0 ? 0 : this.responses * 1e9 / this.totalNanos; }
+	/** Average time in milliseconds to process all the responses of a round. */
+	public final double getMeanRoundMillis(){ return this.rounds == 0 ? 0 : this.totalNanos / 1e6 / this.rounds; }
+	public final double getMaxRoundMillis(){ return this.maxRoundNanos / 1e6; }
+	/** Average time in milliseconds to close a round, i.e. moving to the next round or determining the winners. */
+	public final double getMeanClosingMillis(){ return this.rounds == 0 ? 0 : this.closingNanos / 1e6 / this.rounds; }
+	public final double getMaxClosingMillis(){ return this.maxClosingNanos / 1e6; }
+	/** Average amount of allocated bytes per processed response, or a negative number if allocation could not be measured. */
+	public final double getAllocatedBytesPerResponse(){ return this.allocatedBytes < 0 || this.responses == 0 ? -1 : this.allocatedBytes / (double) this.responses; }
+
+	public final String toString(){
+		return String.format("%-20s %9d %7.1f %14.0f %12.3f %12.3f %12.3f %12.3f %12.1f",
+				this.variant.isEmpty() ? this.type.toString() : this.type + "/" + this.variant, this.nrOfBidders, getRoundsPerAuction(), getThroughput(), getMeanRoundMillis(), getMaxRoundMillis(),
+				getMeanClosingMillis(), getMaxClosingMillis(), getAllocatedBytesPerResponse());
+	}
+
+	public static final String header(){
+		return String.format("%-20s %9s %7s %14s %12s %12s %12s %12s %12s",
+				"type", "bidders", "rounds", "responses/s", "round(ms)", "maxround(ms)", "close(ms)", "maxclose(ms)", "bytes/resp");
+	}
+}
@@ -0,0 +1,172 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.codec.AuctionMessageCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.IndexedAgentIDCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.ItemCodec;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Compares the binary auction message codec with Java serialization on the size of the encoded messages and the time to
+ * encode and decode them. The messages are an announcement, a response with one bid and the final result of a Vickrey
+ * auction with the given amount of bidders (default 1000). As the triggers are not serializable, Java serialization is
+ * measured on serializable mirrors with the same fields, where an agent identifier is a UUID.
+ *
+ * @author Bas Testerink
+ */
+public class CodecBenchmark {
+	private final static int ITERATIONS = 200000;
+
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		int nrOfBidders = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		SyntheticMarket market = new SyntheticMarket(nrOfBidders, 20d, 120d, 1, 1);
+		List<AgentID> directory = new ArrayList<>(market.getBidders());
+		AgentID auctioneer = new AgentID(new UUID(0, 0));
+		directory.add(auctioneer);
+		AuctionMessageCodec<String> codec = new AuctionMessageCodec<>(ItemCodec.UTF8, new IndexedAgentIDCodec(directory));
+
+		// The messages and their mirrors
+		UUID auctionID = UUID.randomUUID();
+		OrganizeAuction<String> trigger = new OrganizeAuction<>(AuctionType.VICKREY, "container", market.getBidders(), 20d, 0d, 0d, 10);
+		AuctionAnnouncement<String> announcement = new AuctionAnnouncement<>(auctionID, auctioneer, AuctionType.VICKREY, "container", 20d, 10, 0d, 0);
+		ParticipantResponse response = market.makeResponses(auctionID, AuctionType.VICKREY, 20d, 0d).get(0);
+		List<Bid> bids = new ArrayList<>();
+		for(ParticipantResponse r : market.makeResponses(auctionID, AuctionType.VICKREY, 20d, 0d)) bids.addAll(r.getBids());
+		bids.sort(Bid.COMPARATOR);
+		List<AuctionPersonalResult> winners = new ArrayList<>();
+		for(int i = 0; i < 10 && i < bids.size(); i++) winners.add(new AuctionPersonalResult(bids.get(i), bids.get(Math.min(i + 1, bids.size() - 1)).getPrice(), 1));
+		AuctionResult<String> result = new AuctionResult<>(auctionID, ResultType.FINISHED, trigger, winners, bids, 0d, 0, 0d);
+
+		System.out.println(String.format("%-14s %12s %12s %14s %14s", "message", "codec(B)", "java(B)", "codec(ns/msg)", "java(ns/msg)"));
+		compare("announcement", codec, announcement, new MirrorAnnouncement(announcement), Math.max(1, ITERATIONS));
+		compare("response", codec, response, new MirrorResponse(response), Math.max(1, ITERATIONS));
+		compare("result", codec, result, new MirrorResult(result), Math.max(1, ITERATIONS / Math.max(1, nrOfBidders / 10)));
+	}
+
+	/** Print the size and the encoding plus decoding time of the message for both encodings. */
+	private static final void compare(final String name, final AuctionMessageCodec<String> codec, final oo2apl.agent.Trigger message,
+			final Serializable mirror, final int iterations) throws IOException, ClassNotFoundException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64 << 20);
+		for(int i = 0; i < iterations; i++){ buffer.clear(); codec.encode(message, buffer); buffer.flip(); codec.decode(buffer); } // Warm-up
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++){
+			buffer.clear();
+			codec.encode(message, buffer);
+			buffer.flip();
+			codec.decode(buffer);
+		}
+		double codecNanos = (System.nanoTime() - start) / (double) iterations;
+		buffer.clear();
+		codec.encode(message, buffer);
+		int codecBytes = buffer.position();
+
+		int javaIterations = Math.max(1, iterations / 10);
+		byte[] serialized = null;
+		for(int i = 0; i < javaIterations; i++) serialized = deserialize(serialize(mirror)); // Warm-up
+		start = System.nanoTime();
+		for(int i = 0; i < javaIterations; i++) serialized = deserialize(serialize(mirror));
+		double javaNanos = (System.nanoTime() - start) / (double) javaIterations;
+		System.out.println(String.format("%-14s %12d %12d %14.0f %14.0f", name, codecBytes, serialized.length, codecNanos, javaNanos));
+	}
+
+	private static final byte[] serialize(final Serializable object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+			out.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+
+	/** Read the object back and return the bytes, so that the decoding cannot be optimized away. */
+	private static final byte[] deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+		try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+			if(in.readObject() == null) throw new IllegalStateException();
+		}
+		return bytes;
+	}
+
+	private static final UUID mirror(final AgentID agent){ return UUID.nameUUIDFromBytes(agent.toString().getBytes()); }
+
+	private static final class MirrorBid implements Serializable {
+		private static final long serialVersionUID = 1L;
+		@SuppressWarnings("unused") private final double price;
+		@SuppressWarnings("unused") private final int quantity;
+		@SuppressWarnings("unused") private final UUID bidder;
+		private MirrorBid(final Bid bid){ this.price = bid.getPrice(); this.quantity = bid.getQuantity(); this.bidder = mirror(bid.getBidder()); }
+	}
+
+	private static final ArrayList<MirrorBid> mirror(final List<Bid> bids){
+		ArrayList<MirrorBid> result = new ArrayList<>(bids.size());
+		for(Bid bid : bids) result.add(new MirrorBid(bid));
+		return result;
+	}
+
+	private static final class MirrorAnnouncement implements Serializable {
+		private static final long serialVersionUID = 1L;
+		@SuppressWarnings("unused") private final UUID auctionID, auctioneer;
+		@SuppressWarnings("unused") private final AuctionType type;
+		@SuppressWarnings("unused") private final String item;
+		@SuppressWarnings("unused") private final double price, decrement;
+		@SuppressWarnings("unused") private final int quantity, round;
+		private MirrorAnnouncement(final AuctionAnnouncement<String> a){
+			this.auctionID = a.getAuctionID(); this.auctioneer = mirror(a.getAuctioneer()); this.type = a.getType(); this.item = a.getItemForSale();
+			this.price = a.getPrice(); this.decrement = a.getDecrement(); this.quantity = a.getQuantityAvailable(); this.round = a.getRound();
+		}
+	}
+
+	private static final class MirrorResponse implements Serializable {
+		private static final long serialVersionUID = 1L;
+		@SuppressWarnings("unused") private final UUID auctionID, bidder;
+		@SuppressWarnings("unused") private final ArrayList<MirrorBid> bids;
+		@SuppressWarnings("unused") private final int round;
+		private MirrorResponse(final ParticipantResponse r){
+			this.auctionID = r.getAuctionID(); this.bidder = mirror(r.getBidder()); this.bids = mirror(r.getBids()); this.round = r.getRound();
+		}
+	}
+
+	private static final class MirrorResult implements Serializable {
+		private static final long serialVersionUID = 1L;
+		@SuppressWarnings("unused") private final UUID auctionID;
+		@SuppressWarnings("unused") private final ResultType type;
+		@SuppressWarnings("unused") private final AuctionType auctionType;
+		@SuppressWarnings("unused") private final String item;
+		@SuppressWarnings("unused") private final ArrayList<UUID> participants;
+		@SuppressWarnings("unused") private final ArrayList<MirrorBid> winningBids, bids;
+		@SuppressWarnings("unused") private final double[] winningPrices;
+		@SuppressWarnings("unused") private final int[] winningQuantities;
+		@SuppressWarnings("unused") private final double price, decrement;
+		@SuppressWarnings("unused") private final int quantity;
+		private MirrorResult(final AuctionResult<String> r){
+			this.auctionID = r.getAuctionID(); this.type = r.getType(); this.auctionType = r.getTrigger().getType(); this.item = r.getTrigger().getObjectForSale();
+			this.participants = new ArrayList<>();
+			for(AgentID participant : r.getTrigger().getParticipants()) this.participants.add(mirror(participant));
+			this.winningBids = new ArrayList<>();
+			this.winningPrices = new double[r.getPersonalResults().size()];
+			this.winningQuantities = new int[r.getPersonalResults().size()];
+			for(int i = 0; i < this.winningPrices.length; i++){
+				AuctionPersonalResult winner = r.getPersonalResults().get(i);
+				this.winningBids.add(new MirrorBid(winner.getBid()));
+				this.winningPrices[i] = winner.getPrice();
+				this.winningQuantities[i] = winner.getQuantity();
+			}
+			this.bids = mirror(r.getBids()); this.price = r.getPrice(); this.decrement = r.getDecrement(); this.quantity = r.getQuantityAvailable();
+		}
+	}
+}
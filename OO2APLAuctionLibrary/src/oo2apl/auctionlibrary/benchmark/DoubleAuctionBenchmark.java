@@ -0,0 +1,75 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.DoubleAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrderFill;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Measures the throughput of a continuous double auction as it is run by an auctioneer: every order arrives in its own
+ * response and the fills are taken after each response. The orders (default 1000000) come from the given amount of
+ * traders (default 1000) and have limit prices around 100 on a tick of 0.01, so that about half of them trade. The
+ * traded quantity is checked against the fills and the book must not be crossed at the end.
+ *
+ * @author Bas Testerink
+ */
+public class DoubleAuctionBenchmark {
+
+	public static void main(String[] args){
+		int nrOfOrders = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int nrOfTraders = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		List<AgentID> traders = new ArrayList<>(nrOfTraders);
+		for(int i = 0; i < nrOfTraders; i++) traders.add(new AgentID(new UUID(1, i)));
+		List<ParticipantResponse> responses = makeResponses(nrOfOrders, traders, new Random(42));
+
+		run(responses, traders); // Warm-up
+		long start = System.nanoTime();
+		long[] totals = run(responses, traders);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d orders of %d traders in %.3f s: %.0f orders/s, %d fills, traded %d, resting %d",
+				nrOfOrders, nrOfTraders, seconds, nrOfOrders / seconds, totals[0], totals[1], totals[2]));
+	}
+
+	/** Submit the responses to a new double auction, produces the amount of fills, the traded quantity and the amount of resting orders. */
+	private static final long[] run(final List<ParticipantResponse> responses, final List<AgentID> traders){
+		UUID auctionID = UUID.randomUUID();
+		DoubleAuction<String> auction = new DoubleAuction<>(new OrganizeAuction<>(AuctionType.DOUBLE, "share", traders, 0d, 0d, 0d, 0), auctionID);
+		long fills = 0, traded = 0;
+		for(ParticipantResponse response : responses){
+			auction.handleParticipantResponse(response);
+			for(OrderFill fill : auction.takeFills()){
+				fills++;
+				traded += fill.getQuantity();
+			}
+		}
+		AuctionResult<?> result = auction.close();
+		if(result.getSummary().getTotalQuantity() != traded)
+			throw new IllegalStateException("The fills do not add up to the traded quantity.");
+		if(result.getSummary().getBestPrice() >= result.getSummary().getPriceAtCutOff())
+			throw new IllegalStateException("The book is crossed.");
+		return new long[]{ fills, traded, result.getBids().size() };
+	}
+
+	private static final List<ParticipantResponse> makeResponses(final int nrOfOrders, final List<AgentID> traders, final Random random){
+		List<ParticipantResponse> responses = new ArrayList<>(nrOfOrders);
+		for(int i = 0; i < nrOfOrders; i++){
+			AgentID trader = traders.get(random.nextInt(traders.size()));
+			boolean buy = random.nextBoolean();
+			double price = Math.round(10000 + random.nextGaussian() * 100 + (buy ? -50 : 50)) / 100d;
+			int quantity = 1 + random.nextInt(10);
+			Bid order = buy ? LimitOrder.buy(price, quantity, trader) : LimitOrder.sell(price, quantity, trader);
+			responses.add(new ParticipantResponse(null, trader, Collections.singletonList(order)));
+		}
+		return responses;
+	}
+}
@@ -0,0 +1,60 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.util.Random;
+
+import oo2apl.auctionlibrary.engine.AuctionEngine;
+import oo2apl.auctionlibrary.engine.EngineAuction;
+import oo2apl.auctionlibrary.engine.EngineAuction.Status;
+/**
+ * Measures the throughput of the AuctionEngine when it is called in a tight loop, as in a batch job. The given amount of
+ * auctions (default 300) with the given amount of bidders (default 1000) with valuations between 20 and 120 are run
+ * alternately as Vickrey, English and Dutch auctions of 10 units, where each bidder bids its valuation in a Vickrey
+ * auction, outbids the current price by 1 in an English auction and accepts a price in a Dutch auction as long as it is
+ * within its valuation.
+ *
+ * @author Bas Testerink
+ */
+public class EngineBenchmark {
+
+	public static void main(String[] args){
+		int nrOfAuctions = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int nrOfBidders = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		Random random = new Random(42);
+		double[] valuations = new double[nrOfBidders];
+		int[] participants = new int[nrOfBidders];
+		for(int i = 0; i < nrOfBidders; i++){
+			valuations[i] = 20 + random.nextDouble() * 100;
+			participants[i] = i;
+		}
+		for(int i = 0; i < 2; i++){ // The first run is the warm-up
+			long responses = 0;
+			long start = System.nanoTime();
+			for(int j = 0; j < nrOfAuctions; j++){
+				EngineAuction auction = j % 3 == 0 ? AuctionEngine.openVickrey(participants, 20d, 10) : (
+						j % 3 == 1 ? AuctionEngine.openEnglish(participants, 20d, 10) :
+						AuctionEngine.openDutch(participants, 20d, 120d, 2d, 10));
+				responses += run(auction, j % 3, valuations);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%d auctions of %d bidders in %.2f s: %d responses (%.0f responses/s)",
+					nrOfAuctions, nrOfBidders, seconds, responses, responses / seconds));
+		}
+	}
+
+	/** Run the auction of the given type (0 Vickrey, 1 English, 2 Dutch) to the end and produce the amount of responses. */
+	private static final long run(final EngineAuction auction, final int type, final double[] valuations){
+		long responses = 0;
+		while(!auction.isFinished()){
+			double price = auction.getPrice();
+			for(int bidder : auction.getRespondents()){
+				Status status;
+				if(type == 0) status = auction.bid(bidder, valuations[bidder], 1);
+				else if(type == 1) status = valuations[bidder] > price + 1 ? auction.bid(bidder, price + 1, 1) : auction.abstain(bidder);
+				else status = valuations[bidder] >= price ? auction.bid(bidder, price, 1) : auction.abstain(bidder);
+				responses++;
+				if(status != Status.WAITING) break;
+			}
+		}
+		return responses;
+	}
+}
@@ -0,0 +1,88 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
+import oo2apl.auctionlibrary.p2pauction.codec.IndexedAgentIDCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.ItemCodec;
+import oo2apl.auctionlibrary.p2pauction.journal.AuctionJournal;
+import oo2apl.auctionlibrary.p2pauction.metrics.LatencyHistogram;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Measures what journaling adds to the processing of a participant response, and how long the recovery of the journaled
+ * auctions takes. The given amount of Vickrey auctions (default 1000) with the given amount of bidders (default 1000) are
+ * run in an auctioneer context without and with a journal in a temporary directory, and the latency of each call of
+ * handleParticipantResponse is measured. The last response of every tenth auction is withheld, so that these auctions
+ * are still in progress when the journal is recovered into a new context.
+ *
+ * @author Bas Testerink
+ */
+public class JournalBenchmark {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int nrOfAuctions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int nrOfBidders = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		SyntheticMarket market = new SyntheticMarket(nrOfBidders, 20d, 120d, 1, 1);
+		Path directory = Files.createTempDirectory("auction-journal");
+		System.out.println(String.format("%-10s %12s %10s %10s %10s %10s", "journal", "responses", "mean(us)", "p50(us)", "p99(us)", "max(us)"));
+		for(int i = 0; i < 2; i++){ // The first round is the warm-up
+			print("no", run(new AuctioneerContext(), market, nrOfAuctions));
+			try(AuctionJournal<String> journal = new AuctionJournal<>(directory, ItemCodec.UTF8, new IndexedAgentIDCodec(market.getBidders())).open()){
+				AuctioneerContext context = new AuctioneerContext();
+				context.enableJournal(journal);
+				print("yes", run(context, market, nrOfAuctions));
+				journal.sync();
+			}
+		}
+
+		// Recover the auctions that are in progress, as after a restart of the auctioneer
+		try(AuctionJournal<String> journal = new AuctionJournal<>(directory, ItemCodec.UTF8, new IndexedAgentIDCodec(market.getBidders())).open()){
+			long start = System.nanoTime();
+			List<UUID> recovered = new AuctioneerContext().enableJournal(journal);
+			System.out.println(String.format("Recovered %d auctions in %.1f ms", recovered.size(), (System.nanoTime() - start) / 1e6));
+		}
+		delete(directory);
+	}
+
+	/** Run the auctions in the context and produce the latencies of handling the responses. */
+	private static final LatencyHistogram run(final AuctioneerContext context, final SyntheticMarket market, final int nrOfAuctions){
+		LatencyHistogram latencies = new LatencyHistogram();
+		AgentID auctioneer = new AgentID(new UUID(0, 0));
+		for(int i = 0; i < nrOfAuctions; i++){
+			OrganizeAuction<String> trigger = new OrganizeAuction<>(AuctionType.VICKREY, "container", market.getBidders(), 20d, 0d, 0d, 10);
+			AuctionAnnouncement<String> announcement = context.newAuction(trigger, auctioneer);
+			List<ParticipantResponse> responses = market.makeResponses(announcement.getAuctionID(), AuctionType.VICKREY, 20d, 0d);
+			if(i % 10 == 0) responses = new ArrayList<>(responses.subList(0, responses.size() - 1)); // Stays in progress
+			for(ParticipantResponse response : responses){
+				long start = System.nanoTime();
+				AuctionResult<?> result = context.handleParticipantResponse(response);
+				latencies.record(System.nanoTime() - start);
+				if(result.getType() == ResultType.FINISHED) context.clearData(announcement.getAuctionID());
+			}
+		}
+		return latencies;
+	}
+
+	private static final void print(final String journal, final LatencyHistogram latencies){
+		System.out.println(String.format("%-10s %12d %10.3f %10.3f %10.3f %10.3f", journal, latencies.getCount(), latencies.getMeanMillis() * 1000,
+				latencies.getPercentileMillis(0.5) * 1000, latencies.getPercentileMillis(0.99) * 1000, latencies.getMaxMillis() * 1000));
+	}
+
+	private static final void delete(final Path directory) throws IOException {
+		List<Path> files = new ArrayList<>();
+		Files.list(directory).forEach(files::add);
+		for(Path file : files) Files.delete(file);
+		Files.delete(directory);
+	}
+}
@@ -0,0 +1,57 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.BuyerContext;
+import oo2apl.auctionlibrary.p2pauction.Demand;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+import oo2apl.auctionlibrary.simulation.MarketSimulator;
+import oo2apl.auctionlibrary.simulation.MessageDelay;
+/**
+ * Simulates a day of market activity with the MarketSimulator on one thread and prints how long it took. The given amount
+ * of bidders (default 1000000) each want one or two units with a valuation between 20 and 120. The given amount of
+ * auctions (default 2000) are spread evenly over 24 virtual hours, alternately Vickrey, English and Dutch auctions of
+ * 10 units, each with a window of the given amount of consecutive bidders (default 5000) as participants. Messages take
+ * 1ms plus an exponential delay with a mean of 20ms, and every round has a deadline of 500ms.
+ *
+ * @author Bas Testerink
+ */
+public class SimulationBenchmark {
+	private final static AuctionType[] TYPES = {AuctionType.VICKREY, AuctionType.ENGLISH, AuctionType.DUTCH};
+	private final static double DAY_MILLIS = 24 * 60 * 60 * 1000d;
+
+	public static void main(String[] args){
+		int nrOfBidders = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int nrOfAuctions = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int nrOfParticipants = Math.min(nrOfBidders, args.length > 2 ? Integer.parseInt(args[2]) : 5000);
+		long start = System.nanoTime();
+		MarketSimulator simulator = new MarketSimulator(42).setMessageDelay(MessageDelay.exponential(1, 20));
+		Random random = new Random(42);
+		for(int i = 0; i < nrOfBidders; i++){
+			BuyerContext bidder = new BuyerContext();
+			double valuation = 20 + random.nextDouble() * 100;
+			bidder.putDemand(String.class, new Demand<String>((String item) -> valuation, 1 + random.nextInt(2)));
+			simulator.addBidder(bidder);
+		}
+		AgentID auctioneer = simulator.addAuctioneer();
+		for(int i = 0; i < nrOfAuctions; i++){
+			int first = random.nextInt(nrOfBidders - nrOfParticipants + 1);
+			List<AgentID> participants = new ArrayList<>(simulator.getBidders().subList(first, first + nrOfParticipants));
+			OrganizeAuction<String> trigger = new OrganizeAuction<>(TYPES[i % TYPES.length], "container", participants, 20d, 120d, 2d, 10);
+			simulator.schedule(i * DAY_MILLIS / nrOfAuctions, auctioneer, trigger.setRoundDeadline(500));
+		}
+		double setup = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		simulator.run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d bidders, %d auctions of %d participants: setup %.1f s, simulated %.1f virtual hours in %.1f s",
+				nrOfBidders, nrOfAuctions, nrOfParticipants, setup, simulator.getTime() / 3600000, seconds));
+		System.out.println(String.format("%d events (%.0f events/s), %d messages, %d auctions finished",
+				simulator.getProcessedEvents(), simulator.getProcessedEvents() / seconds, simulator.getMessages(), simulator.getFinishedAuctions()));
+	}
+}
@@ -0,0 +1,77 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * A synthetic market is a fixed population of bidders with a valuation each. It produces the participant responses
+ * that these bidders would send for a given auction type and announced price, so that auctions can be driven directly
+ * without agents or a platform. The bidders follow the same rules as the demo: Vickrey bidders bid their valuation,
+ * English bidders creep up in increments of 10% of their valuation and Dutch bidders accept as soon as the clock
+ * drops below their valuation. Dutch bidders that do not accept declare their valuation as their acceptance price, so
+ * that Dutch auctions can skip their clock.
+ *
+ * @author Bas Testerink
+ */
+public final class SyntheticMarket {
+	private final AgentID[] bidders;
+	private final double[] valuations;
+	private final int desiredQuantity;
+
+	/**
+	 * @param nrOfBidders The amount of bidders in the market.
+	 * @param minimalValuation The lowest valuation that a bidder can have.
+	 * @param maximalValuation The highest valuation that a bidder can have.
+	 * @param desiredQuantity The amount of units that each bidder wants.
+	 * @param seed Seed for the valuations such that runs are reproducible.
+	 */
+	public SyntheticMarket(final int nrOfBidders, final double minimalValuation, final double maximalValuation, final int desiredQuantity, final long seed){
+		Random random = new Random(seed);
+		this.bidders = new AgentID[nrOfBidders];
+		this.valuations = new double[nrOfBidders];
+		this.desiredQuantity = desiredQuantity;
+		for(int i = 0; i < nrOfBidders; i++){
+			this.bidders[i] = new AgentID(new UUID(seed, i));
+			// Valuations are rounded to whole units so that ties on price occur, as they do with discrete price ladders
+			this.valuations[i] = Math.floor(minimalValuation + random.nextDouble() * (maximalValuation - minimalValuation));
+		}
+	}
+
+	public final int getNrOfBidders(){ return this.bidders.length; }
+
+	/** The bidders as a list, to be used as the participants of an auction. */
+	public final List<AgentID> getBidders(){
+		List<AgentID> result = new ArrayList<>(this.bidders.length);
+		Collections.addAll(result, this.bidders);
+		return result;
+	}
+
+	/** Produce the responses of all bidders for an announcement of the given auction with the given (current) price. */
+	public final List<ParticipantResponse> makeResponses(final UUID auctionID, final AuctionType type, final double price, final double decrement){
+		List<ParticipantResponse> responses = new ArrayList<>(this.bidders.length);
+		for(int i = 0; i < this.bidders.length; i++){
+			List<Bid> bids = new ArrayList<>(1);
+			double valuation = this.valuations[i];
+			if(type == AuctionType.VICKREY){
+				bids.add(new Bid(valuation, this.desiredQuantity, this.bidders[i]));
+			} else if(type == AuctionType.ENGLISH){
+				double ratio = price / valuation;
+				if(ratio <= 1.0) // Next increment of 10% of the valuation, see BookTraderAgent
+					bids.add(new Bid((Math.ceil(ratio * 10) / 10) * valuation, this.desiredQuantity, this.bidders[i]));
+			} else if(type == AuctionType.DUTCH){
+				boolean accept = price <= valuation && (price + decrement) > valuation;
+				if(accept) bids.add(new Bid(price, this.desiredQuantity, this.bidders[i]));
+				else if(price > valuation) bids.add(new Bid(valuation, 0, this.bidders[i])); // Declares its acceptance price
+			}
+			responses.add(new ParticipantResponse(auctionID, this.bidders[i], bids));
+		}
+		return responses;
+	}
+}
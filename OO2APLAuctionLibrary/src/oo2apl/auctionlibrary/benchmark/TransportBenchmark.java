@@ -0,0 +1,91 @@
+package oo2apl.auctionlibrary.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.codec.IndexedAgentIDCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.ItemCodec;
+import oo2apl.auctionlibrary.p2pauction.transport.AuctionGateway;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Measures the throughput of participant responses that bidders on one node send to an auctioneer on another node
+ * through the auction gateways. Without arguments both nodes run in this JVM on localhost. To use two JVMs, first
+ * start the auctioneer node with "auctioneer [port] [messages]" and then the bidder node with
+ * "bidders [auctioneerHost] [port] [messages]". Both nodes build the same synthetic market of 1000 bidders, so that
+ * their agent directories are the same.
+ *
+ * @author Bas Testerink
+ */
+public class TransportBenchmark {
+	private final static int NR_OF_BIDDERS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		SyntheticMarket market = new SyntheticMarket(NR_OF_BIDDERS, 20d, 120d, 1, 1);
+		AgentID auctioneer = new AgentID(new UUID(0, 0));
+		List<AgentID> directory = new ArrayList<>(market.getBidders());
+		directory.add(auctioneer);
+		String role = args.length > 0 ? args[0] : "local";
+		if(role.equals("auctioneer")){
+			int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+			int messages = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+			try(AuctionGateway<String> node = new AuctionGateway<>(new InetSocketAddress(port), ItemCodec.UTF8, new IndexedAgentIDCodec(directory)).start()){
+				receive(node, auctioneer, messages);
+			}
+		} else if(role.equals("bidders")){
+			InetSocketAddress auctioneerNode = new InetSocketAddress(args.length > 1 ? args[1] : "localhost", args.length > 2 ? Integer.parseInt(args[2]) : 7070);
+			int messages = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+			try(AuctionGateway<String> node = new AuctionGateway<>(new InetSocketAddress(0), ItemCodec.UTF8, new IndexedAgentIDCodec(directory)).start()){
+				node.addRoute(auctioneer, auctioneerNode);
+				send(node, market, auctioneer, messages);
+				Thread.sleep(1000); // Let the I/O thread write the last batches
+				printBatching(node);
+			}
+		} else {
+			int messages = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+			try(AuctionGateway<String> auctioneerNode = new AuctionGateway<>(new InetSocketAddress("localhost", 0), ItemCodec.UTF8, new IndexedAgentIDCodec(directory)).start();
+					AuctionGateway<String> bidderNode = new AuctionGateway<>(new InetSocketAddress("localhost", 0), ItemCodec.UTF8, new IndexedAgentIDCodec(directory)).start()){
+				bidderNode.addRoute(auctioneer, auctioneerNode.getLocalAddress());
+				Thread sender = new Thread(() -> send(bidderNode, market, auctioneer, messages));
+				sender.start();
+				receive(auctioneerNode, auctioneer, messages);
+				sender.join();
+				printBatching(bidderNode);
+			}
+		}
+	}
+
+	/** Send the given amount of responses of the market's bidders to the auctioneer. */
+	private static final void send(final AuctionGateway<String> node, final SyntheticMarket market, final AgentID auctioneer, final int messages){
+		List<ParticipantResponse> responses = market.makeResponses(UUID.randomUUID(), AuctionType.VICKREY, 20d, 0d);
+		long start = System.nanoTime();
+		for(int i = 0; i < messages; i++)
+			node.send(auctioneer, responses.get(i % responses.size()));
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("sent %d responses in %.3f s (%.0f/s)", messages, seconds, messages / seconds));
+	}
+
+	/** Wait for the given amount of messages for the auctioneer and print the throughput. */
+	private static final void receive(final AuctionGateway<String> node, final AgentID auctioneer, final int messages) throws InterruptedException {
+		CountDownLatch received = new CountDownLatch(messages);
+		long[] start = {0};
+		node.registerLocalAgent(auctioneer, (Trigger message) -> {
+			if(start[0] == 0) start[0] = System.nanoTime();
+			received.countDown();
+		});
+		received.await();
+		double seconds = (System.nanoTime() - start[0]) / 1e9;
+		System.out.println(String.format("received %d responses in %.3f s (%.0f/s)", messages, seconds, messages / seconds));
+	}
+
+	/** Print how many socket writes the sending node needed for its messages. */
+	private static final void printBatching(final AuctionGateway<String> node){
+		System.out.println(String.format("%d messages in %d writes (%.1f messages per write), %d dropped", node.getSentMessages(), node.getWrites(),
+				node.getSentMessages() / (double) Math.max(1, node.getWrites()), node.getDroppedMessages()));
+	}
+}
@@ -0,0 +1,55 @@
+package oo2apl.auctionlibrary.engine;
+
+import java.util.Arrays;
+/**
+ * The outcome of clearing an auction: the winning bids in the order of the ranking of the clearing, which are always the
+ * first bids of that ranking, with per winning bid its bidder, the price per unit that it pays and the quantity that it
+ * won. The quantity that was not sold is kept as well.
+ *
+ * @author Bas Testerink
+ */
+public final class Allocation {
+	private int[] bidders;
+	private double[] prices;
+	private int[] quantities;
+	private int size;
+	private int quantityAvailable;
+
+	Allocation(final int quantityForSale){
+		this.bidders = new int[4];
+		this.prices = new double[4];
+		this.quantities = new int[4];
+		this.size = 0;
+		this.quantityAvailable = quantityForSale;
+	}
+
+	/** Assign the next bid of the ranking, which pays the given price per unit. Produces false if the quantity for sale
+	 * was already assigned, in which case the bid does not win. */
+	final boolean assign(final int bidder, final double price, final int quantity){
+		if(this.quantityAvailable <= 0) return false;
+		if(this.size == this.bidders.length){
+			int capacity = this.size << 1;
+			this.bidders = Arrays.copyOf(this.bidders, capacity);
+			this.prices = Arrays.copyOf(this.prices, capacity);
+			this.quantities = Arrays.copyOf(this.quantities, capacity);
+		}
+		// The bid receives its quantity, unless less than that is left
+		this.bidders[this.size] = bidder;
+		this.prices[this.size] = price;
+		this.quantities[this.size] = Math.min(this.quantityAvailable, quantity);
+		this.size++;
+		this.quantityAvailable -= quantity;
+		return true;
+	}
+
+	/** The number of winning bids. */
+	public final int getNrOfWinners(){ return this.size; }
+	/** The bidder of the winning bid with the given index. */
+	public final int getBidder(final int index){ return this.bidders[index]; }
+	/** The price per unit that the winning bid with the given index pays. */
+	public final double getPrice(final int index){ return this.prices[index]; }
+	/** The quantity that the winning bid with the given index won. */
+	public final int getQuantity(final int index){ return this.quantities[index]; }
+	/** The quantity that was not sold. */
+	public final int getQuantityAvailable(){ return Math.max(0, this.quantityAvailable); }
+}
@@ -0,0 +1,39 @@
+package oo2apl.auctionlibrary.engine;
+/**
+ * Runs auctions for code that is not an agent, such as a service that receives orders over HTTP or a batch job. Bidders
+ * are plain integer handles (0, 1, 2, ...) that the caller maps to its own bidders, bids are submitted as a price and a
+ * quantity, and the results are read per winner as handle, price and quantity. The auctions clear with the same rules
+ * as the auctions of agents (VickreyClearing, EnglishClearing and DutchClearing), which the auction specifications of
+ * the AuctioneerContext adapt to triggers and agents. The engine itself needs no agents, platform, messages or triggers,
+ * and does not create objects per bid.
+ *
+ * Equal bids are ordered on their handles, the lower handle first, where agents are ordered on their names. The optional
+ * settings of an OrganizeAuction, such as streaming clearing or proxy bidding, are not available: a Vickrey auction of the
+ * engine always clears while the bids come in.
+ *
+ * @author Bas Testerink
+ */
+public final class AuctionEngine {
+
+	private AuctionEngine(){}
+
+	/** Open a sealed-bid second-price auction of the given quantity among the bidders with the given handles. It finishes
+	 * when every bidder bid or abstained, or when it is closed. */
+	public static final EngineAuction openVickrey(final int[] participants, final double minimalPrice, final int quantity){
+		return new EngineAuction(participants, new VickreyClearing(minimalPrice, quantity, BidderOrder.HANDLES, true, false, 0), null, null);
+	}
+
+	/** Open an ascending auction of the given quantity among the bidders with the given handles. The first bids must be at
+	 * least the minimal price, later bids must raise the bids of their bidder (see EnglishBook.submit). The auction finishes
+	 * after a round in which no bidder raised its bids. */
+	public static final EngineAuction openEnglish(final int[] participants, final double minimalPrice, final int quantity){
+		return new EngineAuction(participants, null, new EnglishClearing(new EnglishBook(BidderOrder.HANDLES), minimalPrice, quantity, false), null);
+	}
+
+	/** Open a descending auction of the given quantity among the bidders with the given handles, of which the price starts
+	 * at the maximal price and decreases with the decrement every round until the minimal price. */
+	public static final EngineAuction openDutch(final int[] participants, final double minimalPrice, final double maximalPrice,
+			final double decrement, final int quantity){
+		return new EngineAuction(participants, null, null, new DutchClearing(minimalPrice, maximalPrice, decrement, quantity, BidderOrder.HANDLES, false));
+	}
+}
@@ -0,0 +1,82 @@
+package oo2apl.auctionlibrary.engine;
+
+import java.util.Arrays;
+/**
+ * A growable bid book that stores bids as parallel primitive arrays of prices, quantities and bidders, rather than as 
+ * separate bid objects. This keeps large sealed-bid auctions compact on the heap. The agent auctions only materialize 
+ * Bid objects when a report has to be made, see bookkeeping.BidderRegistry. 
+ * 
+ * Ordering the book is done on primitives as well: the price and a packed tie-break key of quantity and bidder, see 
+ * BidderOrder.getTieBreakKey, decide the order of an index array that is merge sorted. With the order of a bidder 
+ * registry the resulting order is the same as sorting the materialized bids with Bid.COMPARATOR. 
+ * 
+ * @author Bas Testerink
+ */
+public final class BidBook {
+	private double[] prices;
+	private int[] quantities;
+	private int[] bidders;
+	private int size;
+	
+	/** @param initialCapacity The amount of bids that can be stored before the arrays have to grow. */
+	public BidBook(final int initialCapacity){
+		int capacity = Math.max(initialCapacity, 4);
+		this.prices = new double[capacity];
+		this.quantities = new int[capacity];
+		this.bidders = new int[capacity];
+		this.size = 0;
+	}
+	
+	/** Add a bid to the book. */
+	public final void add(final double price, final int quantity, final int bidder){
+		if(this.size == this.prices.length){
+			int capacity = this.size + (this.size >> 1); // Grow by 50%
+			this.prices = Arrays.copyOf(this.prices, capacity);
+			this.quantities = Arrays.copyOf(this.quantities, capacity);
+			this.bidders = Arrays.copyOf(this.bidders, capacity);
+		}
+		this.prices[this.size] = price;
+		this.quantities[this.size] = quantity;
+		this.bidders[this.size] = bidder;
+		this.size++;
+	}
+	
+	// Getters
+	public final int size(){ return this.size; }
+	public final double getPrice(final int index){ return this.prices[index]; }
+	public final int getQuantity(final int index){ return this.quantities[index]; }
+	public final int getBidder(final int index){ return this.bidders[index]; }
+	
+	/** Produce the indices of the bids from index from (inclusive) to index to (exclusive), ordered from high to low on 
+	 * price, then quantity and then the given bidder order. */
+	public final int[] sortedIndices(final int from, final int to, final BidderOrder order){
+		int length = to - from;
+		long[] tieBreakKeys = new long[length]; // Indexed relative to from
+		int[] indices = new int[length];
+		for(int i = 0; i < length; i++){
+			indices[i] = from + i;
+			tieBreakKeys[i] = order.getTieBreakKey(this.quantities[from + i], this.bidders[from + i]);
+		}
+		// Bottom-up merge sort, which is stable such that identical bids keep their insertion order
+		int[] buffer = new int[length];
+		for(int width = 1; width < length; width <<= 1){
+			for(int left = 0; left < length - width; left += width << 1){
+				int middle = left + width, right = Math.min(left + (width << 1), length);
+				int i = left, j = middle, k = left;
+				while(i < middle && j < right)
+					buffer[k++] = comesAfter(indices[i], indices[j], from, tieBreakKeys) ? indices[j++] : indices[i++];
+				while(i < middle) buffer[k++] = indices[i++];
+				while(j < right) buffer[k++] = indices[j++];
+				System.arraycopy(buffer, left, indices, left, right - left);
+			}
+		}
+		return indices;
+	}
+	
+	/** Whether the bid at index a comes strictly after the bid at index b. */
+	private final boolean comesAfter(final int a, final int b, final int from, final long[] tieBreakKeys){
+		if(this.prices[a] < this.prices[b]) return true;
+		else if(this.prices[a] > this.prices[b]) return false;
+		else return tieBreakKeys[a - from] < tieBreakKeys[b - from];
+	}
+}
@@ -0,0 +1,34 @@
+package oo2apl.auctionlibrary.engine;
+/**
+ * The order of the bids of different bidders that tie on price and quantity. The books and clearings of the engine refer
+ * to bidders with a plain int and leave the tie-break to a bidder order, so they do not need to know what a bidder is.
+ * The agent auctions order bidders on the names of their agents (see bookkeeping.BidderRegistry), the auctions of an
+ * AuctionEngine on their handles.
+ *
+ * @author Bas Testerink
+ */
+public interface BidderOrder {
+	/** The bidder of bids without a bidder (dummy bids), which come after the bids of all bidders. */
+	public static final int NO_BIDDER = -1;
+
+	/** Compares the bidders of two bids that tie on price and quantity. Returns a negative number if the bid of bidder a
+	 * comes first. */
+	public int compare(int a, int b);
+	/** Produce a key that orders bids with equal prices: a higher key comes first. The quantity is packed in the high
+	 * 32 bits and the rank of the bidder in the low 32 bits, where bids without a bidder get the lowest rank. */
+	public long getTieBreakKey(int quantity, int bidder);
+
+	/** Order for bidder handles: the lower handle comes first. */
+	public static final BidderOrder HANDLES = new BidderOrder(){
+		public int compare(final int a, final int b){
+			if(a == b) return 0;
+			else if(a == NO_BIDDER) return 1;
+			else if(b == NO_BIDDER) return -1;
+			else return Integer.compare(a, b);
+		}
+		public long getTieBreakKey(final int quantity, final int bidder){
+			int rank = bidder == NO_BIDDER ? 0 : Integer.MAX_VALUE - bidder;
+			return ((long) quantity << 32) | (rank & 0xFFFFFFFFL);
+		}
+	};
+}
@@ -0,0 +1,117 @@
+package oo2apl.auctionlibrary.engine;
+/**
+ * The rules of a Dutch auction. The auction has a current price that starts at the maximal price and drops with the
+ * decrement every round. A bidder accepts the current price for a quantity, which is then no longer available. The auction
+ * ends when no units are left or when another round would drop the price below the minimal price. The units are then
+ * assigned to the accepted bids from high to low, where each winning bid pays the price that it accepted. The accepted
+ * bids are kept in a bid book, the bids of the current round are the ones that were added since the start of the round.
+ *
+ * With clock skipping each response declares the highest price at which its bidder may accept: the highest price of its
+ * bids, where accepting bids count as the current price, or no price if the response has no bids. If every respondent
+ * declared, then the clock drops past all prices above the highest declaration, which are exactly the rounds in which
+ * nobody would have accepted.
+ *
+ * @author Bas Testerink
+ */
+public final class DutchClearing {
+	private final double minimalPrice, decrement;
+	private final int quantity;
+	private final BidderOrder order;
+	private final boolean clockSkipping;
+	private final BidBook acceptedBids;
+	private int[] ranking; // Indices of the accepted bids from high to low, null until the auction is cleared
+	private int roundStart; // Index in the accepted bids of the first bid of the current round
+	private int quantityAvailable;
+	private double currentPrice;
+	private double bestPrice, priceAtCutOff; // Price of the first accepted bid and of the bid that covered the quantity
+	private double highestDeclaration; // For clock skipping, the highest acceptance price declared this round
+	private int declarations; // For clock skipping, the amount of responses this round
+
+	/**
+	 * @param minimalPrice The price below which the clock does not drop.
+	 * @param maximalPrice The price of the first round.
+	 * @param decrement The amount by which the price drops per round.
+	 * @param quantity The quantity for sale.
+	 * @param order The order of the bidders, used for tie-breaking.
+	 * @param clockSkipping Whether the clock skips the prices at which nobody accepts, see above.
+	 */
+	public DutchClearing(final double minimalPrice, final double maximalPrice, final double decrement, final int quantity,
+			final BidderOrder order, final boolean clockSkipping){
+		this.minimalPrice = minimalPrice;
+		this.decrement = decrement;
+		this.quantity = quantity;
+		this.order = order;
+		this.clockSkipping = clockSkipping;
+		this.acceptedBids = new BidBook(16);
+		this.roundStart = 0;
+		this.quantityAvailable = quantity;
+		this.currentPrice = maximalPrice;
+		this.bestPrice = Double.NaN;
+		this.priceAtCutOff = Double.NaN;
+		this.highestDeclaration = Double.NEGATIVE_INFINITY;
+		this.declarations = 0;
+	}
+
+	/** Count a response of this round, of which the bids are placed with bid. */
+	public final void respond(){ this.declarations++; }
+
+	/** Place a bid of a response. A bid with a quantity accepts the current price for that quantity, a bid without a
+	 * quantity declares the price at which its bidder would accept. */
+	public final void bid(final int bidder, final double price, final int quantity){
+		this.highestDeclaration = Math.max(this.highestDeclaration, quantity > 0 ? this.currentPrice : price);
+		if(quantity > 0){
+			// The current price is used, whatever the price of the bid
+			this.acceptedBids.add(this.currentPrice, quantity, bidder);
+			this.quantityAvailable -= quantity;
+			// The clock only goes down, hence the first accepted price is the best and the price where the quantity was covered stays fixed
+			if(Double.isNaN(this.bestPrice)) this.bestPrice = this.currentPrice;
+			if(this.quantityAvailable <= 0 && Double.isNaN(this.priceAtCutOff)) this.priceAtCutOff = this.currentPrice;
+		}
+	}
+
+	/** The auction is finished if there are no more units to sell or if another round would drop the price below minimum. */
+	public final boolean isFinished(){
+		return this.quantityAvailable <= 0 || (this.currentPrice - this.decrement) < this.minimalPrice;
+	}
+
+	/** Move to the next round by lowering the price, given the amount of respondents of the round that closed.
+	 * @return The index in the accepted bids of the first bid of the round that closed. */
+	public final int nextRound(final int nrOfRespondents){
+		this.currentPrice -= this.decrement;
+		if(this.clockSkipping && this.decrement > 0 && this.declarations == nrOfRespondents){
+			// Nobody accepts above the highest declaration. The clock is lowered step by step, so that it reaches exactly the
+			// same prices as it would over the skipped rounds.
+			while(this.currentPrice > this.highestDeclaration && this.currentPrice - this.decrement >= this.minimalPrice)
+				this.currentPrice -= this.decrement;
+		}
+		this.highestDeclaration = Double.NEGATIVE_INFINITY;
+		this.declarations = 0;
+		int closedRoundStart = this.roundStart;
+		this.roundStart = this.acceptedBids.size();
+		return closedRoundStart;
+	}
+
+	/** Assign the units to the accepted bids from high to low, each winning bid pays the price that it accepted. The ranked 
+	 * bids are then available with getRanking. */
+	public final Allocation clear(){
+		this.ranking = this.acceptedBids.sortedIndices(0, this.acceptedBids.size(), this.order);
+		Allocation allocation = new Allocation(this.quantity);
+		for(int index : this.ranking)
+			if(!allocation.assign(this.acceptedBids.getBidder(index), this.acceptedBids.getPrice(index), this.acceptedBids.getQuantity(index))) break;
+		return allocation;
+	}
+
+	/** The indices of the accepted bids from high to low after the auction was cleared, with the winners first. */
+	public final int[] getRanking(){ return this.ranking; }
+	/** The accepted bids in the order in which they were accepted. */
+	public final BidBook getAcceptedBids(){ return this.acceptedBids; }
+	public final double getCurrentPrice(){ return this.currentPrice; }
+	/** The quantity that was not yet accepted. */
+	public final int getQuantityAvailable(){ return this.quantityAvailable; }
+	/** The price of the first accepted bid, or Double.NaN if no bid was accepted. */
+	public final double getBestPrice(){ return this.bestPrice; }
+	/** The price at which the quantity for sale was covered, or Double.NaN if it is not covered. */
+	public final double getPriceAtCutOff(){ return this.priceAtCutOff; }
+	public final int getQuantity(){ return this.quantity; }
+	public final BidderOrder getOrder(){ return this.order; }
+}
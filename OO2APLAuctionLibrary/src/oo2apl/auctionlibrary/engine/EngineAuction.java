@@ -0,0 +1,172 @@
+package oo2apl.auctionlibrary.engine;
+
+import java.util.Arrays;
+/**
+ * An auction of the AuctionEngine. Every participant responds once per round with bid or abstain. The call that
+ * completes the round clears it and produces NEW_ROUND if the auction continues with a new price (see getPrice), or
+ * FINISHED if the winners are known (see getNrOfWinners). Rounds with missing responses are closed with closeRound, e.g.
+ * when the caller's deadline passed. A response of a handle that is not a participant, a second response of a participant
+ * in the same round and any call after the auction finished are REJECTED and have no effect.
+ *
+ * In a Vickrey auction the price of a bid is the sealed bid per unit, in an English auction a bid above the current price
+ * stays in, and in a Dutch auction a bid accepts the current price. The calls on an auction are processed one at a time,
+ * different auctions can be used in parallel.
+ *
+ * @author Bas Testerink
+ */
+public final class EngineAuction {
+	/** The outcome of a call: the round awaits more responses, a new round started, the auction finished, or the call was
+	 * rejected. */
+	public static enum Status { WAITING, NEW_ROUND, FINISHED, REJECTED }
+	private final int[] participants; // The handles in ascending order, the index of a handle is its slot
+	private final VickreyClearing vickrey; // The clearing of the auction, the others are null
+	private final EnglishClearing english;
+	private final DutchClearing dutch;
+	private final boolean[] responded; // Per slot whether the participant responded this round
+	private int responses;
+	private int round;
+	private Allocation allocation; // Null until the auction finished
+	// The bids of an English response, reused between responses
+	private double[] prices;
+	private int[] quantities, bidders;
+
+	EngineAuction(final int[] participants, final VickreyClearing vickrey, final EnglishClearing english, final DutchClearing dutch){
+		this.participants = participants.clone();
+		Arrays.sort(this.participants);
+		for(int i = 0; i < this.participants.length; i++){
+			if(this.participants[i] < 0) throw new IllegalArgumentException("A bidder handle cannot be negative.");
+			if(i > 0 && this.participants[i] == this.participants[i - 1]) throw new IllegalArgumentException("Bidder handle "+this.participants[i]+" occurs twice.");
+		}
+		this.vickrey = vickrey;
+		this.english = english;
+		this.dutch = dutch;
+		this.responded = new boolean[this.participants.length];
+		this.responses = 0;
+		this.round = 0;
+		this.prices = new double[1];
+		this.quantities = new int[1];
+		this.bidders = new int[1];
+	}
+
+	/** Submit the response of the bidder for the current round with one bid of the given price per unit and quantity. */
+	public final synchronized Status bid(final int bidder, final double price, final int quantity){
+		int slot = getSlot(bidder);
+		if(slot < 0) return Status.REJECTED;
+		if(this.vickrey != null) this.vickrey.bid(bidder, price, quantity);
+		else if(this.english != null){
+			this.prices[0] = price;
+			this.quantities[0] = quantity;
+			this.bidders[0] = bidder;
+			this.english.bid(slot, this.prices, this.quantities, this.bidders, 1);
+		} else {
+			this.dutch.respond();
+			this.dutch.bid(bidder, price, quantity);
+		}
+		return responded(slot);
+	}
+
+	/** Submit the response of the bidder for the current round with a bid per pair of price and quantity. */
+	public final synchronized Status bid(final int bidder, final double[] prices, final int[] quantities){
+		if(prices.length != quantities.length) throw new IllegalArgumentException("Every bid needs a price and a quantity.");
+		int slot = getSlot(bidder);
+		if(slot < 0) return Status.REJECTED;
+		if(this.english != null){
+			if(this.bidders.length < prices.length) this.bidders = new int[prices.length];
+			Arrays.fill(this.bidders, 0, prices.length, bidder);
+			this.english.bid(slot, prices, quantities, this.bidders, prices.length);
+		} else {
+			if(this.dutch != null) this.dutch.respond();
+			for(int i = 0; i < prices.length; i++){
+				if(this.vickrey != null) this.vickrey.bid(bidder, prices[i], quantities[i]);
+				else this.dutch.bid(bidder, prices[i], quantities[i]);
+			}
+		}
+		return responded(slot);
+	}
+
+	/** Submit the response of the bidder for the current round without bids. */
+	public final synchronized Status abstain(final int bidder){
+		int slot = getSlot(bidder);
+		if(slot < 0) return Status.REJECTED;
+		if(this.dutch != null) this.dutch.respond();
+		return responded(slot);
+	}
+
+	/** Close the current round with the responses so far, the missing bidders abstain. */
+	public final synchronized Status closeRound(){
+		if(this.allocation != null) return Status.REJECTED;
+		return nextRound();
+	}
+
+	/** Finish the auction now, with the bids so far. */
+	public final synchronized Status close(){
+		if(this.allocation != null) return Status.REJECTED;
+		finish();
+		return Status.FINISHED;
+	}
+
+	/** The handles of the bidders that are asked to respond in the current round, in ascending order. */
+	public final int[] getRespondents(){ return this.participants.clone(); }
+
+	public final synchronized int getRound(){ return this.round; }
+	public final synchronized boolean isFinished(){ return this.allocation != null; }
+
+	/** The price of the current round, which is the price to beat in an English auction and the offered price in a Dutch
+	 * auction. */
+	public final synchronized double getPrice(){
+		if(this.english != null) return this.english.getCurrentPrice();
+		else if(this.dutch != null) return this.dutch.getCurrentPrice();
+		else return Double.NaN; // The bids of a Vickrey auction are sealed
+	}
+
+	/** The quantity that is available in the current round, or that remained unsold if the auction finished. */
+	public final synchronized int getQuantityAvailable(){
+		if(this.allocation != null) return this.allocation.getQuantityAvailable();
+		else if(this.english != null) return this.english.getQuantity();
+		else if(this.dutch != null) return this.dutch.getQuantityAvailable();
+		else return this.vickrey.getQuantity();
+	}
+
+	/** The number of winning bids, which is 0 until the auction finished. */
+	public final synchronized int getNrOfWinners(){ return this.allocation == null ? 0 : this.allocation.getNrOfWinners(); }
+	/** The handle of the bidder of the winning bid with the given index. */
+	public final synchronized int getWinner(final int index){ return this.allocation.getBidder(index); }
+	/** The price per unit that the bidder of the winning bid with the given index pays. */
+	public final synchronized double getWinningPrice(final int index){ return this.allocation.getPrice(index); }
+	/** The quantity that the bidder of the winning bid with the given index won. */
+	public final synchronized int getWonQuantity(final int index){ return this.allocation.getQuantity(index); }
+
+	/** The slot of the bidder if it may respond now, otherwise -1. */
+	private final int getSlot(final int bidder){
+		if(this.allocation != null) return -1;
+		int slot = Arrays.binarySearch(this.participants, bidder);
+		return slot < 0 || this.responded[slot] ? -1 : slot;
+	}
+
+	/** Count the response of the participant, the round is closed when all participants responded. */
+	private final Status responded(final int slot){
+		this.responded[slot] = true;
+		this.responses++;
+		return this.responses == this.participants.length ? nextRound() : Status.WAITING;
+	}
+
+	/** Close the current round and finish the auction or move to the next round. */
+	private final Status nextRound(){
+		Arrays.fill(this.responded, false);
+		this.responses = 0;
+		this.round++;
+		if(this.vickrey != null || (this.english != null && this.english.isFinished()) || (this.dutch != null && this.dutch.isFinished())){
+			finish();
+			return Status.FINISHED;
+		}
+		if(this.english != null) this.english.nextRound();
+		else this.dutch.nextRound(this.participants.length);
+		return Status.NEW_ROUND;
+	}
+
+	private final void finish(){
+		if(this.vickrey != null) this.allocation = this.vickrey.clear();
+		else if(this.english != null) this.allocation = this.english.clear();
+		else this.allocation = this.dutch.clear();
+	}
+}
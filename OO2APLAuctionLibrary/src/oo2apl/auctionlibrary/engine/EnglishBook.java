@@ -0,0 +1,255 @@
+package oo2apl.auctionlibrary.engine;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+/**
+ * The order book of an English auction: the current bids of every submitter, ordered from high to low on price, then
+ * quantity and then the bidder order. Submitters and bidders are plain ints. A submitter is the one that places the bids,
+ * which is their bidder except when a relay forwards the bids of its shard. Submitters must be dense (0, 1, 2, ...), as
+ * the book keeps the bids per submitter in an array.
+ *
+ * When a submitter replaces its bids, only those bids are removed from and added to the ordering, which costs O(k log N)
+ * for k bids of the submitter and N bids in the book. Questions about the top of the book, such as the price at which a
+ * quantity is covered, only walk the prefix of the ordering that is needed to answer them. Bids that are identical (same
+ * price, quantity and bidder) are kept apart by their submitter and by their position among the identical bids of that
+ * submitter.
+ *
+ * The bids of a submitter are numbered from high to low by their position. For each position the book keeps the index
+ * of the bid in the arrays that were submitted, so that the caller can find back the bid that it submitted.
+ *
+ * @author Bas Testerink
+ */
+public final class EnglishBook {
+	private static final Entry[] NO_ENTRIES = new Entry[0];
+	/** All bids from high to low. */
+	private final TreeSet<Entry> ordering;
+	/** The current bids per submitter, null if the submitter never placed bids. */
+	private Submission[] submissions;
+	private final BidderOrder order;
+	private long totalQuantity; // Summed quantity of all bids in the book
+
+	/** @param order The order of the bidders, used for tie-breaking. */
+	public EnglishBook(final BidderOrder order){
+		this.order = order;
+		this.ordering = new TreeSet<>(this::compare);
+		this.submissions = new Submission[16];
+	}
+
+	/**
+	 * Apply the bidding rules of an English auction to new bids of the submitter. An English auction requires a monotonous
+	 * increase of what a submitter is bidding: the new bids replace the previous bids if they are as many bids, bid on at
+	 * least as many units, do not bid below the lowest price of the previous bids and differ in price or quantity from the
+	 * previous bids. Otherwise the new bids are ignored. The first bids of a submitter are accepted if their price is above
+	 * the current price, the other bids are dropped.
+	 * @param count The amount of bids in the arrays.
+	 * @return Whether bids were accepted.
+	 */
+	public final boolean submit(final int owner, final double[] prices, final int[] quantities, final int[] bidders, final int count,
+			final double currentPrice){
+		Submission previous = owner < this.submissions.length ? this.submissions[owner] : null;
+		if(previous != null && previous.entries.length > 0){
+			// A submitter cannot bid less units than with its previous bids
+			int previousQuantity = 0, newQuantity = 0;
+			for(Entry entry : previous.entries) previousQuantity += entry.quantity;
+			for(int i = 0; i < count; i++) newQuantity += quantities[i];
+			// The lowest price cannot be lower than the lowest price of the previous bids
+			double previousLowestPrice = previous.entries[previous.entries.length - 1].price;
+			boolean illegal = false;
+			for(int i = 0; i < count; i++) illegal |= prices[i] < previousLowestPrice;
+			if(newQuantity >= previousQuantity && !illegal && count == previous.entries.length){
+				int[] sorted = sort(prices, quantities, bidders, count, Double.NEGATIVE_INFINITY);
+				// Check whether these are not exactly the same bids as before
+				boolean same = true;
+				for(int i = 0; i < count; i++)
+					same &= prices[sorted[i]] == previous.entries[i].price && quantities[sorted[i]] == previous.entries[i].quantity;
+				if(!same){
+					replace(owner, prices, quantities, bidders, sorted);
+					return true;
+				}
+			}
+			return false;
+		} else {
+			// The first bids must be higher than the current price
+			int[] sorted = sort(prices, quantities, bidders, count, currentPrice);
+			replace(owner, prices, quantities, bidders, sorted);
+			return sorted.length > 0;
+		}
+	}
+
+	/** Replace the bids of the submitter with the new bids, which must be ordered from high to low. */
+	public final void replace(final int owner, final double[] prices, final int[] quantities, final int[] bidders, final int count){
+		int[] positions = new int[count];
+		for(int i = 0; i < count; i++) positions[i] = i;
+		replace(owner, prices, quantities, bidders, positions);
+	}
+
+	/** The amount of current bids of the submitter. */
+	public final int getNrOfBids(final int owner){
+		Submission submission = owner < this.submissions.length ? this.submissions[owner] : null;
+		return submission == null ? 0 : submission.entries.length;
+	}
+
+	/** The index in the submitted arrays of the bid of the submitter at the given position. */
+	public final int getOrigin(final int owner, final int position){ return this.submissions[owner].origins[position]; }
+
+	/** The amount of bids in the book. */
+	public final int size(){ return this.ordering.size(); }
+
+	/** The summed quantity of all bids in the book. */
+	public final long getTotalQuantity(){ return this.totalQuantity; }
+
+	/** The highest price in the book, or Double.NaN if the book is empty. */
+	public final double getBestPrice(){ return this.ordering.isEmpty() ? Double.NaN : this.ordering.first().price; }
+
+	/**
+	 * Walk the bids from high to low and return the price of the bid at which the given quantity is covered, i.e. the
+	 * price of the first bid where the summed quantity of it and all higher bids reaches the quantity. Returns
+	 * Double.NaN if all bids together do not cover the quantity.
+	 */
+	public final double getPriceAtQuantity(final int quantity){
+		int available = quantity;
+		for(Entry entry : this.ordering){
+			available -= entry.quantity;
+			if(available <= 0) return entry.price;
+		}
+		return Double.NaN;
+	}
+
+	/** Put the submitter and position of the bids from high to low in the arrays, up to and including the bid at which
+	 * the given quantity is covered, or all bids if they do not cover it. The arrays must be as long as the book.
+	 * @return The amount of bids that were put in the arrays. */
+	public final int rank(final int quantity, final int[] owners, final int[] positions){
+		int size = 0;
+		int available = quantity;
+		for(Entry entry : this.ordering){
+			if(available <= 0) break;
+			owners[size] = entry.owner;
+			positions[size++] = entry.position;
+			available -= entry.quantity;
+		}
+		return size;
+	}
+
+	/** Produce the submitters of a bid that does not receive its full quantity when the given quantity is assigned to the
+	 * bids from high to low, in the order of their highest such bid. */
+	public final int[] getOutbidSubmitters(final int quantity){
+		boolean[] outbid = new boolean[this.submissions.length];
+		int[] owners = new int[this.submissions.length];
+		int size = 0;
+		int available = quantity;
+		for(Entry entry : this.ordering){
+			if(available < entry.quantity && !outbid[entry.owner]){
+				outbid[entry.owner] = true;
+				owners[size++] = entry.owner;
+			}
+			available -= Math.min(available, entry.quantity);
+		}
+		return Arrays.copyOf(owners, size);
+	}
+
+	/** Whether some bid does not receive its full quantity when the given quantity is assigned to the bids from high to low. */
+	public final boolean hasOutbidSubmitters(final int quantity){
+		int available = quantity;
+		for(Entry entry : this.ordering){
+			if(available < entry.quantity) return true;
+			available -= entry.quantity;
+		}
+		return false;
+	}
+
+	/** Assign the given quantity to the bids from high to low, where every winning bid pays its own price. */
+	final Allocation allocate(final int quantity){
+		Allocation allocation = new Allocation(quantity);
+		for(Entry entry : this.ordering)
+			if(!allocation.assign(entry.bidder, entry.price, entry.quantity)) break;
+		return allocation;
+	}
+
+	/** Replace the bids of the submitter with the bids at the given indices of the arrays, which are ordered from high to low. */
+	private final void replace(final int owner, final double[] prices, final int[] quantities, final int[] bidders, final int[] sorted){
+		if(owner >= this.submissions.length) this.submissions = Arrays.copyOf(this.submissions, Math.max(this.submissions.length << 1, owner + 1));
+		Submission previous = this.submissions[owner];
+		if(previous != null)
+			for(Entry entry : previous.entries){
+				this.ordering.remove(entry);
+				this.totalQuantity -= entry.quantity;
+			}
+		Entry[] entries = sorted.length == 0 ? NO_ENTRIES : new Entry[sorted.length];
+		for(int i = 0; i < entries.length; i++){
+			int index = sorted[i];
+			// Count how many identical bids precede this one, as the bids are sorted these are the directly preceding bids
+			int duplicate = i > 0 && isIdentical(entries[i - 1], prices[index], quantities[index], bidders[index]) ? entries[i - 1].duplicate + 1 : 0;
+			entries[i] = new Entry(prices[index], quantities[index], bidders[index], owner, duplicate, i);
+			this.ordering.add(entries[i]);
+			this.totalQuantity += quantities[index];
+		}
+		this.submissions[owner] = new Submission(entries, sorted);
+	}
+
+	/** Produce the indices of the bids with a price above the given price, ordered from high to low. The order is stable,
+	 * so bids that tie completely keep the order in which they were submitted. */
+	private final int[] sort(final double[] prices, final int[] quantities, final int[] bidders, final int count, final double abovePrice){
+		int[] sorted = new int[count];
+		int size = 0;
+		for(int i = 0; i < count; i++){
+			if(prices[i] <= abovePrice) continue;
+			// Insertion sort, as a submitter places few bids
+			int j = size++;
+			while(j > 0 && comesAfter(sorted[j - 1], i, prices, quantities, bidders)){
+				sorted[j] = sorted[j - 1];
+				j--;
+			}
+			sorted[j] = i;
+		}
+		return size == count ? sorted : Arrays.copyOf(sorted, size);
+	}
+
+	/** Whether the bid at index a comes strictly after the bid at index b. */
+	private final boolean comesAfter(final int a, final int b, final double[] prices, final int[] quantities, final int[] bidders){
+		if(prices[a] != prices[b]) return prices[a] < prices[b];
+		else if(quantities[a] != quantities[b]) return quantities[a] < quantities[b];
+		else return bidders[a] != bidders[b] && this.order.compare(bidders[a], bidders[b]) > 0;
+	}
+
+	private static final boolean isIdentical(final Entry entry, final double price, final int quantity, final int bidder){
+		return entry.price == price && entry.quantity == quantity && entry.bidder == bidder;
+	}
+
+	/** Order from high to low on price, quantity and bidder. Identical bids are then ordered on the submitter and their
+	 * position, which does not affect the order of distinguishable bids. */
+	private final int compare(final Entry a, final Entry b){
+		if(a.price > b.price) return -1;
+		else if(a.price < b.price) return 1;
+		else if(a.quantity > b.quantity) return -1;
+		else if(a.quantity < b.quantity) return 1;
+		else if(a.bidder != b.bidder) return this.order.compare(a.bidder, b.bidder);
+		else if(a.owner != b.owner) return Integer.compare(a.owner, b.owner);
+		else return Integer.compare(a.duplicate, b.duplicate);
+	}
+
+	/** A bid in the ordering together with its submitter and its position among the bids of the submitter. */
+	private static final class Entry {
+		private final double price;
+		private final int quantity, bidder, owner, duplicate, position;
+
+		private Entry(final double price, final int quantity, final int bidder, final int owner, final int duplicate, final int position){
+			this.price = price;
+			this.quantity = quantity;
+			this.bidder = bidder;
+			this.owner = owner;
+			this.duplicate = duplicate;
+			this.position = position;
+		}
+	}
+
+	/** The bids that a submitter placed last, and the index of each bid in the submitted arrays. */
+	private static final class Submission {
+		private final Entry[] entries;
+		private final int[] origins;
+
+		private Submission(final Entry[] entries, final int[] origins){
+			this.entries = entries;
+			this.origins = origins;
+		}
+	}
+}
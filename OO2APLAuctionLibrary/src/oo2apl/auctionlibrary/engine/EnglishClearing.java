@@ -0,0 +1,70 @@
+package oo2apl.auctionlibrary.engine;
+/**
+ * The rules of an English auction. The auction has a current price that bidders push higher with bids in an English
+ * book (see EnglishBook.submit for the bidding rules). A round in which no bids changed the book ends the auction, and
+ * the units are then assigned to the bids from high to low, where each winning bid pays its own price. After each other
+ * round the current price becomes the price of the bid at which the quantity for sale is covered, if it is covered, so
+ * that outbidding that price ensures at least some units if nobody else changes bids. The current price starts just below
+ * the minimal price, so the first bids must at least bid the minimal price.
+ *
+ * With proxy bidding the bids are the maximum prices up to which the auctioneer bids on behalf of the bidders. The
+ * auction then also ends when no bid is outbid, as only the outbid bidders can still change the outcome.
+ *
+ * @author Bas Testerink
+ */
+public final class EnglishClearing {
+	private final EnglishBook book;
+	private final int quantity;
+	private final boolean proxyBidding;
+	private double currentPrice;
+	private int activity; // The amount of changes of the book this round
+
+	/**
+	 * @param book The book in which the bids are placed.
+	 * @param minimalPrice The lowest price at which units are sold.
+	 * @param quantity The quantity for sale.
+	 * @param proxyBidding Whether the bids are proxies, see above.
+	 */
+	public EnglishClearing(final EnglishBook book, final double minimalPrice, final int quantity, final boolean proxyBidding){
+		this.book = book;
+		this.quantity = quantity;
+		this.proxyBidding = proxyBidding;
+		this.currentPrice = minimalPrice - 1;
+		this.activity = 0;
+	}
+
+	/** Submit the bids of the submitter at the current price, see EnglishBook.submit. Produces whether they were accepted. */
+	public final boolean bid(final int owner, final double[] prices, final int[] quantities, final int[] bidders, final int count){
+		boolean accepted = this.book.submit(owner, prices, quantities, bidders, count, this.currentPrice);
+		if(accepted) this.activity++;
+		return accepted;
+	}
+
+	/** Record changes of the book this round that were made directly in the book, e.g. bids that a relay forwards. */
+	public final void addActivity(final int activity){ this.activity += activity; }
+
+	/** The auction is finished if the book did not change this round, because that indicates that nobody wants to bid on
+	 * more units or is willing to increase its price, or if no proxy is outbid. */
+	public final boolean isFinished(){
+		if(this.activity == 0) return true;
+		return this.proxyBidding && !this.book.hasOutbidSubmitters(this.quantity);
+	}
+
+	/** Move to the next round: raise the current price to the price at which the quantity is covered. Produces that price,
+	 * or Double.NaN if the bids do not cover the quantity. */
+	public final double nextRound(){
+		double priceAtQuantity = this.book.getPriceAtQuantity(this.quantity);
+		if(!Double.isNaN(priceAtQuantity))
+			this.currentPrice = priceAtQuantity;
+		this.activity = 0;
+		return priceAtQuantity;
+	}
+
+	/** Assign the units to the bids from high to low, each winning bid pays its own price. */
+	public final Allocation clear(){ return this.book.allocate(this.quantity); }
+
+	public final EnglishBook getBook(){ return this.book; }
+	public final double getCurrentPrice(){ return this.currentPrice; }
+	public final int getQuantity(){ return this.quantity; }
+	public final boolean isProxyBidding(){ return this.proxyBidding; }
+}
@@ -0,0 +1,129 @@
+package oo2apl.auctionlibrary.engine;
+
+import java.util.Arrays;
+/**
+ * A bounded heap that keeps only the best bids that are needed to clear a sealed-bid auction: the bids that together 
+ * cover the quantity for sale, plus the next bid which determines the price of the last winner. Bids are offered one 
+ * by one and the worst bid is evicted as soon as it can no longer be a winner or the price-setting runner-up. Hence 
+ * memory stays proportional to the amount of bids needed to cover the quantity, and offering N bids costs O(N log k) 
+ * for k kept bids. 
+ * 
+ * The heap is a binary min-heap on the bid order (price, quantity and then the bidder order), so the root is the worst 
+ * kept bid. Bids are stored as primitives. 
+ * 
+ * @author Bas Testerink
+ */
+public final class TopBidHeap {
+	private final int quantityForSale;
+	private final BidderOrder order;
+	private double[] prices;
+	private int[] quantities;
+	private int[] bidders;
+	private int size;
+	private long totalQuantity; // Summed quantity of the kept bids
+	
+	/**
+	 * @param quantityForSale The quantity that the kept bids must cover.
+	 * @param order The order of the bidders, used for tie-breaking.
+	 */
+	public TopBidHeap(final int quantityForSale, final BidderOrder order){
+		this.quantityForSale = quantityForSale;
+		this.order = order;
+		this.prices = new double[16];
+		this.quantities = new int[16];
+		this.bidders = new int[16];
+		this.size = 0;
+		this.totalQuantity = 0;
+	}
+	
+	/** Offer a bid to the heap. The bid is kept if it belongs to the best bids, possibly evicting bids that are no longer needed. */
+	public final void offer(final double price, final int quantity, final int bidder){
+		if(this.size == this.prices.length){
+			int capacity = this.size << 1;
+			this.prices = Arrays.copyOf(this.prices, capacity);
+			this.quantities = Arrays.copyOf(this.quantities, capacity);
+			this.bidders = Arrays.copyOf(this.bidders, capacity);
+		}
+		set(this.size, price, quantity, bidder);
+		siftUp(this.size++);
+		this.totalQuantity += quantity;
+		// The worst bid is not needed if the bids without it and the second worst bid already cover the quantity. The 
+		// second worst bid is then the runner-up or worse. 
+		while(this.size > 2 && this.totalQuantity - this.quantities[0] - this.quantities[secondWorst()] >= this.quantityForSale)
+			removeWorst();
+	}
+	
+	/** The amount of kept bids. */
+	public final int size(){ return this.size; }
+	
+	/** Put the kept bids in the book from best to worst. The heap is empty afterwards. */
+	public final void drainTo(final BidBook book){
+		int count = this.size;
+		double[] prices = new double[count];
+		int[] quantities = new int[count], bidders = new int[count];
+		for(int i = count - 1; i >= 0; i--){
+			prices[i] = this.prices[0];
+			quantities[i] = this.quantities[0];
+			bidders[i] = this.bidders[0];
+			removeWorst();
+		}
+		for(int i = 0; i < count; i++)
+			book.add(prices[i], quantities[i], bidders[i]);
+	}
+	
+	/** The index of the second worst bid, i.e. the worst child of the root. Requires at least two bids. */
+	private final int secondWorst(){
+		return this.size > 2 && isWorse(2, 1) ? 2 : 1;
+	}
+	
+	private final void removeWorst(){
+		this.totalQuantity -= this.quantities[0];
+		this.size--;
+		if(this.size > 0){
+			set(0, this.prices[this.size], this.quantities[this.size], this.bidders[this.size]);
+			siftDown(0);
+		}
+	}
+	
+	private final void siftUp(int index){
+		while(index > 0){
+			int parent = (index - 1) >> 1;
+			if(!isWorse(index, parent)) break;
+			swap(index, parent);
+			index = parent;
+		}
+	}
+	
+	private final void siftDown(int index){
+		while(true){
+			int child = (index << 1) + 1;
+			if(child >= this.size) break;
+			if(child + 1 < this.size && isWorse(child + 1, child)) child++;
+			if(!isWorse(child, index)) break;
+			swap(index, child);
+			index = child;
+		}
+	}
+	
+	/** Whether the bid at index a comes strictly after the bid at index b in the bid order. */
+	private final boolean isWorse(final int a, final int b){
+		if(this.prices[a] < this.prices[b]) return true;
+		else if(this.prices[a] > this.prices[b]) return false;
+		else if(this.quantities[a] < this.quantities[b]) return true;
+		else if(this.quantities[a] > this.quantities[b]) return false;
+		else return this.bidders[a] != this.bidders[b] && this.order.compare(this.bidders[a], this.bidders[b]) > 0;
+	}
+	
+	private final void set(final int index, final double price, final int quantity, final int bidder){
+		this.prices[index] = price;
+		this.quantities[index] = quantity;
+		this.bidders[index] = bidder;
+	}
+	
+	private final void swap(final int a, final int b){
+		double price = this.prices[a];
+		int quantity = this.quantities[a], bidder = this.bidders[a];
+		set(a, this.prices[b], this.quantities[b], this.bidders[b]);
+		set(b, price, quantity, bidder);
+	}
+}
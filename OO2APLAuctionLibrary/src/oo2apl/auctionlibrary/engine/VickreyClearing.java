@@ -0,0 +1,73 @@
+package oo2apl.auctionlibrary.engine;
+/**
+ * The rules of a Vickrey auction, which is a sealed-bid auction of one round. Bids below the minimal price are dropped.
+ * The bids are ranked from high to low and, until the quantity for sale is assigned, each bid wins and pays the price of
+ * the bid below it, or its own price if there is no bid below it.
+ *
+ * With streaming clearing only the best bids are kept in a bounded heap as they arrive (see TopBidHeap), which is all
+ * that clearing needs. The complete book of bids is then only kept if it is asked for.
+ *
+ * @author Bas Testerink
+ */
+public final class VickreyClearing {
+	private final double minimalPrice;
+	private final int quantity;
+	private final BidderOrder order;
+	private final BidBook bids; // All bids, null if they are not retained
+	private final TopBidHeap topBids; // The best bids in case of streaming clearing, otherwise null
+	private BidBook ranking; // The ranked bids, null until the auction is cleared
+
+	/**
+	 * @param minimalPrice The lowest price that a bid must bid.
+	 * @param quantity The quantity for sale.
+	 * @param order The order of the bidders, used for tie-breaking.
+	 * @param streaming Whether only the best bids are kept.
+	 * @param retainingAllBids Whether all bids are kept in case of streaming clearing.
+	 * @param expectedBids The amount of bids for which room is made up front.
+	 */
+	public VickreyClearing(final double minimalPrice, final int quantity, final BidderOrder order, final boolean streaming,
+			final boolean retainingAllBids, final int expectedBids){
+		this.minimalPrice = minimalPrice;
+		this.quantity = quantity;
+		this.order = order;
+		this.topBids = streaming ? new TopBidHeap(quantity, order) : null;
+		this.bids = !streaming || retainingAllBids ? new BidBook(expectedBids) : null;
+	}
+
+	/** Place a bid, which is dropped if it is below the minimal price. */
+	public final void bid(final int bidder, final double price, final int quantity){
+		if(price >= this.minimalPrice){
+			if(this.bids != null) this.bids.add(price, quantity, bidder);
+			if(this.topBids != null) this.topBids.offer(price, quantity, bidder);
+		}
+	}
+
+	/** Rank the bids and assign the units. The ranked bids are then available with getRanking. */
+	public final Allocation clear(){
+		if(this.topBids != null){ // In case of streaming clearing the winners are among the kept top bids
+			this.ranking = new BidBook(this.topBids.size());
+			this.topBids.drainTo(this.ranking);
+		} else {
+			int[] sorted = this.bids.sortedIndices(0, this.bids.size(), this.order);
+			this.ranking = new BidBook(sorted.length);
+			for(int index : sorted)
+				this.ranking.add(this.bids.getPrice(index), this.bids.getQuantity(index), this.bids.getBidder(index));
+		}
+		Allocation allocation = new Allocation(this.quantity);
+		for(int i = 0; i < this.ranking.size(); i++){
+			// The bid's price is overwritten if there is a next bid
+			double paidPrice = i + 1 < this.ranking.size() ? this.ranking.getPrice(i + 1) : this.ranking.getPrice(i);
+			if(!allocation.assign(this.ranking.getBidder(i), paidPrice, this.ranking.getQuantity(i))) break;
+		}
+		return allocation;
+	}
+
+	/** The bids from high to low after the auction was cleared, with the winners first. In case of streaming clearing
+	 * these are only the best bids. */
+	public final BidBook getRanking(){ return this.ranking; }
+
+	/** All bids in the order in which they were placed, or null in case of streaming clearing without retaining them. */
+	public final BidBook getBids(){ return this.bids; }
+	public final int getQuantity(){ return this.quantity; }
+	public final BidderOrder getOrder(){ return this.order; }
+}
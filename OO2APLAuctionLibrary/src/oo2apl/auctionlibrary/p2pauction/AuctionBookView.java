@@ -0,0 +1,57 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+/**
+ * Reconstructs the current bids of an auction from the round reports of the auctioneer. The report of a new round only 
+ * contains the bids that changed in that round: the bids that were added and the bids that they replaced. Applying the 
+ * reports in order keeps the view up to date, whilst the full sorted list of bids is only built when it is asked for. 
+ * The final report of an auction contains all the bids and replaces the view. 
+ * 
+ * Usage: create a view per auction and apply each AuctionResult in the round update plan, see 
+ * TraderCapability.organizeAuction. 
+ * 
+ * @author Bas Testerink
+ */
+public final class AuctionBookView {
+	// The reports refer to the same bid objects when bids are replaced, hence bids are kept by identity 
+	private final Set<Bid> bids;
+	private RoundSummary summary;
+	
+	public AuctionBookView(){
+		this.bids = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.summary = null;
+	}
+	
+	/** Apply the report of a round, or the final report, of the auction. */
+	public final AuctionBookView apply(final AuctionResult<?> result){
+		if(result.getType() == ResultType.FINISHED){
+			this.bids.clear();
+			this.bids.addAll(result.getBids());
+		} else if(result.getType() == ResultType.NEWROUND){
+			this.bids.removeAll(result.getRemovedBids());
+			this.bids.addAll(result.getBids());
+		}
+		if(result.getSummary() != null) this.summary = result.getSummary();
+		return this;
+	}
+	
+	/** The current bids from high to low. */
+	public final List<Bid> getSortedBids(){
+		List<Bid> result = new ArrayList<>(this.bids);
+		result.sort(Bid.COMPARATOR);
+		return result;
+	}
+	
+	/** The amount of current bids. */
+	public final int size(){ return this.bids.size(); }
+	
+	/** The summary of the last applied round, or null if no report contained a summary. */
+	public final RoundSummary getSummary(){ return this.summary; }
+}
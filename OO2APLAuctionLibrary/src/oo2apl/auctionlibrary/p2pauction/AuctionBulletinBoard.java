@@ -0,0 +1,110 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.BoardWakeUp;
+/**
+ * A bulletin board on which auctioneers publish the rounds of their auctions for participants that run in the same JVM. 
+ * Instead of sending the announcement of a round to every participant, the auctioneer publishes it once. The board keeps 
+ * the latest announcement per auction; announcements are immutable and versioned by their round number. 
+ * 
+ * Participants are notified with a wake-up message that carries no data. A participant that has a wake-up pending 
+ * is not woken up again, so the announcements of many auctions (or several rounds) that are published before the 
+ * participant reads the board cost a single wake-up. On a wake-up the participant takes the rounds that it did not see 
+ * yet. Participants can also poll the board with takeNewAnnouncements without being woken up. 
+ * 
+ * The board is thread-safe and meant to be shared by all auctioneers and participants that use it, see 
+ * OrganizeAuction.setBulletinBoard. 
+ * 
+ * @author Bas Testerink
+ */
+public final class AuctionBulletinBoard {
+	/** The latest announcement per auction. */
+	private final ConcurrentMap<UUID, AuctionAnnouncement<?>> announcements;
+	/** The subscriptions and wake-up state per participant. */
+	private final ConcurrentMap<AgentID, Subscriber> subscribers;
+	/** The wake-up message, which is the same for all participants. */
+	private final BoardWakeUp wakeUp;
+	
+	public AuctionBulletinBoard(){
+		this.announcements = new ConcurrentHashMap<>();
+		this.subscribers = new ConcurrentHashMap<>();
+		this.wakeUp = new BoardWakeUp(this);
+	}
+	
+	/** The message to send to participants that must be woken up. */
+	public final BoardWakeUp getWakeUp(){ return this.wakeUp; }
+	
+	/**
+	 * Publish the announcement of a round. The participants are subscribed to the auction when its first round (round 0) 
+	 * is published. 
+	 * @param announcement The announcement of the round. 
+	 * @param participants The participants of the auction. 
+	 * @param wakeUp Is called for each participant that has no wake-up pending and must be woken up. 
+	 */
+	public final void publish(final AuctionAnnouncement<?> announcement, final List<AgentID> participants, final Consumer<AgentID> wakeUp){
+		UUID auctionID = announcement.getAuctionID();
+		this.announcements.merge(auctionID, announcement, 
+				(AuctionAnnouncement<?> old, AuctionAnnouncement<?> newer) -> newer.getRound() >= old.getRound() ? newer : old);
+		for(AgentID participant : participants){
+			Subscriber subscriber = this.subscribers.computeIfAbsent(participant, (AgentID id) -> new Subscriber());
+			if(announcement.getRound() == 0) 
+				subscriber.seenRounds.putIfAbsent(auctionID, -1);
+			if(subscriber.awake.compareAndSet(false, true))
+				wakeUp.accept(participant);
+		}
+	}
+	
+	/** Remove an auction from the board, e.g. when it is finished. Subscriptions to the auction are dropped the next 
+	 * time that the participant reads the board. */
+	public final void remove(final UUID auctionID){
+		this.announcements.remove(auctionID);
+	}
+	
+	/** The latest announcement of the auction, or null if it is not on the board. */
+	public final AuctionAnnouncement<?> read(final UUID auctionID){
+		return this.announcements.get(auctionID);
+	}
+	
+	/** Take the announcements of the rounds that the participant did not see yet, i.e. the latest round of each 
+	 * subscribed auction if it is newer than the last round that the participant took. This also clears the pending 
+	 * wake-up of the participant, so that it is woken up for rounds that are published from now on. */
+	public final List<AuctionAnnouncement<?>> takeNewAnnouncements(final AgentID participant){
+		List<AuctionAnnouncement<?>> result = new ArrayList<>();
+		Subscriber subscriber = this.subscribers.get(participant);
+		if(subscriber == null) return result;
+		// Clear before reading, a round that is published while reading then causes a new wake-up
+		subscriber.awake.set(false); 
+		Iterator<Map.Entry<UUID, Integer>> iterator = subscriber.seenRounds.entrySet().iterator();
+		while(iterator.hasNext()){
+			Map.Entry<UUID, Integer> seen = iterator.next();
+			AuctionAnnouncement<?> announcement = this.announcements.get(seen.getKey());
+			if(announcement == null){
+				iterator.remove(); // The auction is finished
+			} else if(announcement.getRound() > seen.getValue()){
+				seen.setValue(announcement.getRound());
+				result.add(announcement);
+			}
+		}
+		return result;
+	}
+	
+	/** The amount of auctions on the board. */
+	public final int size(){ return this.announcements.size(); }
+	
+	/** The subscribed auctions of a participant with the last round that it took, and whether it has a wake-up pending. */
+	private static final class Subscriber {
+		private final ConcurrentMap<UUID, Integer> seenRounds = new ConcurrentHashMap<>();
+		private final AtomicBoolean awake = new AtomicBoolean(false);
+	}
+}
@@ -0,0 +1,23 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.transport.GatewayContext;
+/**
+ * Sending of auction messages. Messages to agents on other nodes go through the gateway of the agent's node if it 
+ * included the GatewayCapability, all other messages are sent by the agent's messenger. Use this method instead of 
+ * planInterface.sendMessage to send auction messages (e.g. AuctionEnded) from plans. 
+ * 
+ * @author Bas Testerink
+ */
+public final class AuctionMessaging {
+	private AuctionMessaging(){}
+	
+	/** Send the message to the recipient, through the gateway if the recipient lives on another node. */
+	public static final void send(final PlanToAgentInterface planInterface, final AgentID recipient, final Trigger message){
+		GatewayContext gateway = planInterface.getContext(GatewayContext.class);
+		if(gateway == null || !gateway.route(recipient, message))
+			planInterface.sendMessage(recipient, message);
+	}
+}
@@ -1,32 +1,77 @@
 package oo2apl.auctionlibrary.p2pauction;
  
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import oo2apl.agent.AgentID;
 import oo2apl.agent.Context;
+import oo2apl.agent.ExternalProcessToAgentInterface;
 import oo2apl.auctionlibrary.p2pauction.auctionspecifications.Auction;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.CallMarketAuction;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.DoubleAuction;
 import oo2apl.auctionlibrary.p2pauction.auctionspecifications.DutchAuction;
 import oo2apl.auctionlibrary.p2pauction.auctionspecifications.EnglishAuction;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.MultiLotAuction;
 import oo2apl.auctionlibrary.p2pauction.auctionspecifications.VickreyAuction;
+import oo2apl.auctionlibrary.p2pauction.journal.AuctionJournal;
+import oo2apl.auctionlibrary.p2pauction.metrics.AuctionMetrics;
+import oo2apl.auctionlibrary.p2pauction.metrics.AuctioneerMetrics;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrderFill;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
 import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType; 
 /**
  * Context that is used for bookkeeping data of auctions of which the agent is the auctioneer.
  * 
+ * The context is thread-safe, so that one instance can be shared by several auctioneer agents that run in parallel on the 
+ * thread pool of a platform, e.g. the workers of an auction house (see TraderCapability(AuctioneerContext)). The auctions 
+ * are kept in a concurrent map and each auction processes the responses of its participants one at a time, hence 
+ * responses for different auctions are processed in parallel.
+ * 
+ * Metrics of the auctions of the context can be enabled with enableMetrics, these are exported via JMX. The auctions can 
+ * be journaled with enableJournal, so that they can be recovered when the JVM of the auctioneer dies. 
+ * 
  * @author Bas Testerink
  *
  */
 public final class AuctioneerContext implements Context {
 	/** The current ongoing auctions. */
-	private final Map<UUID, Auction<?>> auctions;
+	private final ConcurrentMap<UUID, Auction<?>> auctions;
+	/** The metrics of the auctions, null if metrics are not enabled. */
+	private volatile AuctioneerMetrics metrics = null;
+	/** The journal of the auctions, null if they are not journaled. */
+	private volatile AuctionJournal<?> journal = null;
+	/** The state of the auctions that were recovered from the journal until their auctioneer continues them. */
+	private final ConcurrentMap<UUID, Recovery> recoveries;
+	/** The auctioneers that use the context, to which the deadlines of rounds are delivered as external triggers. */
+	private final ConcurrentMap<AgentID, ExternalProcessToAgentInterface> auctioneers;
 	
 	public AuctioneerContext(){
-		this.auctions = new HashMap<>();
+		this.auctions = new ConcurrentHashMap<>();
+		this.recoveries = new ConcurrentHashMap<>();
+		this.auctioneers = new ConcurrentHashMap<>();
+	}
+	
+	/** Register an auctioneer agent that uses this context, so that the deadlines of the rounds of its auctions can be 
+	 * delivered to it as external triggers. This is required for auctions with a round deadline (see 
+	 * OrganizeAuction.setRoundDeadline) and is done with the interface that the platform produces when the agent is created. */
+	public final void registerAuctioneer(final ExternalProcessToAgentInterface auctioneer){
+		this.auctioneers.put(auctioneer.getAgentID(), auctioneer);
+	}
+	
+	/** The registered interface of the given auctioneer, or null if it was not registered. */
+	public final ExternalProcessToAgentInterface getAuctioneer(final AgentID auctioneer){
+		return this.auctioneers.get(auctioneer);
 	}
 	
 	/**
@@ -37,27 +82,232 @@ public final class AuctioneerContext implements Context {
 	 */
 	public final <T> AuctionAnnouncement<T> newAuction(final OrganizeAuction<T> trigger, final AgentID auctioneer){ 
 		UUID auctionID = UUID.randomUUID();
-		while(this.auctions.get(auctionID) != null) // This is unlikely to happen but still, just to be safe...
+		Auction<T> auction = makeAuction(trigger, auctionID);
+		while(this.auctions.putIfAbsent(auctionID, auction) != null){ // This is unlikely to happen but still, just to be safe...
 			auctionID = UUID.randomUUID(); 
-		Auction<T> auction = trigger.getType() == AuctionType.VICKREY ? new VickreyAuction<>(trigger, auctionID) :(
-							 trigger.getType() == AuctionType.ENGLISH ? new EnglishAuction<>(trigger, auctionID) : (
-							 trigger.getType() == AuctionType.DUTCH ? new DutchAuction<>(trigger, auctionID) : null)); 
-		this.auctions.put(auctionID, auction); 
+			auction = makeAuction(trigger, auctionID);
+		}
+		return start(auction, trigger, auctioneer, auctionID);
+	}
+	
+	/** Register a new auction with the given ID, e.g. an ID that is drawn from a seeded generator so that a simulation is 
+	 * reproducible (see MarketSimulator). Throws an IllegalArgumentException if an auction with the ID is registered. */
+	public final <T> AuctionAnnouncement<T> newAuction(final OrganizeAuction<T> trigger, final AgentID auctioneer, final UUID auctionID){ 
+		Auction<T> auction = makeAuction(trigger, auctionID);
+		if(this.auctions.putIfAbsent(auctionID, auction) != null) 
+			throw new IllegalArgumentException("An auction with ID "+auctionID+" is already registered.");
+		return start(auction, trigger, auctioneer, auctionID);
+	}
+	
+	/** Measure and journal the registered auction if enabled, and produce its initial announcement. */
+	private final <T> AuctionAnnouncement<T> start(final Auction<T> auction, final OrganizeAuction<T> trigger, final AgentID auctioneer, final UUID auctionID){
+		AuctioneerMetrics metrics = this.metrics;
+		if(metrics != null){
+			auction.setMetrics(metrics);
+			metrics.auctionStarted();
+		}
+		AuctionJournal<?> journal = this.journal;
+		if(journal != null){
+			journal.recordOrganized(auctionID, trigger);
+			auction.setJournal(journal);
+		}
 		return auction.makeInitialAnnouncement(auctionID, auctioneer); 
 	}
 	
+	/** Create the auction specification that implements the rules of the auction type of the trigger. */
+	@SuppressWarnings({ "unchecked", "rawtypes" }) // The object for sale of a multi-lot auction is a MultiLotSale
+	public static final <T> Auction<T> makeAuction(final OrganizeAuction<T> trigger, final UUID auctionID){
+		return trigger.getType() == AuctionType.VICKREY ? new VickreyAuction<>(trigger, auctionID) :(
+			   trigger.getType() == AuctionType.ENGLISH ? new EnglishAuction<>(trigger, auctionID) : (
+			   trigger.getType() == AuctionType.DUTCH ? new DutchAuction<>(trigger, auctionID) : (
+			   trigger.getType() == AuctionType.MULTILOT ? (Auction<T>) new MultiLotAuction((OrganizeAuction) trigger, auctionID) : (
+			   trigger.getType() == AuctionType.DOUBLE ? new DoubleAuction<>(trigger, auctionID) : (
+			   trigger.getType() == AuctionType.CALL ? new CallMarketAuction<>(trigger, auctionID) : null))))); 
+	}
+	
 	/**
 	 * Register the response of a participant of an auction. 
 	 * @param participantResponse Response that is received from a participant in one of the active auctions. 
-	 * @return The result indicates whether the auction is finished (its type is then AuctionResult.FINISHED) or whether it has entered a new round (AuctionResult.NEWROUND), or whether not all bids for this round are in yet (AuctionResult.WAITING)
+	 * @return The result indicates whether the auction is finished (its type is then AuctionResult.FINISHED) or whether it has entered a new round (AuctionResult.NEWROUND), or whether not all bids for this round are in yet (AuctionResult.WAITING). 
+	 * Responses for auctions that are not (or no longer) registered are ignored and also produce AuctionResult.WAITING. 
 	 */
 	public final AuctionResult<?> handleParticipantResponse(final ParticipantResponse participantResponse){
 		Auction<?> data = this.auctions.get(participantResponse.getAuctionID()); 
+		if(data == null) return AuctionResult.WAITING; // E.g. a late response for an auction that was already cleared
 		return data.handleParticipantResponse(participantResponse);
 	}
 	
+	/**
+	 * Close a round of an auction because its deadline passed. 
+	 * @return The same as handleParticipantResponse, where AuctionResult.WAITING means that the round was already closed. 
+	 */
+	public final AuctionResult<?> handleRoundDeadline(final UUID auctionID, final int round){
+		Auction<?> data = this.auctions.get(auctionID); 
+		if(data == null) return AuctionResult.WAITING;
+		return data.handleRoundDeadline(round);
+	}
+	
+	/** Close the auction now, which is how a continuous double auction without deadline is ended. 
+	 * @return The same as handleParticipantResponse, where AuctionResult.WAITING means that the auction was already finished. 
+	 */
+	public final AuctionResult<?> closeAuction(final UUID auctionID){
+		Auction<?> data = this.auctions.get(auctionID); 
+		if(data == null) return AuctionResult.WAITING;
+		return data.close();
+	}
+	
+	/** Produce the trades of a double auction since the previous call, which are to be sent to the traders. Other auctions 
+	 * have no trades. */
+	public final List<OrderFill> takeFills(final UUID auctionID){
+		Auction<?> data = this.auctions.get(auctionID); 
+		if(data instanceof DoubleAuction<?>) return ((DoubleAuction<?>) data).takeFills();
+		return Collections.emptyList();
+	}
+	
+	/** Produce the announcement of the round that the auction entered, as reported by the result. */
+	public final <T> AuctionAnnouncement<T> makeRoundAnnouncement(final AuctionResult<T> result, final AgentID auctioneer){
+		Auction<?> data = this.auctions.get(result.getAuctionID());
+		return new AuctionAnnouncement<>(
+				result.getAuctionID(), 
+				auctioneer, 
+				result.getTrigger().getType(), 
+				result.getTrigger().getObjectForSale(), 
+				result.getPrice(),
+				result.getQuantityAvailable(),
+				result.getDecrement(),
+				data == null ? 0 : data.getRound());
+	}
+	
+	/** The agents that are asked to respond in the current round of the auction, or an empty list if it is not registered. */
+	public final List<AgentID> getRoundRespondents(final UUID auctionID){
+		Auction<?> data = this.auctions.get(auctionID); 
+		if(data == null) return Collections.emptyList();
+		return data.getRoundRespondents();
+	}
+	
+	/** Record the metrics of the auctions that are started from now on and register them as an MBean, see AuctionMetrics. 
+	 * Has no effect if the metrics are enabled already. */
+	public final synchronized AuctioneerMetrics enableMetrics(){
+		if(this.metrics == null){
+			AuctioneerMetrics metrics = new AuctioneerMetrics(this.auctions::size);
+			AuctionMetrics.register(metrics);
+			this.metrics = metrics;
+		}
+		return this.metrics;
+	}
+	
+	/** Stop recording the metrics of the auctions and unregister the MBean of the metrics. Has no effect if the metrics are 
+	 * not enabled. */
+	public final synchronized void disableMetrics(){
+		if(this.metrics != null){
+			AuctionMetrics.unregister(this.metrics);
+			this.metrics = null;
+			for(Auction<?> auction : this.auctions.values()) auction.setMetrics(null);
+		}
+	}
+	
+	/** The metrics of the context, or null if they are not enabled. */
+	public final AuctioneerMetrics getMetrics(){ return this.metrics; }
+	
+	/** Replay the auctions of the journal into this context and journal the auctions of the context from now on. The journal 
+	 * must be open, see AuctionJournal.open. This is meant to be done when the auctioneer starts, before it organizes 
+	 * auctions, and recovers the auctions that were registered when the previous run of the auctioneer stopped. Messages 
+	 * that were sent to the auctioneer but not processed are lost. The auctioneer therefore continues each recovered auction 
+	 * with the state of takeRecovery: it reports the result of an auction that finished before the crash, and announces the 
+	 * current round again to the respondents that did not respond yet (see TraderCapability.recoverAuctions). 
+	 * @return The IDs of the recovered auctions. 
+	 */
+	public final synchronized List<UUID> enableJournal(final AuctionJournal<?> journal) throws IOException {
+		Set<UUID> recovered = new LinkedHashSet<>();
+		journal.replay(new AuctionJournal.Replay(){
+			/** Keep the result of a closed round, or the responder of the current round. */
+			private final void replayed(final UUID auctionID, final AgentID responder, final AuctionResult<?> result){
+				Recovery recovery = AuctioneerContext.this.recoveries.get(auctionID);
+				if(recovery == null) return; // Not organized in the journal
+				if(result != AuctionResult.WAITING){
+					recovery.result = result;
+					recovery.responded.clear();
+				} else if(responder != null) recovery.responded.add(responder);
+			}
+			public void organized(final UUID auctionID, final OrganizeAuction<?> trigger){ 
+				Auction<?> auction = makeAuction(trigger, auctionID);
+				AuctioneerMetrics metrics = AuctioneerContext.this.metrics;
+				if(metrics != null){
+					auction.setMetrics(metrics);
+					metrics.auctionStarted();
+				}
+				AuctioneerContext.this.auctions.put(auctionID, auction);
+				AuctioneerContext.this.recoveries.put(auctionID, new Recovery());
+				recovered.add(auctionID);
+			}
+			public void responded(final ParticipantResponse response){ 
+				replayed(response.getAuctionID(), response.getBidder(), handleParticipantResponse(response)); 
+				takeFills(response.getAuctionID()); // The trades of a double auction were sent before the crash
+			}
+			public void deadlinePassed(final UUID auctionID, final int round){ replayed(auctionID, null, handleRoundDeadline(auctionID, round)); }
+			public void closed(final UUID auctionID){ replayed(auctionID, null, closeAuction(auctionID)); }
+			public void cleared(final UUID auctionID){ 
+				AuctioneerContext.this.auctions.remove(auctionID); 
+				AuctioneerContext.this.recoveries.remove(auctionID);
+				recovered.remove(auctionID);
+			}
+		});
+		for(Auction<?> auction : this.auctions.values()) auction.setJournal(journal);
+		this.journal = journal;
+		return new ArrayList<>(recovered);
+	}
+	
+	/** Produce and forget the state in which the auction was recovered from the journal, or null if it was not recovered 
+	 * or its state was already taken. */
+	public final Recovery takeRecovery(final UUID auctionID){
+		return this.recoveries.remove(auctionID);
+	}
+	
+	/** The announcement of the first round of a registered auction, e.g. to announce a recovered auction again. */
+	public final <T> AuctionAnnouncement<T> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer){
+		@SuppressWarnings("unchecked") // The auction was registered with an OrganizeAuction<T>
+		Auction<T> data = (Auction<T>) this.auctions.get(auctionID);
+		return data.makeInitialAnnouncement(auctionID, auctioneer);
+	}
+	
+	/** The trigger that organized the auction, or null if it is not registered. */
+	public final OrganizeAuction<?> getTrigger(final UUID auctionID){
+		Auction<?> data = this.auctions.get(auctionID); 
+		return data == null ? null : data.getTrigger();
+	}
+	
+	/** The current round of the auction, or -1 if it is not registered. */
+	public final int getRound(final UUID auctionID){
+		Auction<?> data = this.auctions.get(auctionID); 
+		return data == null ? -1 : data.getRound();
+	}
+	
+	/** Whether the auction with the given ID is registered in this context. */
+	public final boolean isOrganizing(final UUID auctionID){
+		return this.auctions.containsKey(auctionID);
+	}
+	
+	/** The amount of auctions that are currently ongoing. */
+	public final int getActiveAuctionCount(){
+		return this.auctions.size();
+	}
+	
 	/** Remove the data of an auction. */
 	public final void clearData(final UUID auctionID){
-		this.auctions.remove(auctionID);
+		this.recoveries.remove(auctionID);
+		AuctionJournal<?> journal = this.journal;
+		if(this.auctions.remove(auctionID) != null && journal != null) journal.recordCleared(auctionID);
 	} 
+	
+	/** The state in which an auction was recovered from the journal. */
+	public static final class Recovery {
+		private AuctionResult<?> result = null;
+		private final Set<AgentID> responded = new HashSet<>();
+		
+		/** The last result of the replay, which is FINISHED if the auction finished before the crash, NEWROUND if its current 
+		 * round is a later round, and null if its first round was not yet closed. */
+		public final AuctionResult<?> getResult(){ return this.result; }
+		/** The agents that already responded in the current round. */
+		public final Set<AgentID> getResponded(){ return this.responded; }
+	}
 }
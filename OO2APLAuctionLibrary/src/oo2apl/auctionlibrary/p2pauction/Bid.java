@@ -18,6 +18,8 @@ public class Bid implements Comparable<Bid> {
 	private final int quantity; // Quantity of the bid
 	/** The ID of the agent to which this bid belongs. */
 	private final AgentID bidder; // The agent that made the bid, used for the comparable implementation
+	/** The name of the bidder, computed at the first comparison that needs it. */
+	private String bidderName;
 
 	/**
 	 * Constructor.
@@ -40,6 +42,8 @@ public class Bid implements Comparable<Bid> {
 	 * First order on price per unit as this is important to the auctioneer.
 	 * Then order on the quantity, as these are the participants that want to spend the most.
 	 * Then order on bidder name, to ensure reproducibility, under the assumption that AgentID.toString() is unique for each existing agent ID.
+	 * The name is computed once per bid. Auctions that sort many bids should rather use the primitive ordering of 
+	 * engine.BidBook with a bookkeeping.BidderRegistry, which computes the name once per bidder. 
 	 */
 	public final int compareTo(Bid o){ 
 		if(this.price > o.getPrice()) return -1;
@@ -48,6 +52,11 @@ public class Bid implements Comparable<Bid> {
 		else if(this.quantity < o.getQuantity()) return 1;
 		else if(this.getBidder() == null) return 1; // In case this is a dummy bid
 		else if(o.getBidder() == null) return -1;	// in case o is a dummy bid
-		else return o.getBidder().toString().compareTo(this.bidder.toString()); // Note that each agent ID is unique and will not compare to 0
+		else return o.getBidderName().compareTo(getBidderName()); // Note that each agent ID is unique and will not compare to 0
+	}
+	
+	private final String getBidderName(){
+		if(this.bidderName == null) this.bidderName = this.bidder.toString();
+		return this.bidderName;
 	}
 }
\ No newline at end of file
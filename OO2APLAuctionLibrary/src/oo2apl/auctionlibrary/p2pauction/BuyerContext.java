@@ -2,13 +2,13 @@ package oo2apl.auctionlibrary.p2pauction;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
 
 import oo2apl.agent.AgentID;
 import oo2apl.agent.Context;
+import oo2apl.auctionlibrary.p2pauction.metrics.AuctionMetrics;
+import oo2apl.auctionlibrary.p2pauction.metrics.BuyerMetrics;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionEnded;
 import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
@@ -17,107 +17,117 @@ import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
  * The context of a buyer maintains bidding strategies and a `wish list' of demands. Each demand is an evaluation function and a quantity. This 
  * can be used to implement priorities over quantities. For instance, if it is of high priority that at least two units are bought and of 
  * lower priority that in total five units are bought, then the agent may place a high bid for a quantity of two and a lower bid for a quantity of three. 
+ * Demands registered for a class or interface also apply to items of its subtypes. 
  * 
  * @author Bas Testerink
  */
 public final class BuyerContext implements Context {
+	private static final int NO_LOT = -1;
 	// The strategies
 	private VickreyStrategy vickreyStrategy = makeDefaultVickreyStrategy();
 	private EnglishStrategy englishStrategy = makeDefaultEnglishStrategy();
 	private DutchStrategy dutchStrategy = makeDefaultDutchStrategy(); 
-	private final Map<Class<?>, List<Demand<?>>> demands;
+	private final DemandBook demands;
+	/** Evaluations of the demands for the auctions that the agent is bidding in, so that each round does not re-evaluate the item. */
+	private final EvaluationCache evaluationCache;
+	/** If set, the quantities (and budget) that the bids commit over concurrent auctions, such that demands are not over-bid. */
+	private ReservationLedger reservationLedger = null;
+	/** The metrics of the buyer, null if metrics are not enabled. */
+	private BuyerMetrics metrics = null;
 	
 	public BuyerContext(){
-		this.demands = new HashMap<>();
+		this.demands = new DemandBook();
+		this.evaluationCache = new EvaluationCache(64);
 	}
 	
-	/** Removes or updates the demand of an item. The highest demands are removed until the gained quantity is reached. */
+	/** Removes or updates the demands of an item. The demands with the highest evaluation of the item are removed until the gained quantity is reached. */
 	public final void updateDemands(final AuctionEnded<?> end){
 		if(end.getResult() != AuctionPersonalResult.NOTWON) 
-			handleAuctionEnd(end.getItemForSale().getClass(), end);
-	}
-	
-	@SuppressWarnings("unchecked") // The casting in this method is guaranteed to be correct
-	private final <T> void handleAuctionEnd(final Class<T> klass, final AuctionEnded<?> end){  
-		List<Demand<?>> demandList = this.demands.get(klass);
-		if(demandList != null){
-			// Order the demands based on the valuation of the item. It is assumed that a high evaluation means a high 
-			// priority. Therefore, the demands that are removed are those who's quantity is satisfied by the result of 
-			// auction. Order is from high to low.
-			List<Demand<T>> casted = new ArrayList<>();
-			for(Demand<?> demand : demandList) casted.add((Demand<T>)demand);
-			final T itemForSale = (T) end.getItemForSale();
-			casted.sort((Demand<T> a, Demand<T> b) -> {
-				EvaluationFunction<T> f1 = (EvaluationFunction<T>)a.getEvaluationFunction();
-				EvaluationFunction<T> f2 = (EvaluationFunction<T>)b.getEvaluationFunction();
-				return Double.compare(f1.evaluate(itemForSale), f2.evaluate(itemForSale));
-			});
-			int quantity = end.getResult().getQuantity();
-			Iterator<Demand<T>> iterator = casted.iterator();
-			// Go through the demands from high to low
-			while(iterator.hasNext() && quantity > 0){
-				Demand<T> demand = iterator.next();
-				// Remove those demands who's quantity is completely covered
-				if(demand.getDesiredQuantity() <= quantity){
-					iterator.remove();
-					quantity -= demand.getDesiredQuantity();
-				} else {
-					// The case where the final bit of quantity is not covering the next demand
-					demand.setDesiredQuantity(demand.getDesiredQuantity() - quantity);
-					quantity = 0;
-				}
-			}
-		}
+			this.demands.settle(end.getAuctionID(), end.getItemForSale(), end.getResult().getQuantity(), this.evaluationCache);
+		// Release after settling, so that concurrent auctions never see the won units as available
+		if(this.reservationLedger != null) this.reservationLedger.release(end.getAuctionID());
+		if(this.metrics != null) this.metrics.auctionEnded(end.getResult() != AuctionPersonalResult.NOTWON);
+		this.evaluationCache.evict(end.getAuctionID());
 	}
 	
 	/** Process the initial announcement of an action. The response contains the bids that the agent places, which in turn is determined by 
-	 * the relevant bidding strategy. */
+	 * the relevant bidding strategy. In a multi-lot auction each lot is bid on with the Vickrey strategy, as if it were a 
+	 * separate auction with the lot's auction ID (see MultiLotSale.getLotAuctionID). In a double auction or call market the 
+	 * Vickrey strategy determines the buy orders of the agent. */
 	public final ParticipantResponse registerAuction(final AuctionAnnouncement<?> announcement, final AgentID myID){ 
-		return new ParticipantResponse(announcement.getAuctionID(), myID, getBidsForItem(announcement.getItemForSale().getClass(), announcement, myID));
+		List<Bid> bids = new ArrayList<>();
+		if(announcement.getType() == AuctionType.MULTILOT){
+			MultiLotSale<?> sale = (MultiLotSale<?>) announcement.getItemForSale();
+			for(int lot = 0; lot < sale.size(); lot++){
+				Lot<?> lotForSale = sale.getLot(lot);
+				addBidsForItem(bids, lotForSale.getItem().getClass(), MultiLotSale.getLotAuctionID(announcement.getAuctionID(), lot), AuctionType.VICKREY, 
+						lotForSale.getItem(), lotForSale.getMinimalPrice(), lotForSale.getQuantity(), 0d, myID, lot);
+			}
+		} else {
+			addBidsForItem(bids, announcement.getItemForSale().getClass(), announcement.getAuctionID(), announcement.getType(), announcement.getItemForSale(), 
+					announcement.getPrice(), announcement.getQuantityAvailable(), announcement.getDecrement(), myID, NO_LOT);
+		}
+		if(this.metrics != null) this.metrics.announcementHandled(bids.size());
+		return new ParticipantResponse(announcement.getAuctionID(), myID, bids, announcement.getRound());
 	}
 
 	//Casting warnings are suppressed as the registration of evaluation functions ensures that the types are correct.
-	/** Return the list of bids, depending on the demands and strategies of the agent. */ 
+	/** Add the bids for the item, depending on the demands and strategies of the agent. The bids are lot bids if a lot is given. */ 
 	@SuppressWarnings("unchecked")
-	private final <R> List<Bid> getBidsForItem(final Class<R> klass, final AuctionAnnouncement<?> announcement, final AgentID myID){
-		List<Bid> bids = new ArrayList<>();
-		List<Demand<?>> demandForItem = this.demands.get(klass);
-		if(demandForItem == null) return bids; // No interest in this item
+	private final <R> void addBidsForItem(final List<Bid> bids, final Class<R> klass, final UUID auctionID, final AuctionType type, final Object itemForSale, 
+			final double price, final int quantityAvailable, final double decrement, final AgentID myID, final int lot){
+		List<Demand<?>> demandForItem = this.demands.resolve(klass);
+		if(demandForItem.isEmpty()) return; // No interest in this item
 		// Go through the demands
 		for(Demand<?> d : demandForItem){
 			Demand<R> demand = (Demand<R>)d;
 			// The evaluation is how much the agent is willing to maximally pay per unit
-			double evaluation = demand.getEvaluationFunction().evaluate((R)announcement.getItemForSale());
+			double evaluation = this.evaluationCache.evaluate(auctionID, demand, (R)itemForSale);
+			// Accepted Dutch prices and orders are binding, so their reservations accumulate
+			boolean cumulative = type == AuctionType.DUTCH || type == AuctionType.DOUBLE || type == AuctionType.CALL;
+			// Without a ledger the full desired quantity is bid for, otherwise what is not reserved in other auctions
+			int quantity = this.reservationLedger == null ? demand.getDesiredQuantity() : this.reservationLedger.getAvailableQuantity(auctionID, demand, cumulative);
+			if(quantity <= 0) continue; // Nothing left to bid for
+			int firstBid = bids.size();
 			// Convert the evaluation and auction data to a list of bids, depending on the appropriate bidding strategy
-			if(announcement.getType() == AuctionType.VICKREY){ 
-				for(PriceQuantityPair pqPair : this.vickreyStrategy.getBids(evaluation, demand.getDesiredQuantity()))
-					bids.add(new Bid(pqPair.getPrice(), pqPair.getQuantity(), myID)); 
-			} else if(announcement.getType() == AuctionType.ENGLISH){
-				for(PriceQuantityPair pqPair : this.englishStrategy.getBids(evaluation, announcement.getPrice(), demand.getDesiredQuantity()))
-					bids.add(new Bid(pqPair.getPrice(), pqPair.getQuantity(), myID));
-			} else if(announcement.getType() == AuctionType.DUTCH){
-				bids.add(new Bid(announcement.getPrice(), this.dutchStrategy.getAcceptedQuantity(evaluation, announcement.getQuantityAvailable(), announcement.getPrice(), demand.getDesiredQuantity(), announcement.getDecrement()), myID));
+			if(type == AuctionType.VICKREY){ 
+				for(PriceQuantityPair pqPair : this.vickreyStrategy.getBids(evaluation, quantity))
+					bids.add(makeBid(lot, pqPair.getPrice(), pqPair.getQuantity(), myID)); 
+			} else if(type == AuctionType.DOUBLE || type == AuctionType.CALL){
+				for(PriceQuantityPair pqPair : this.vickreyStrategy.getBids(evaluation, quantity))
+					bids.add(LimitOrder.buy(pqPair.getPrice(), pqPair.getQuantity(), myID));
+			} else if(type == AuctionType.ENGLISH){
+				for(PriceQuantityPair pqPair : this.englishStrategy.getBids(evaluation, price, quantity))
+					bids.add(makeBid(lot, pqPair.getPrice(), pqPair.getQuantity(), myID));
+			} else if(type == AuctionType.DUTCH){
+				int accepted = this.dutchStrategy.getAcceptedQuantity(evaluation, quantityAvailable, price, quantity, decrement);
+				if(accepted > 0) bids.add(makeBid(lot, price, accepted, myID));
+				else {
+					// Declare when the demand would accept, for auctions that skip the clock past prices that nobody accepts
+					double acceptancePrice = this.dutchStrategy.getAcceptancePrice(evaluation, quantityAvailable, price, quantity, decrement);
+					if(acceptancePrice != Double.NEGATIVE_INFINITY) 
+						bids.add(makeBid(lot, Double.isNaN(acceptancePrice) ? price : Math.min(price, acceptancePrice), 0, myID));
+				}
 			}
+			// Drop the bids of the demand if a concurrent auction reserved the quantity or budget in the meantime. The auction then 
+			// keeps the previous bids of the demand, and the ledger their reservation. 
+			if(this.reservationLedger != null && !this.reservationLedger.reserve(auctionID, demand, bids.subList(firstBid, bids.size()), cumulative))
+				bids.subList(firstBid, bids.size()).clear();
 		}
-		return bids;
 	}
 	
-	/** Register a new demand to the `wish list' of the agent.  */
+	private static final Bid makeBid(final int lot, final double price, final int quantity, final AgentID bidder){
+		return lot == NO_LOT ? new Bid(price, quantity, bidder) : new LotBid(lot, price, quantity, bidder);
+	}
+	
+	/** Register a new demand to the `wish list' of the agent. The demand applies to items of the class and of its subtypes. */
 	public final <T> void putDemand(final Class<T> klass, final Demand<T> newDemand){
-		List<Demand<?>> demand = this.demands.get(klass);
-		if(demand == null){
-			demand = new ArrayList<>();
-			this.demands.put(klass, demand);
-		}
-		demand.add(newDemand);
+		this.demands.put(klass, newDemand);
 	} 	
 	
 	/** Remove a demand from the `wish list' of the agent. NOTE: Do  not do this whilst the agent is still in an auction!  */
 	public final <T> void removeDemand(final Class<T> klass, final Demand<T> demandToRemove){
-		List<Demand<?>> demand = this.demands.get(klass);
-		if(demand != null){
-			demand.remove(demandToRemove);
-		} 
+		this.demands.remove(klass, demandToRemove);
 	} 
 	
 	// Setters for the bidding strategies
@@ -125,6 +135,36 @@ public final class BuyerContext implements Context {
 	public final void setEnglishStrategy(final EnglishStrategy strategy){ this.englishStrategy = strategy; } 
 	public final void setDutchStrategy(final DutchStrategy strategy){ this.dutchStrategy = strategy; } 
 	
+	/** Use the ledger to reserve the quantities of the bids over all auctions, or stop reserving if null. The ledger must be
+	 * set before the agent joins any auction. */
+	public final void setReservationLedger(final ReservationLedger ledger){ this.reservationLedger = ledger; } 
+	public final ReservationLedger getReservationLedger(){ return this.reservationLedger; } 
+	
+	/** Record the metrics of the buyer and register them as an MBean with the given name, e.g. the name of the agent, see 
+	 * AuctionMetrics. Has no effect if the metrics are enabled already. */
+	public final BuyerMetrics enableMetrics(final String name){ 
+		if(this.metrics == null){
+			this.metrics = new BuyerMetrics(this.evaluationCache::getMisses, this.evaluationCache::getHits);
+			AuctionMetrics.register(this.metrics, name);
+		}
+		return this.metrics;
+	}
+	
+	/** Stop recording the metrics of the buyer and unregister the MBean of the metrics. Has no effect if the metrics are 
+	 * not enabled. */
+	public final void disableMetrics(){ 
+		if(this.metrics != null){
+			AuctionMetrics.unregister(this.metrics);
+			this.metrics = null;
+		}
+	}
+	
+	/** The metrics of the buyer, or null if they are not enabled. */
+	public final BuyerMetrics getMetrics(){ return this.metrics; }
+	
+	/** The cache of evaluations, which reports its hits and misses and of which the capacity can be changed (0 disables it). */
+	public final EvaluationCache getEvaluationCache(){ return this.evaluationCache; }
+	
 	/** Functional interface to determine how much worth an object is to an agent. */
 	public interface EvaluationFunction<T> {
 		/** Returns the price per unit of the object for sale that the agent would be willing to maximally pay. */
@@ -154,6 +194,13 @@ public final class BuyerContext implements Context {
 		 * @param currentPrice The current price per unit. 
 		 * @param desiredQuantity The amount of units that the agent wants. */
 		public int getAcceptedQuantity(double evaluation, int remainingQuantity, double currentPrice, int desiredQuantity, double decrementPerRound);
+		
+		/** Returns the highest price below the current price at which the strategy would accept, given that the auction is 
+		 * still running then. Return Double.NEGATIVE_INFINITY if it would not accept at any lower price. The default is 
+		 * Double.NaN, which declares nothing, such that the clock of the auction cannot skip any prices. */
+		public default double getAcceptancePrice(double evaluation, int remainingQuantity, double currentPrice, int desiredQuantity, double decrementPerRound){
+			return Double.NaN;
+		}
 	} 
 	
 	/** The default strategy is to bid the valuation of a unit. */
@@ -187,6 +234,12 @@ public final class BuyerContext implements Context {
 					return desiredQuantity;
 				} else return 0;
 			}
+			
+			/** The strategy accepts at the first price at or below the evaluation, unless that price has passed. */
+			public double getAcceptancePrice(double evaluation, int quantityAvailable, double currentPrice, int desiredQuantity, double decrementPerRound) {
+				if(evaluation == 0 || currentPrice <= evaluation) return Double.NEGATIVE_INFINITY;
+				else return evaluation;
+			}
 		};
 	} 
 }
\ No newline at end of file
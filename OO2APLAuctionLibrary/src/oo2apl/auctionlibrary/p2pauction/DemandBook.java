@@ -0,0 +1,163 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+/**
+ * The `wish list' of a buyer. Demands are registered per class of items and apply to items of the class and of its
+ * subtypes. A demand can be registered for several classes, it then applies once to items of any of them. The demands
+ * that apply to a class are resolved once and kept until the registered demands change.
+ *
+ * When an auction is won, the won quantity is assigned to the applicable demands from the highest to the lowest
+ * evaluation of the item. The evaluations come from the evaluation cache, so that the demands that were bid with are
+ * not evaluated again. The demands are put in a binary max-heap in O(n) and only the k demands that receive units are
+ * taken from it, each in O(log n). Demands that are completely covered are removed from the wish list.
+ *
+ * @author Bas Testerink
+ */
+public final class DemandBook {
+	/** The registered demands per class, in order of registration. */
+	private final Map<Class<?>, Set<Demand<?>>> demands;
+	/** The classes under which each demand is registered. */
+	private final Map<Demand<?>, Set<Class<?>>> registeredClasses;
+	/** Per class of items for sale, the demands registered for the class and all its supertypes. Cleared when the demands change. */
+	private final Map<Class<?>, List<Demand<?>>> resolvedDemands;
+
+	public DemandBook(){
+		this.demands = new HashMap<>();
+		this.registeredClasses = new IdentityHashMap<>();
+		this.resolvedDemands = new HashMap<>();
+	}
+
+	/** Register a demand for items of the class and of its subtypes. */
+	public final <T> void put(final Class<T> klass, final Demand<T> demand){
+		Set<Demand<?>> registered = this.demands.get(klass);
+		if(registered == null){
+			registered = new LinkedHashSet<>();
+			this.demands.put(klass, registered);
+		}
+		if(registered.add(demand)){
+			Set<Class<?>> classes = this.registeredClasses.get(demand);
+			if(classes == null){
+				classes = new LinkedHashSet<>();
+				this.registeredClasses.put(demand, classes);
+			}
+			classes.add(klass);
+			this.resolvedDemands.clear();
+		}
+	}
+
+	/** Remove a demand that was registered for the class. */
+	public final <T> void remove(final Class<T> klass, final Demand<T> demand){
+		Set<Demand<?>> registered = this.demands.get(klass);
+		if(registered != null && registered.remove(demand)){
+			if(registered.isEmpty()) this.demands.remove(klass);
+			Set<Class<?>> classes = this.registeredClasses.get(demand);
+			classes.remove(klass);
+			if(classes.isEmpty()) this.registeredClasses.remove(demand);
+			this.resolvedDemands.clear();
+		}
+	}
+
+	/** Remove a demand from all the classes for which it was registered. */
+	private final void removeAll(final Demand<?> demand){
+		Set<Class<?>> classes = this.registeredClasses.remove(demand);
+		if(classes == null) return;
+		for(Class<?> klass : classes){
+			Set<Demand<?>> registered = this.demands.get(klass);
+			registered.remove(demand);
+			if(registered.isEmpty()) this.demands.remove(klass);
+		}
+		this.resolvedDemands.clear();
+	}
+
+	/** The amount of registered demands. */
+	public final int size(){ return this.registeredClasses.size(); }
+
+	/** Produce the demands that apply to items of the given class: those registered for the class itself, then for its
+	 * superclasses and then for its interfaces. A demand that is registered for several of these classes occurs once. The 
+	 * result is computed once per class until the demands change. */
+	public final List<Demand<?>> resolve(final Class<?> klass){
+		List<Demand<?>> resolved = this.resolvedDemands.get(klass);
+		if(resolved == null){
+			resolved = new ArrayList<>();
+			Set<Class<?>> supertypes = new LinkedHashSet<>();
+			for(Class<?> type = klass; type != null; type = type.getSuperclass())
+				supertypes.add(type);
+			// Add the interfaces breadth-first, including the interfaces that they extend
+			List<Class<?>> queue = new ArrayList<>(supertypes);
+			for(int i = 0; i < queue.size(); i++)
+				for(Class<?> implemented : queue.get(i).getInterfaces())
+					if(supertypes.add(implemented)) queue.add(implemented);
+			Set<Demand<?>> added = Collections.newSetFromMap(new IdentityHashMap<>());
+			for(Class<?> type : supertypes){
+				Set<Demand<?>> registered = this.demands.get(type);
+				if(registered != null)
+					for(Demand<?> demand : registered)
+						if(added.add(demand)) resolved.add(demand);
+			}
+			this.resolvedDemands.put(klass, resolved);
+		}
+		return resolved;
+	}
+
+	//Casting warnings are suppressed as the registration of demands ensures that the types are correct.
+	/** Assign the won quantity of the item to the applicable demands, from the highest evaluation to the lowest. Demands
+	 * of which the desired quantity is covered are removed, the last demand that is partially covered is lowered. */
+	@SuppressWarnings("unchecked")
+	public final <T> void settle(final UUID auctionID, final T itemForSale, final int wonQuantity, final EvaluationCache evaluations){
+		List<Demand<?>> applicable = resolve(itemForSale.getClass());
+		int size = applicable.size();
+		if(size == 0 || wonQuantity <= 0) return;
+		double[] keys = new double[size];
+		int[] heap = new int[size]; // Indices in the applicable demands
+		for(int i = 0; i < size; i++){
+			keys[i] = evaluations.evaluate(auctionID, (Demand<T>) applicable.get(i), itemForSale);
+			heap[i] = i;
+		}
+		for(int i = (size >>> 1) - 1; i >= 0; i--)
+			siftDown(heap, keys, i, size);
+		List<Demand<?>> covered = new ArrayList<>();
+		int quantity = wonQuantity;
+		while(size > 0 && quantity > 0){
+			Demand<?> demand = applicable.get(heap[0]);
+			heap[0] = heap[--size];
+			siftDown(heap, keys, 0, size);
+			if(demand.getDesiredQuantity() <= quantity){
+				covered.add(demand);
+				quantity -= demand.getDesiredQuantity();
+			} else {
+				// The final bit of quantity does not cover the demand
+				demand.setDesiredQuantity(demand.getDesiredQuantity() - quantity);
+				quantity = 0;
+			}
+		}
+		for(Demand<?> demand : covered)
+			removeAll(demand);
+	}
+
+	/** The demand at a higher position of the heap has a higher evaluation, or an equal evaluation and is resolved first. */
+	private static final boolean isHigher(final int a, final int b, final double[] keys){
+		return keys[a] > keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private static final void siftDown(final int[] heap, final double[] keys, final int position, final int size){
+		int index = position;
+		int demand = heap[index];
+		while(true){
+			int child = (index << 1) + 1;
+			if(child >= size) break;
+			if(child + 1 < size && isHigher(heap[child + 1], heap[child], keys)) child++;
+			if(!isHigher(heap[child], demand, keys)) break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = demand;
+	}
+}
@@ -0,0 +1,79 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+/**
+ * Remembers the evaluations of a buyer's demands per auction, so that an English or Dutch auction with many rounds
+ * evaluates the item for sale only once per demand. The cache holds the evaluations of a bounded amount of auctions.
+ * When more auctions are cached, the auction that was used least recently is evicted, which also clears auctions that
+ * went idle without an end being received. An auction is evicted right away when it ends.
+ *
+ * Demands are keyed on identity. It is assumed that an evaluation function gives the same evaluation for the same item
+ * during an auction. A capacity of zero disables the cache.
+ *
+ * @author Bas Testerink
+ */
+public final class EvaluationCache {
+	/** Cached evaluations per auction, least recently used first. */
+	private final LinkedHashMap<UUID, Map<Demand<?>, Double>> evaluations;
+	private int capacity;
+	private long hits, misses;
+
+	/** @param capacity The maximum amount of auctions for which evaluations are kept. */
+	public EvaluationCache(final int capacity){
+		this.capacity = capacity;
+		this.evaluations = new LinkedHashMap<UUID, Map<Demand<?>, Double>>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected final boolean removeEldestEntry(final Map.Entry<UUID, Map<Demand<?>, Double>> eldest){
+				return size() > EvaluationCache.this.capacity;
+			}
+		};
+	}
+
+	/** Return the evaluation of the item for the demand in the given auction, evaluating it only if it is not cached. */
+	public final <T> double evaluate(final UUID auctionID, final Demand<T> demand, final T itemForSale){
+		if(this.capacity == 0){
+			this.misses++;
+			return demand.getEvaluationFunction().evaluate(itemForSale);
+		}
+		Map<Demand<?>, Double> auctionEvaluations = this.evaluations.get(auctionID);
+		if(auctionEvaluations == null){
+			auctionEvaluations = new IdentityHashMap<>();
+			this.evaluations.put(auctionID, auctionEvaluations);
+		}
+		Double evaluation = auctionEvaluations.get(demand);
+		if(evaluation == null){
+			this.misses++;
+			evaluation = demand.getEvaluationFunction().evaluate(itemForSale);
+			auctionEvaluations.put(demand, evaluation);
+		} else this.hits++;
+		return evaluation;
+	}
+
+	/** Forget the evaluations of the auction. */
+	public final void evict(final UUID auctionID){
+		this.evaluations.remove(auctionID);
+	}
+
+	/** Change the maximum amount of cached auctions, evicting the least recently used auctions if there are too many. */
+	public final void setCapacity(final int capacity){
+		this.capacity = capacity;
+		while(this.evaluations.size() > capacity)
+			this.evaluations.remove(this.evaluations.keySet().iterator().next());
+	}
+
+	public final int getCapacity(){ return this.capacity; }
+
+	/** The amount of auctions for which evaluations are cached. */
+	public final int size(){ return this.evaluations.size(); }
+
+	/** The amount of evaluations that were answered from the cache. */
+	public final long getHits(){ return this.hits; }
+
+	/** The amount of evaluations for which the evaluation function was called. */
+	public final long getMisses(){ return this.misses; }
+}
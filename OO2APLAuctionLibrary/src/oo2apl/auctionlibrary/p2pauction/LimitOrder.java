@@ -0,0 +1,25 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import oo2apl.agent.AgentID;
+/**
+ * An order of a double auction: an offer to buy or to sell a quantity for at most (buy) or at least (sell) the limit 
+ * price per unit. Orders are matched on arrival against the best orders of the other side, and what is not matched 
+ * rests in the order book. 
+ * 
+ * @author Bas Testerink
+ */
+public final class LimitOrder extends Bid {
+	public static enum Side { BUY, SELL };
+	private final Side side;
+	
+	public LimitOrder(final Side side, final double price, final int quantity, final AgentID trader){
+		super(price, quantity, trader);
+		this.side = side;
+	}
+	
+	public static final LimitOrder buy(final double price, final int quantity, final AgentID trader){ return new LimitOrder(Side.BUY, price, quantity, trader); }
+	public static final LimitOrder sell(final double price, final int quantity, final AgentID trader){ return new LimitOrder(Side.SELL, price, quantity, trader); }
+	
+	public final Side getSide(){ return this.side; }
+	public final boolean isBuy(){ return this.side == Side.BUY; }
+}
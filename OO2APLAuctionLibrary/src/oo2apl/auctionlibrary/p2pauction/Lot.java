@@ -0,0 +1,28 @@
+package oo2apl.auctionlibrary.p2pauction;
+/**
+ * A lot of a multi-lot sale: a quantity of an item that is sold to the highest bidders of the lot, for at least the 
+ * minimal price per unit. 
+ * 
+ * @author Bas Testerink
+ * @param <T>
+ */
+public final class Lot<T> {
+	private final T item;
+	private final int quantity;
+	private final double minimalPrice;
+	
+	/**
+	 * @param item The item that is on sale in the lot.
+	 * @param quantity The amount of units of the lot.
+	 * @param minimalPrice The minimal price per unit.
+	 */
+	public Lot(final T item, final int quantity, final double minimalPrice){
+		this.item = item;
+		this.quantity = quantity;
+		this.minimalPrice = minimalPrice;
+	}
+	
+	public final T getItem(){ return this.item; }
+	public final int getQuantity(){ return this.quantity; }
+	public final double getMinimalPrice(){ return this.minimalPrice; }
+}
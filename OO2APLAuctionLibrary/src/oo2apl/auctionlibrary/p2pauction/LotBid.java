@@ -0,0 +1,18 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import oo2apl.agent.AgentID;
+/**
+ * A bid on one lot of a multi-lot auction. The lot is the index of the lot in the MultiLotSale. 
+ * 
+ * @author Bas Testerink
+ */
+public final class LotBid extends Bid {
+	private final int lot;
+	
+	public LotBid(final int lot, final double price, final int quantity, final AgentID bidder){
+		super(price, quantity, bidder);
+		this.lot = lot;
+	}
+	
+	public final int getLot(){ return this.lot; }
+}
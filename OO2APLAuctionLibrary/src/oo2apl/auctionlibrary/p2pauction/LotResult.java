@@ -0,0 +1,59 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+/**
+ * The result of one lot of a multi-lot auction. The final AuctionResult of a multi-lot auction contains the winners and 
+ * bids of all lots, grouped per lot and as LotBids; use split to get the result per lot. 
+ * 
+ * @author Bas Testerink
+ */
+public final class LotResult {
+	private final int lot;
+	private final List<AuctionPersonalResult> personalResults;
+	private final List<Bid> bids;
+	private final int quantityAvailable;
+	
+	/**
+	 * @param lot The index of the lot in the sale.
+	 * @param personalResults The winners of the lot.
+	 * @param bids The bids on the lot from high to low. 
+	 * @param quantityAvailable The amount of units of the lot that were not sold. 
+	 */
+	public LotResult(final int lot, final List<AuctionPersonalResult> personalResults, final List<Bid> bids, final int quantityAvailable){
+		this.lot = lot;
+		this.personalResults = personalResults;
+		this.bids = bids;
+		this.quantityAvailable = quantityAvailable;
+	}
+	
+	public final int getLot(){ return this.lot; }
+	public final List<AuctionPersonalResult> getPersonalResults(){ return this.personalResults; }
+	public final List<Bid> getBids(){ return this.bids; }
+	public final int getQuantityAvailable(){ return this.quantityAvailable; }
+	
+	/** Split the final result of a multi-lot auction into the results of its lots, ordered as the lots of the sale. */
+	public static final <T> List<LotResult> split(final AuctionResult<MultiLotSale<T>> result){
+		MultiLotSale<T> sale = result.getTrigger().getObjectForSale();
+		List<List<AuctionPersonalResult>> winners = new ArrayList<>(sale.size());
+		List<List<Bid>> bids = new ArrayList<>(sale.size());
+		int[] sold = new int[sale.size()];
+		for(int i = 0; i < sale.size(); i++){
+			winners.add(new ArrayList<>());
+			bids.add(new ArrayList<>());
+		}
+		for(AuctionPersonalResult winner : result.getPersonalResults()){
+			int lot = ((LotBid) winner.getBid()).getLot();
+			winners.get(lot).add(winner);
+			sold[lot] += winner.getQuantity();
+		}
+		for(Bid bid : result.getBids())
+			bids.get(((LotBid) bid).getLot()).add(bid);
+		List<LotResult> lotResults = new ArrayList<>(sale.size());
+		for(int i = 0; i < sale.size(); i++)
+			lotResults.add(new LotResult(i, winners.get(i), bids.get(i), sale.getLot(i).getQuantity() - sold[i]));
+		return lotResults;
+	}
+}
@@ -0,0 +1,40 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.List;
+import java.util.UUID;
+/**
+ * The object for sale of a multi-lot auction (OrganizeAuction.AuctionType.MULTILOT): a list of lots that are announced 
+ * together and cleared independently. Participants respond with one response that contains LotBids for any of the 
+ * lots. Each lot is cleared as a Vickrey auction: the highest bids win until the lot's quantity is covered and each 
+ * winner pays the price of the next bid of the lot. 
+ * 
+ * Towards the buyers each lot is a separate auction with its own ID, see getLotAuctionID. The AuctionEnded messages of 
+ * a lot should use that ID and the item of the lot, so that the buyer's demands are updated per lot. 
+ * 
+ * @author Bas Testerink
+ * @param <T>
+ */
+public final class MultiLotSale<T> {
+	private final List<Lot<T>> lots;
+	
+	public MultiLotSale(final List<Lot<T>> lots){
+		this.lots = lots;
+	}
+	
+	public final List<Lot<T>> getLots(){ return this.lots; }
+	public final Lot<T> getLot(final int lot){ return this.lots.get(lot); }
+	public final int size(){ return this.lots.size(); }
+	
+	/** The summed quantity of all lots. */
+	public final int getTotalQuantity(){
+		int total = 0;
+		for(Lot<T> lot : this.lots) total += lot.getQuantity();
+		return total;
+	}
+	
+	/** The ID under which a lot of the multi-lot auction is known to the buyers. It is derived from the auction ID, so 
+	 * auctioneer and buyers produce the same ID without exchanging it. */
+	public static final UUID getLotAuctionID(final UUID auctionID, final int lot){
+		return new UUID(auctionID.getMostSignificantBits() ^ ((long) (lot + 1) << 32), auctionID.getLeastSignificantBits());
+	}
+}
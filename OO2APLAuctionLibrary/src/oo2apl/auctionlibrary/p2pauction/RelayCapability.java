@@ -0,0 +1,36 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import oo2apl.agent.AgentBuilder;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRelayAnnouncementScheme;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRelayReleaseScheme;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRelayedResponseScheme;
+/**
+ * An agent builder that can be included during agent creation so that the agent can act as a relay in hierarchical 
+ * auctions. If x is your main agent builder, then use x.include(new RelayCapability());
+ * 
+ * In a hierarchical auction (see OrganizeAuction.setRelays) the auctioneer assigns each relay a shard of the 
+ * participants. The relay announces the rounds of the auction to its shard, collects the responses of its shard and 
+ * forwards a single aggregated response with only the competitive bids to the auctioneer. Hence the auctioneer receives 
+ * one response per relay instead of one per participant. 
+ * 
+ * A relay can also be a trader, i.e. include both this capability and the TraderCapability. 
+ * 
+ * @author Bas Testerink
+ */
+public final class RelayCapability extends AgentBuilder {
+	// Context for bookkeeping relayed auctions
+	protected final RelayContext relayContext;
+	
+	public RelayCapability(){
+		this(new RelayContext());
+	}
+	
+	/** Create the capability with a relay context that may be shared with other relay agents. */
+	public RelayCapability(final RelayContext relayContext){
+		this.relayContext = relayContext;
+		super.addContext(this.relayContext);
+		super.addMessagePlanScheme(new HandleRelayAnnouncementScheme());
+		super.addMessagePlanScheme(new HandleRelayedResponseScheme());
+		super.addMessagePlanScheme(new HandleRelayReleaseScheme());
+	}
+}
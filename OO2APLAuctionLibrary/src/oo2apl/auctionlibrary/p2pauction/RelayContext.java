@@ -0,0 +1,47 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import oo2apl.agent.Context;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.RelayedAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayAnnouncement;
+/**
+ * Context that is used for bookkeeping the shards of hierarchical auctions that the agent relays. As the auctioneer 
+ * context, this context is thread-safe and can be shared between relay agents.
+ * 
+ * @author Bas Testerink
+ */
+public final class RelayContext implements Context {
+	/** The auctions that are currently relayed. */
+	private final ConcurrentMap<UUID, RelayedAuction> auctions;
+	
+	public RelayContext(){
+		this.auctions = new ConcurrentHashMap<>();
+	}
+	
+	/** Get the relayed auction of the announcement, which is registered if the announcement assigns the shard. Returns 
+	 * null if the announcement belongs to an auction that is not relayed. */
+	public final RelayedAuction getRelayedAuction(final RelayAnnouncement<?> announcement){
+		if(announcement.isAssignment())
+			return this.auctions.computeIfAbsent(announcement.getAnnouncement().getAuctionID(), 
+					(UUID id) -> new RelayedAuction(announcement.getAnnouncement(), announcement.getShard()));
+		else return this.auctions.get(announcement.getAnnouncement().getAuctionID());
+	}
+	
+	/** Get the relayed auction with the given ID, or null if it is not relayed. */
+	public final RelayedAuction getRelayedAuction(final UUID auctionID){
+		return this.auctions.get(auctionID);
+	}
+	
+	/** Whether the auction with the given ID is relayed by this context. */
+	public final boolean isRelaying(final UUID auctionID){
+		return this.auctions.containsKey(auctionID);
+	}
+	
+	/** Remove the data of a relayed auction. */
+	public final void clearData(final UUID auctionID){
+		this.auctions.remove(auctionID);
+	}
+}
@@ -0,0 +1,184 @@
+package oo2apl.auctionlibrary.p2pauction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * Keeps track of the quantity, and optionally the budget, that a buyer has committed with its bids in the auctions that
+ * it is bidding in. A demand is then never bid for in total for more than its desired quantity, regardless of the amount
+ * of auctions that run at the same time. A bid commits its quantity and its price times quantity of the budget.
+ *
+ * In Vickrey and English auctions the bids of a round replace the bids of the previous round, so the reservation of a
+ * demand in such an auction is replaced as well. A replacement does not shrink the reservation, because an English
+ * auction keeps the previous bids if the new bids do not raise them. Accepted prices in a Dutch auction are binding, so
+ * there the reservations of the rounds accumulate. The reservations of an auction are released when the auction ends.
+ *
+ * A buyer only learns that an auction ended from an AuctionEnded message. If that never comes, e.g. because the
+ * auctioneer crashed, then the reservations of the auction stay until they are released with release. With an idle
+ * timeout (see setIdleTimeout) the ledger releases them itself once no reservation was made in the auction for that
+ * long.
+ *
+ * The totals per demand and the budget are atomic counters that are updated with compare-and-set, hence reservations
+ * for different auctions can be made concurrently without locks and without over-committing.
+ *
+ * @author Bas Testerink
+ */
+public final class ReservationLedger {
+	/** The reservations per auction and demand. */
+	private final Map<UUID, Map<Demand<?>, Reservation>> reservations;
+	/** The reserved quantity per demand over all auctions. */
+	private final Map<Demand<?>, AtomicInteger> reservedQuantities;
+	/** The bits of the double that is the budget that is not reserved, only used if the ledger has a budget. */
+	private final AtomicLong remainingBudget;
+	private final boolean hasBudget;
+	private volatile long idleTimeout; // In nanoseconds, 0 if auctions are never released for being idle
+	private final AtomicLong nextSweep; // The System.nanoTime() after which idle auctions are looked for again
+
+	/** A ledger that only reserves quantities. */
+	public ReservationLedger(){
+		this.reservations = new ConcurrentHashMap<>();
+		this.reservedQuantities = new ConcurrentHashMap<>();
+		this.remainingBudget = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+		this.hasBudget = false;
+		this.idleTimeout = 0;
+		this.nextSweep = new AtomicLong();
+	}
+
+	/** A ledger that reserves quantities and the given budget. */
+	public ReservationLedger(final double budget){
+		this.reservations = new ConcurrentHashMap<>();
+		this.reservedQuantities = new ConcurrentHashMap<>();
+		this.remainingBudget = new AtomicLong(Double.doubleToLongBits(budget));
+		this.hasBudget = true;
+		this.idleTimeout = 0;
+		this.nextSweep = new AtomicLong();
+	}
+
+	/** Release the reservations of an auction when no reservation was made in it for the given amount of milliseconds, or
+	 * never if 0 (default). The timeout must exceed the longest time between two rounds of an auction. */
+	public final ReservationLedger setIdleTimeout(final long idleMillis){
+		if(idleMillis < 0) throw new IllegalArgumentException("The idle timeout cannot be negative.");
+		this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		return this;
+	}
+
+	/** The quantity of the demand that can still be bid for in the auction. If not cumulative, the current reservation in
+	 * the auction is available as it will be replaced. */
+	public final int getAvailableQuantity(final UUID auctionID, final Demand<?> demand, final boolean cumulative){
+		releaseIdleAuctions();
+		int reserved = getCounter(demand).get();
+		if(!cumulative) reserved -= getReservation(auctionID, demand).quantity;
+		return Math.max(0, demand.getDesiredQuantity() - reserved);
+	}
+
+	/**
+	 * Reserve the quantity and budget of the bids for the demand in the auction. If cumulative then the bids are added to
+	 * the reservation, otherwise they replace it without shrinking it. Returns false if the reservation would exceed the
+	 * desired quantity of the demand or the budget, in which case the bids must not be placed. The previous reservation
+	 * then stays, as the auction keeps the previous bids.
+	 */
+	public final boolean reserve(final UUID auctionID, final Demand<?> demand, final List<Bid> bids, final boolean cumulative){
+		int quantity = 0;
+		double amount = 0;
+		for(Bid bid : bids){
+			quantity += bid.getQuantity();
+			amount += bid.getPrice() * bid.getQuantity();
+		}
+		Reservation previous = getReservation(auctionID, demand);
+		Reservation next = cumulative ? new Reservation(previous.quantity + quantity, previous.amount + amount) : 
+			new Reservation(Math.max(previous.quantity, quantity), Math.max(previous.amount, amount));
+		if(!change(demand, previous, next)) return false;
+		setReservation(auctionID, demand, next);
+		return true;
+	}
+
+	/** Release all reservations of the auction. */
+	public final void release(final UUID auctionID){
+		Map<Demand<?>, Reservation> released = this.reservations.remove(auctionID);
+		if(released != null)
+			for(Map.Entry<Demand<?>, Reservation> entry : released.entrySet())
+				change(entry.getKey(), entry.getValue(), Reservation.NONE);
+	}
+
+	/** The quantity of the demand that is reserved over all auctions. */
+	public final int getReservedQuantity(final Demand<?> demand){
+		AtomicInteger counter = this.reservedQuantities.get(demand);
+		return counter == null ? 0 : counter.get();
+	}
+
+	/** The budget that is not reserved, which is infinite if the ledger has no budget. */
+	public final double getRemainingBudget(){ return Double.longBitsToDouble(this.remainingBudget.get()); }
+
+	public final boolean hasBudget(){ return this.hasBudget; }
+
+	/** Change the totals from the previous to the next reservation, unless that exceeds the desired quantity or budget. */
+	private final boolean change(final Demand<?> demand, final Reservation previous, final Reservation next){
+		AtomicInteger counter = getCounter(demand);
+		int quantityDelta = next.quantity - previous.quantity;
+		while(true){
+			int reserved = counter.get();
+			if(quantityDelta > 0 && reserved + quantityDelta > demand.getDesiredQuantity()) return false;
+			if(counter.compareAndSet(reserved, reserved + quantityDelta)) break;
+		}
+		if(this.hasBudget && !changeBudget(next.amount - previous.amount)){
+			counter.addAndGet(-quantityDelta); // Undo the quantity
+			return false;
+		}
+		return true;
+	}
+
+	private final boolean changeBudget(final double delta){
+		while(true){
+			long bits = this.remainingBudget.get();
+			double remaining = Double.longBitsToDouble(bits) - delta;
+			if(delta > 0 && remaining < 0) return false;
+			if(this.remainingBudget.compareAndSet(bits, Double.doubleToLongBits(remaining))) return true;
+		}
+	}
+
+	/** Release the auctions in which no reservation was made for the idle timeout. Looks at most twice per timeout. */
+	private final void releaseIdleAuctions(){
+		long timeout = this.idleTimeout;
+		if(timeout == 0) return;
+		long now = System.nanoTime(), sweep = this.nextSweep.get();
+		if(now - sweep < 0 || !this.nextSweep.compareAndSet(sweep, now + (timeout >> 1))) return;
+		for(Map.Entry<UUID, Map<Demand<?>, Reservation>> entry : this.reservations.entrySet()){
+			boolean idle = true;
+			for(Reservation reservation : entry.getValue().values())
+				if(now - reservation.time < timeout) idle = false;
+			if(idle) release(entry.getKey());
+		}
+	}
+
+	private final AtomicInteger getCounter(final Demand<?> demand){
+		return this.reservedQuantities.computeIfAbsent(demand, (Demand<?> d) -> new AtomicInteger());
+	}
+
+	private final Reservation getReservation(final UUID auctionID, final Demand<?> demand){
+		Map<Demand<?>, Reservation> auctionReservations = this.reservations.get(auctionID);
+		Reservation reservation = auctionReservations == null ? null : auctionReservations.get(demand);
+		return reservation == null ? Reservation.NONE : reservation;
+	}
+
+	private final void setReservation(final UUID auctionID, final Demand<?> demand, final Reservation reservation){
+		this.reservations.computeIfAbsent(auctionID, (UUID id) -> new ConcurrentHashMap<>()).put(demand, reservation);
+	}
+
+	/** The quantity and budget that a demand reserved in an auction, and when. */
+	private static final class Reservation {
+		private static final Reservation NONE = new Reservation(0, 0);
+		private final int quantity;
+		private final double amount;
+		private final long time; // The System.nanoTime() of the reservation
+
+		private Reservation(final int quantity, final double amount){
+			this.quantity = quantity;
+			this.amount = amount;
+			this.time = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package oo2apl.auctionlibrary.p2pauction;
+ /**
+  * Cumulative figures over all the current bids of an auction at the end of a round. 
+  * @author Bas Testerink
+  */
+public final class RoundSummary {
+	private final double bestPrice;
+	private final long totalQuantity;
+	private final double priceAtCutOff;
+	private final int nrOfBids;
+	
+	/**
+	 * @param bestPrice The highest price per unit that is bid, Double.NaN if there are no bids. 
+	 * @param totalQuantity The summed quantity of all bids. 
+	 * @param priceAtCutOff The price of the bid at which the quantity for sale is covered, Double.NaN if the bids do not cover it. 
+	 * @param nrOfBids The amount of bids. 
+	 */
+	public RoundSummary(final double bestPrice, final long totalQuantity, final double priceAtCutOff, final int nrOfBids){
+		this.bestPrice = bestPrice;
+		this.totalQuantity = totalQuantity;
+		this.priceAtCutOff = priceAtCutOff;
+		this.nrOfBids = nrOfBids;
+	}
+	public final double getBestPrice(){ return this.bestPrice; }
+	public final long getTotalQuantity(){ return this.totalQuantity; }
+	public final double getPriceAtCutOff(){ return this.priceAtCutOff; }
+	public final boolean isQuantityCovered(){ return !Double.isNaN(this.priceAtCutOff); }
+	public final int getNrOfBids(){ return this.nrOfBids; }
+}
@@ -1,22 +1,30 @@
 package oo2apl.auctionlibrary.p2pauction;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.function.Predicate;
 
 import oo2apl.agent.AgentBuilder;
 import oo2apl.agent.AgentID;
+import oo2apl.agent.ExternalProcessToAgentInterface;
 import oo2apl.agent.PlanToAgentInterface;
 import oo2apl.agent.Trigger;
 import oo2apl.auctionlibrary.p2pauction.BuyerContext.DutchStrategy;
 import oo2apl.auctionlibrary.p2pauction.BuyerContext.EnglishStrategy;
 import oo2apl.auctionlibrary.p2pauction.BuyerContext.EvaluationFunction;
 import oo2apl.auctionlibrary.p2pauction.BuyerContext.VickreyStrategy;
+import oo2apl.auctionlibrary.p2pauction.journal.AuctionJournal;
 import oo2apl.auctionlibrary.p2pauction.planschemes.HandleAuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleBoardWakeUpScheme;
 import oo2apl.auctionlibrary.p2pauction.planschemes.HandleParticipantResponseScheme;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRoundDeadlineScheme;
 import oo2apl.auctionlibrary.p2pauction.planschemes.OrganizeAuctionScheme;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionEnded;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
 import oo2apl.plan.builtin.DecoupledPlanBodyInterface;
@@ -28,6 +36,9 @@ import oo2apl.plan.builtin.DecoupledPlanBodyInterface;
  * Usage:
  * 
  * Currently the capability supports Vickrey, English and Dutch auctions where an arbitrary (but positive) quantity of a given unit/item/object is on sale. 
+ * Many different items can be sold at once to the same participants with a multi-lot auction, see MultiLotSale. 
+ * In a continuous double auction buyers and sellers trade with limit orders, see organizeDoubleAuction and submitOrders. 
+ * A call market collects such orders during a window and clears them at one uniform price, see organizeCallMarket. 
  * Upon including this capability the agent can organize auctions or participate in auctions. To organize an auction one has to adopt an internal trigger 
  * which is an instantiation of OrganizeAuction. This will cause the agent to message the participants and handle their responses. If the auction enters a 
  * new round, or is finished, then the auctioneer will receive an internal trigger from the type AuctionResult. 
@@ -45,8 +56,18 @@ import oo2apl.plan.builtin.DecoupledPlanBodyInterface;
  * Important implementation notes:
  * 	- An agent only has one strategy per auction type, i.e., it is not supported that an agent can use different strategies simultaneously
  *  - The participants of the auction need to be known before the auction starts. It is not supported that agents join whilst the auction is ongoing.
+ *  - A Dutch auction can skip the prices at which nobody accepts, see OrganizeAuction.setClockSkipping. 
+ *  - An English auction can bid on behalf of the participants with proxies, see OrganizeAuction.setProxyBidding. 
+ *  - By default a round waits for all participants. Use OrganizeAuction.setRoundDeadline so that slow or crashed participants cannot stall an auction. 
+ *    The auctioneer must then be registered after its creation, see registerAuctioneer. 
  *  - Currently demands are tied to classes of tradeable goods. In the future this might be updated. 
  *  - Manually removing a buyer's demands during auctions can result in unexpected behavior and should be prevented. 
+ *  - The auctioneer context is thread-safe and can be shared between agents, see TraderCapability(AuctioneerContext). 
+ *  - The auctions of an auctioneer can be journaled, so that they are recovered after a crash, see recoverAuctions and AuctionJournal. 
+ *  - Co-located agents can use a shared AuctionBulletinBoard instead of announcement messages, see OrganizeAuction.setBulletinBoard. 
+ *  - Agents can take part in auctions on other nodes through an AuctionGateway, see GatewayCapability. 
+ *  - A double auction trades until the deadline of its round passes or until AuctioneerContext.closeAuction is called. 
+ *  - For very large sets of participants an auction can be run hierarchically via relays, see OrganizeAuction.setRelays and RelayCapability. 
  *  
  * @author Bas Testerink
  *
@@ -58,13 +79,31 @@ public final class TraderCapability extends AgentBuilder {
 	protected final BuyerContext buyerContext;
 	
 	public TraderCapability(){
-		this.auctioneerContext = new AuctioneerContext();
+		this(new AuctioneerContext());
+	}
+	
+	/** Create the capability with an auctioneer context that may be shared with other agents. Agents that share the 
+	 * context keep the bookkeeping of all their auctions in one place (e.g. the worker agents of an auction house), whilst 
+	 * each agent still handles the responses of the auctions that it organized itself. As the agents run in parallel on 
+	 * the platform, so do their auctions. */
+	public TraderCapability(final AuctioneerContext auctioneerContext){
+		this.auctioneerContext = auctioneerContext;
 		this.buyerContext = new BuyerContext(); 
 		super.addContext(this.auctioneerContext);
 		super.addContext(this.buyerContext);
 		super.addInternalTriggerPlanScheme(new OrganizeAuctionScheme());
 		super.addMessagePlanScheme(new HandleAuctionAnnouncement());
+		super.addMessagePlanScheme(new HandleBoardWakeUpScheme());
 		super.addMessagePlanScheme(new HandleParticipantResponseScheme());
+		super.addExternalTriggerPlanScheme(new HandleRoundDeadlineScheme());
+	}
+
+	/** Register the agent that was created with this capability as auctioneer, with the interface that the platform 
+	 * produced when the agent was created, so that the deadlines of the rounds of its auctions are delivered to it. See 
+	 * AuctioneerContext.registerAuctioneer. */
+	public final TraderCapability registerAuctioneer(final ExternalProcessToAgentInterface agent){
+		this.auctioneerContext.registerAuctioneer(agent);
+		return this;
 	}
 
 	/** Add an evaluation function so that objects of a certain class can be 
@@ -128,8 +167,18 @@ public final class TraderCapability extends AgentBuilder {
 			final T objectForSale, final List<AgentID> participants, final double minimalPrice, final double maximalPrice, final double decrementPerRound, 
 			final int nrOfWinners, final DecoupledPlanBodyInterface<AuctionResult<T>> planForRoundUpdate,
 			final DecoupledPlanBodyInterface<AuctionResult<T>> planForResult){ 
+		organizeAuction(planInterface, new OrganizeAuction<T>(auctionType, objectForSale, participants, minimalPrice, maximalPrice, decrementPerRound, nrOfWinners), 
+				planForRoundUpdate, planForResult);
+	}
+	
+	/** Organize and handle the result of an auction as specified by the given trigger. Use this method if the auction uses 
+	 * optional settings of the OrganizeAuction trigger. The same requirements as for the other organizeAuction method apply. */
+	public static final <T> void organizeAuction(final PlanToAgentInterface planInterface, final OrganizeAuction<T> organizeAuction,
+			final DecoupledPlanBodyInterface<AuctionResult<T>> planForRoundUpdate,
+			final DecoupledPlanBodyInterface<AuctionResult<T>> planForResult){ 
+		final T objectForSale = organizeAuction.getObjectForSale();
 		// This trigger will cause the plan scheme to fire that initiates the organization of the auction
-		planInterface.addInternalTrigger(new OrganizeAuction<T>(auctionType, objectForSale, participants, minimalPrice, maximalPrice, decrementPerRound, nrOfWinners));
+		planInterface.addInternalTrigger(organizeAuction);
 		
 		// This selector is used to intercept the auction notifications that are send to the auctioneer 
 		Predicate<Trigger> selector = (Trigger t) -> {
@@ -176,6 +225,49 @@ public final class TraderCapability extends AgentBuilder {
 			final DecoupledPlanBodyInterface<AuctionResult<T>> planForResult){ 
 		organizeAuction(planInterface, AuctionType.DUTCH, objectForSale, participants, minimalPrice, maximalPrice, decrementPerRound, nrOfWinners, planForRoundUpdate, planForResult);
 	}
+
+	/** Ensures that a multi-lot auction is organized and handled. All lots are announced in one message and cleared in one 
+	 * round, use LotResult.split to get the result per lot. */
+	public static final <T> void organizeMultiLotAuction(final PlanToAgentInterface planInterface,
+			final MultiLotSale<T> sale, final List<AgentID> participants, 
+			final DecoupledPlanBodyInterface<AuctionResult<MultiLotSale<T>>> planForResult){ 
+		organizeAuction(planInterface, AuctionType.MULTILOT, sale, participants, 0d, 0d, 0d, sale.getTotalQuantity(), (AuctionResult<MultiLotSale<T>> result, PlanToAgentInterface pi)->{}, planForResult);
+	}
+	
+	/** Organize a continuous double auction of the item, which trades during the given session in milliseconds. The auctioneer 
+	 * sends the trades to the traders as OrderFill messages, the result reports the orders that are left in the book. */
+	public static final <T> void organizeDoubleAuction(final PlanToAgentInterface planInterface, final T itemForSale, 
+			final List<AgentID> participants, final long sessionMillis, 
+			final DecoupledPlanBodyInterface<AuctionResult<T>> planForResult){ 
+		organizeAuction(planInterface, new OrganizeAuction<T>(AuctionType.DOUBLE, itemForSale, participants, 0d, 0d, 0d, 0).setRoundDeadline(sessionMillis), 
+				(AuctionResult<T> result, PlanToAgentInterface pi)->{}, planForResult);
+	}
+	
+	/** Organize a call market of the item that collects orders during the given window in milliseconds and then clears them at 
+	 * one uniform price. Buy orders below the minimal price are ignored. The result reports the traded quantity of each order 
+	 * that traded, all at the clearing price. */
+	public static final <T> void organizeCallMarket(final PlanToAgentInterface planInterface, final T itemForSale, 
+			final List<AgentID> participants, final double minimalPrice, final long windowMillis, 
+			final DecoupledPlanBodyInterface<AuctionResult<T>> planForResult){ 
+		organizeAuction(planInterface, new OrganizeAuction<T>(AuctionType.CALL, itemForSale, participants, minimalPrice, 0d, 0d, 0).setRoundDeadline(windowMillis), 
+				(AuctionResult<T> result, PlanToAgentInterface pi)->{}, planForResult);
+	}
+	
+	/** Submit limit orders to an ongoing double auction or call market of the auctioneer. */
+	public static final void submitOrders(final PlanToAgentInterface planInterface, final AgentID auctioneer, final UUID auctionID, final List<LimitOrder> orders){
+		AuctionMessaging.send(planInterface, auctioneer, new ParticipantResponse(auctionID, planInterface.getAgentID(), new ArrayList<Bid>(orders)));
+	}
+	
+	/** Recover the auctions of the journal into the auctioneer context of the agent and journal its auctions from now on (see 
+	 * AuctioneerContext.enableJournal). A recovered auction that finished before the crash is reported and cleaned up, the 
+	 * current round of any other recovered auction is announced again to the respondents that did not respond yet and its 
+	 * deadline is restarted. The results are delivered to the agent as AuctionResult internal triggers. */
+	public static final List<UUID> recoverAuctions(final PlanToAgentInterface planInterface, final AuctionJournal<?> journal) throws IOException {
+		List<UUID> recovered = planInterface.getContext(AuctioneerContext.class).enableJournal(journal);
+		for(UUID auctionID : recovered)
+			OrganizeAuctionScheme.resumeAuction(planInterface, auctionID);
+		return recovered;
+	}
 	
 	/** Call upon the buyer context to update the demands given the result of the auction. If the auction was won by this agent 
 	 * then it will lower its desired quantity according to the allocated won resources.  */
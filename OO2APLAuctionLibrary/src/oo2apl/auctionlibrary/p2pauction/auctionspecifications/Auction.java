@@ -1,8 +1,11 @@
 package oo2apl.auctionlibrary.p2pauction.auctionspecifications;
   
+import java.util.List;
 import java.util.UUID;
 
 import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.journal.AuctionJournal;
+import oo2apl.auctionlibrary.p2pauction.metrics.AuctioneerMetrics;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
@@ -11,6 +14,21 @@ import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
  * An auction specifies the rules of the auction; i.e. the state of the auction, how this state transitions over rounds (if applicable) 
  * and how bids are processed. 
  * 
+ * The responses of an auction are processed one at a time (handleParticipantResponse is synchronized on the auction), 
+ * so implementations do not need to synchronize their own state. Different auctions can process responses in parallel. 
+ * 
+ * The rounds are numbered from 0. A round is closed when all respondents responded or when its deadline passed, see 
+ * handleRoundDeadline. Responses for another round than the current one, and responses after the auction finished, 
+ * are ignored. A continuous auction (see isContinuous) stays in round 0 and processes every response as it arrives, 
+ * until its deadline passes or it is closed. 
+ * 
+ * If metrics are set, then the auction records its responses, the latency of its rounds (from the start of the round 
+ * until it closed) and the time that the final result takes. Without metrics nothing is measured. 
+ * 
+ * If a journal is set, then the auction records the responses that it accepts, the deadlines that close its rounds and 
+ * its closing in the journal, in the order in which it processes them. The rules of an auction must therefore only 
+ * depend on these inputs, so that replaying them rebuilds the auction (see AuctioneerContext.enableJournal). 
+ * 
  * @author Bas Testerink
  * @param <T>
  */
@@ -18,32 +36,104 @@ public abstract class Auction<T> {
 	protected final OrganizeAuction<T> trigger; 
 	protected final UUID auctionID;
 	private int responseCounter;  
+	private int round;
+	private boolean finished;
+	private AuctioneerMetrics metrics; // Null if the auction is not measured
+	private long roundStart; // The System.nanoTime at which the current round started, if measured
+	private AuctionJournal<?> journal; // Null if the auction is not journaled
 	
 	public Auction(final OrganizeAuction<T> trigger, final UUID auctionID){
 		this.trigger = trigger; 
 		this.auctionID = auctionID; 
 		this.responseCounter = 0; 
+		this.round = 0;
+		this.finished = false;
 	} 
 	
 	/** Process the response of an auction participant. */
-	public final AuctionResult<?> handleParticipantResponse(final ParticipantResponse response){
-		this.responseCounter++; 
+	public final synchronized AuctionResult<?> handleParticipantResponse(final ParticipantResponse response){
+		// Ignore responses that arrive too late
+		if(this.finished || (response.getRound() != ParticipantResponse.ANY_ROUND && response.getRound() != this.round))
+			return AuctionResult.WAITING;
+		if(this.metrics != null) this.metrics.responseReceived(response.getBids().size());
+		if(this.journal != null) this.journal.recordResponse(response);
 		// Store the bids
 		storeBids(response); 
+		if(isContinuous()) return AuctionResult.WAITING; // Only the deadline or close() ends the round
+		this.responseCounter++; 
 		// Check if all awaited responses are in
-		if(this.responseCounter == this.trigger.getParticipants().size()){ 
-			// Reset the counter
-			this.responseCounter = 0; 
-			// Check for winners if the auction is finished
-			if(isFinished()) return getPersonalResults(); 
-			else return nextRound(); // Otherwise move to next round
-		}
+		if(this.responseCounter == getAwaitedRespondents().size()) 
+			return closeRound();
 		return AuctionResult.WAITING;
 	}
 	
+	/** Close the given round with the responses that arrived so far, the missing respondents abstain. Has no effect 
+	 * (and produces AuctionResult.WAITING) if the round was already closed. */
+	public final synchronized AuctionResult<?> handleRoundDeadline(final int round){
+		if(this.finished || round != this.round) return AuctionResult.WAITING;
+		if(this.journal != null) this.journal.recordDeadline(this.auctionID, round);
+		return closeRound();
+	}
+	
+	/** Close the current round regardless of the responses, which finishes a continuous auction. Has no effect (and produces 
+	 * AuctionResult.WAITING) if the auction already finished. */
+	public final synchronized AuctionResult<?> close(){
+		if(this.finished) return AuctionResult.WAITING;
+		if(this.journal != null) this.journal.recordClosed(this.auctionID);
+		return closeRound();
+	}
+	
+	/** The agents that are asked to respond in the current round. */
+	public final synchronized List<AgentID> getRoundRespondents(){ return getAwaitedRespondents(); }
+	
+	/** Record the metrics of the auction in the given metrics from now on. */
+	public final synchronized void setMetrics(final AuctioneerMetrics metrics){
+		this.metrics = metrics;
+		this.roundStart = System.nanoTime();
+	}
+	
+	/** Record the inputs of the auction in the given journal from now on. */
+	public final synchronized void setJournal(final AuctionJournal<?> journal){ this.journal = journal; }
+	
+	/** The trigger that organized the auction. */
+	public final OrganizeAuction<T> getTrigger(){ return this.trigger; }
+	
+	/** The number of the current round. */
+	public final synchronized int getRound(){ return this.round; }
+	
+	private final AuctionResult<?> closeRound(){
+		// Reset the counter
+		this.responseCounter = 0; 
+		this.round++;
+		long closingStart = this.metrics == null ? 0 : System.nanoTime();
+		// Check for winners if the auction is finished
+		if(isFinished()){
+			this.finished = true;
+			AuctionResult<T> result = getPersonalResults(); 
+			if(this.metrics != null) this.metrics.auctionFinished(closingStart - this.roundStart, System.nanoTime() - closingStart);
+			return result;
+		} else { // Otherwise move to next round
+			AuctionResult<?> result = nextRound(); 
+			if(this.metrics != null){
+				long now = System.nanoTime();
+				this.metrics.roundClosed(now - this.roundStart);
+				this.roundStart = now;
+			}
+			return result;
+		}
+	}
+	
 	/** Create the announcement that is sent to participant upon the creation of the auction. */
 	public abstract AuctionAnnouncement<T> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer);
 	
+	/** The agents of which a response is awaited in the current round, which are the respondents of the trigger unless the 
+	 * auction asks only some of them. */
+	protected List<AgentID> getAwaitedRespondents(){ return this.trigger.getRespondents(); }
+	
+	/** Whether the auction trades continuously instead of in rounds. Responses are then not counted, so the auction only 
+	 * closes on its deadline or with close(). */
+	protected boolean isContinuous(){ return false; }
+	
 	/** A check to determine whether the auction is finished. Will be called after all participants have responded. */
 	protected abstract boolean isFinished();
 	
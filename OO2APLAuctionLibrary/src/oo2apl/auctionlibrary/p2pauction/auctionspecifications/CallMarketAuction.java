@@ -0,0 +1,146 @@
+package oo2apl.auctionlibrary.p2pauction.auctionspecifications;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.BidBook;
+import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder;
+import oo2apl.auctionlibrary.p2pauction.RoundSummary;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder.Side;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.BidderRegistry;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+/**
+ * A call market collects buy and sell orders during a window and then clears all of them at once against one uniform
+ * price. LimitOrders keep their side and other bids are buy orders; buy orders below the minimal price are ignored. If
+ * the trigger has a round deadline then that is the window and every participant may submit orders any number of
+ * times, otherwise the market clears when all participants responded.
+ *
+ * The orders are stored in primitive bid books, the sell orders with negated prices so that the book orders them from
+ * low to high. At clearing the sorted orders are merged into the aggregated demand curve (the buy quantity at or above
+ * a price) and supply curve (the sell quantity at or below a price) over all distinct prices. The demand curve falls
+ * and the supply curve rises, so the first price where supply covers demand is found with a binary search. The traded
+ * quantity is largest at that price or at the one before it; if both trade the same quantity, their midpoint is used.
+ *
+ * Every order that trades pays or receives the clearing price. If one side offers more than is traded, its orders are
+ * filled in the order of Bid.COMPARATOR (best price first). The result reports the personal results of the buy orders
+ * and then of the sell orders, all orders from the best price to the worst, and the sell quantity that did not trade as
+ * quantity available. Its summary has the clearing price as best price and price at cut off, and the traded quantity.
+ *
+ * @author Bas Testerink
+ * @param <T>
+ */
+public class CallMarketAuction<T> extends Auction<T> {
+	private final BidderRegistry bidders;
+	private final BidBook buyOrders, sellOrders; // The prices of the sell orders are negated
+
+	public CallMarketAuction(final OrganizeAuction<T> trigger, final UUID auctionID) {
+		super(trigger, auctionID);
+		this.bidders = new BidderRegistry();
+		this.buyOrders = new BidBook(trigger.getParticipants().size());
+		this.sellOrders = new BidBook(trigger.getParticipants().size());
+	}
+
+	/** {@inheritDoc} */
+	public final AuctionAnnouncement<T> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer){
+		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.trigger.getMinimalPrice(), this.trigger.getQuantity(), this.trigger.getDecrementPerRound());
+	}
+
+	/** With a window the market only clears on its deadline. */
+	protected final boolean isContinuous(){ return this.trigger.hasRoundDeadline(); }
+
+	/** A call market clears once. */
+	protected final boolean isFinished(){ return true; }
+
+	/** A call market has no further rounds. */
+	protected final AuctionResult<?> nextRound(){ return AuctionResult.WAITING; }
+
+	/** {@inheritDoc} */
+	protected final void storeBids(final ParticipantResponse response){
+		for(Bid bid : response.getBids()){
+			if(bid instanceof LimitOrder && !((LimitOrder) bid).isBuy())
+				this.sellOrders.add(-bid.getPrice(), bid.getQuantity(), this.bidders.getOrdinal(bid.getBidder()));
+			else if(bid.getPrice() >= this.trigger.getMinimalPrice())
+				this.buyOrders.add(bid.getPrice(), bid.getQuantity(), this.bidders.getOrdinal(bid.getBidder()));
+		}
+	}
+
+	/** Clear all orders against the uniform price. */
+	protected final AuctionResult<T> getPersonalResults(){
+		int[] buys = this.buyOrders.sortedIndices(0, this.buyOrders.size(), this.bidders); // High to low
+		int[] sells = this.sellOrders.sortedIndices(0, this.sellOrders.size(), this.bidders); // Low to high
+		double price = findClearingPrice(buys, sells);
+		// The eligible quantity of each side, of which the shortest is traded
+		long demand = 0, supply = 0, totalSupply = 0;
+		for(int buy : buys)
+			if(this.buyOrders.getPrice(buy) >= price) demand += this.buyOrders.getQuantity(buy);
+		for(int sell : sells){
+			totalSupply += this.sellOrders.getQuantity(sell);
+			if(-this.sellOrders.getPrice(sell) <= price) supply += this.sellOrders.getQuantity(sell);
+		}
+		long traded = Math.min(demand, supply); // 0 if the price is NaN
+		List<AuctionPersonalResult> results = new ArrayList<>();
+		List<Bid> orders = new ArrayList<>(buys.length + sells.length);
+		allocate(this.buyOrders, buys, Side.BUY, price, traded, results, orders);
+		allocate(this.sellOrders, sells, Side.SELL, price, traded, results, orders);
+		RoundSummary summary = new RoundSummary(price, traded, price, orders.size());
+		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, results, orders, price,
+				(int) Math.min(Integer.MAX_VALUE, totalSupply - traded), this.trigger.getDecrementPerRound(), new ArrayList<>(), summary);
+	}
+
+	/** Find the price that trades the largest quantity, or Double.NaN if no orders can trade. */
+	private final double findClearingPrice(final int[] buys, final int[] sells){
+		if(buys.length == 0 || sells.length == 0) return Double.NaN;
+		// Merge the distinct prices from low to high with the demand and supply at each price
+		double[] prices = new double[buys.length + sells.length];
+		long[] demand = new long[prices.length], supply = new long[prices.length];
+		long remainingDemand = 0, supplied = 0;
+		for(int buy : buys) remainingDemand += this.buyOrders.getQuantity(buy);
+		int b = buys.length - 1, s = 0, size = 0;
+		while(b >= 0 || s < sells.length){
+			double price = b < 0 ? -this.sellOrders.getPrice(sells[s]) : s == sells.length ? this.buyOrders.getPrice(buys[b])
+					: Math.min(this.buyOrders.getPrice(buys[b]), -this.sellOrders.getPrice(sells[s]));
+			demand[size] = remainingDemand; // The buy orders at this price still count
+			while(b >= 0 && this.buyOrders.getPrice(buys[b]) == price) remainingDemand -= this.buyOrders.getQuantity(buys[b--]);
+			while(s < sells.length && -this.sellOrders.getPrice(sells[s]) == price) supplied += this.sellOrders.getQuantity(sells[s++]);
+			supply[size] = supplied;
+			prices[size++] = price;
+		}
+		// Find the first price where the supply covers the demand
+		int low = 0, high = size;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(supply[middle] >= demand[middle]) high = middle;
+			else low = middle + 1;
+		}
+		// Below that price the supply is traded, from that price on the demand
+		long tradedAt = low < size ? demand[low] : 0, tradedBefore = low > 0 ? supply[low - 1] : 0;
+		if(tradedAt == 0 && tradedBefore == 0) return Double.NaN;
+		else if(tradedAt > tradedBefore) return prices[low];
+		else if(tradedAt < tradedBefore) return prices[low - 1];
+		else return (prices[low - 1] + prices[low]) / 2;
+	}
+
+	/** Fill the orders of a side in their order until the traded quantity is reached, and materialize all of them. */
+	private final void allocate(final BidBook book, final int[] sorted, final Side side, final double price, final long traded,
+			final List<AuctionPersonalResult> results, final List<Bid> orders){
+		long remaining = traded;
+		for(int index : sorted){
+			LimitOrder order = new LimitOrder(side, side == Side.BUY ? book.getPrice(index) : -book.getPrice(index), book.getQuantity(index),
+					this.bidders.getBidder(book.getBidder(index)));
+			orders.add(order);
+			if(remaining > 0){
+				int quantity = (int) Math.min(remaining, order.getQuantity());
+				results.add(new AuctionPersonalResult(order, price, quantity));
+				remaining -= quantity;
+			}
+		}
+	}
+}
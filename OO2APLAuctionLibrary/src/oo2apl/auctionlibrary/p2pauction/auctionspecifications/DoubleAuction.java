@@ -0,0 +1,97 @@
+package oo2apl.auctionlibrary.p2pauction.auctionspecifications;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder;
+import oo2apl.auctionlibrary.p2pauction.RoundSummary;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.LimitOrderBook;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrderFill;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+/**
+ * A continuous double auction in which buyers and sellers trade an item with limit orders. The bids of a response are
+ * submitted to a limit order book in the order of the response, where LimitOrders keep their side and other bids are
+ * buy orders. Orders are matched on arrival with price-time priority and the trades are kept as fills until the
+ * auctioneer takes them (see takeFills) to send them to the traders.
+ *
+ * The auction is continuous: it stays open until the deadline of its round passes (the trading session) or until it
+ * is closed. The final result reports the orders that rest in the book, buy orders first, the last trade price as
+ * price, and the resting sell quantity as quantity available. Its summary has the best bid as best price, the traded
+ * quantity as total quantity, the best ask as price at cut off and the amount of trades as amount of bids.
+ *
+ * @author Bas Testerink
+ * @param <T>
+ */
+public class DoubleAuction<T> extends Auction<T> {
+	private final LimitOrderBook book;
+	private List<OrderFill> fills; // The fills that were not taken yet
+	private double lastPrice;
+	private long tradedQuantity;
+	private int trades;
+
+	public DoubleAuction(final OrganizeAuction<T> trigger, final UUID auctionID) {
+		super(trigger, auctionID);
+		this.book = new LimitOrderBook();
+		this.fills = new ArrayList<>();
+		this.lastPrice = Double.NaN;
+	}
+
+	/** {@inheritDoc} */
+	public final AuctionAnnouncement<T> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer){
+		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.trigger.getMinimalPrice(), this.trigger.getQuantity(), this.trigger.getDecrementPerRound());
+	}
+
+	/** A double auction trades continuously. */
+	protected final boolean isContinuous(){ return true; }
+
+	/** A double auction finishes when it is closed. */
+	protected final boolean isFinished(){ return true; }
+
+	/** A double auction has no rounds. */
+	protected final AuctionResult<?> nextRound(){ return AuctionResult.WAITING; }
+
+	/** Submit the orders of the response to the book. */
+	protected final void storeBids(final ParticipantResponse response){
+		for(Bid bid : response.getBids()){
+			LimitOrder order = bid instanceof LimitOrder ? (LimitOrder) bid : LimitOrder.buy(bid.getPrice(), bid.getQuantity(), bid.getBidder());
+			this.book.submit(order, this::addFill);
+		}
+	}
+
+	private final void addFill(final LimitOrder buyOrder, final LimitOrder sellOrder, final double price, final int quantity){
+		this.fills.add(new OrderFill(super.auctionID, buyOrder, sellOrder, price, quantity));
+		this.lastPrice = price;
+		this.tradedQuantity += quantity;
+		this.trades++;
+	}
+
+	/** Produce the fills since the previous call and forget them. */
+	public final synchronized List<OrderFill> takeFills(){
+		if(this.fills.isEmpty()) return Collections.emptyList();
+		List<OrderFill> taken = this.fills;
+		this.fills = new ArrayList<>();
+		return taken;
+	}
+
+	/** Report the resting orders and the trading of the session. */
+	protected final AuctionResult<T> getPersonalResults(){
+		List<Bid> restingOrders = new ArrayList<>(this.book.size());
+		restingOrders.addAll(this.book.getRestingOrders(true));
+		long askVolume = 0;
+		for(LimitOrder order : this.book.getRestingOrders(false)){
+			restingOrders.add(order);
+			askVolume += order.getQuantity();
+		}
+		RoundSummary summary = new RoundSummary(this.book.getBestBidPrice(), this.tradedQuantity, this.book.getBestAskPrice(), this.trades);
+		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, Collections.emptyList(), restingOrders, this.lastPrice,
+				(int) Math.min(Integer.MAX_VALUE, askVolume), this.trigger.getDecrementPerRound(), Collections.emptyList(), summary);
+	}
+}
@@ -6,8 +6,13 @@ import java.util.List;
 import java.util.UUID;
 
 import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.Allocation;
+import oo2apl.auctionlibrary.engine.BidBook;
+import oo2apl.auctionlibrary.engine.DutchClearing;
 import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
 import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.RoundSummary;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.BidderRegistry;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
@@ -15,77 +20,67 @@ import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
 /**
  * A Dutch auction has a current price that drops per round. A bidder can accept the current 
- * price for a given quantity of goods. 
+ * price for a given quantity of goods. The rules are those of the engine's DutchClearing, which keeps the accepted bids 
+ * as primitives with the agents' ordinals of a bidder registry. The bids of the current round are the ones that were 
+ * added since the start of the round. 
+ * 
+ * With clock skipping (see OrganizeAuction.setClockSkipping) each response declares the highest price at which its 
+ * bidder may accept: the highest price of its bids, where accepting bids count as the current price, or no price if the 
+ * response has no bids. If every respondent declared, then the clock drops past all prices above the highest declaration, 
+ * which are exactly the rounds in which nobody would have accepted. 
  * 
  * @author Bas Testerink
  * @param <T>
  */
 public class DutchAuction<T> extends Auction<T> {
-	private final List<Bid> allBids;
-	private List<Bid> bidsThisRound;
-	private int quantityAvailable;
-	private double currentPrice;
+	private final BidderRegistry bidders;
+	private final DutchClearing clearing;
 
 	public DutchAuction(final OrganizeAuction<T> trigger, final UUID auctionID) {
 		super(trigger, auctionID);  
-		this.allBids = new ArrayList<>();
-		this.bidsThisRound = new ArrayList<>();
-		this.quantityAvailable = trigger.getQuantity();
-		this.currentPrice = trigger.getMaximalPrice();
+		this.bidders = new BidderRegistry();
+		this.clearing = new DutchClearing(trigger.getMinimalPrice(), trigger.getMaximalPrice(), trigger.getDecrementPerRound(), trigger.getQuantity(), 
+				this.bidders, trigger.isClockSkipping());
 	}
 	
 	/** {@inheritDoc} */
 	public final AuctionAnnouncement<T> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer){
-		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.currentPrice, this.quantityAvailable, this.trigger.getDecrementPerRound());
+		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.clearing.getCurrentPrice(), this.clearing.getQuantityAvailable(), this.trigger.getDecrementPerRound());
 	}
 
 	/** A Dutch auction is finished if there are no more units to sell or if another round would drop the price below minimum. */
-	protected final boolean isFinished(){ 
-		return this.quantityAvailable <= 0 
-				|| (this.currentPrice - this.trigger.getDecrementPerRound()) < this.trigger.getMinimalPrice(); 
-		}
+	protected final boolean isFinished(){ return this.clearing.isFinished(); }
 
-	/** A Dutch round consists of decrementing the price and making a report. */
+	/** A Dutch round consists of decrementing the price and making a report. Accepted bids are never replaced, so the report 
+	 * has no removed bids. */
 	protected final AuctionResult<?> nextRound(){ 
 		// Lower the price
-		this.currentPrice -= this.trigger.getDecrementPerRound();	 
+		int roundStart = this.clearing.nextRound(this.trigger.getRespondents().size());
 		// Make report
-		this.bidsThisRound.sort(Bid.COMPARATOR);
-		AuctionResult<T> result = new AuctionResult<T>(super.auctionID, ResultType.NEWROUND, this.trigger, Collections.emptyList(), this.bidsThisRound, this.currentPrice, this.quantityAvailable, this.trigger.getDecrementPerRound());
-		this.bidsThisRound = new ArrayList<>();
-		return result;	
+		BidBook acceptedBids = this.clearing.getAcceptedBids();
+		List<Bid> bidsThisRound = this.bidders.toBids(acceptedBids, acceptedBids.sortedIndices(roundStart, acceptedBids.size(), this.bidders));
+		RoundSummary summary = new RoundSummary(this.clearing.getBestPrice(), this.trigger.getQuantity() - (long) this.clearing.getQuantityAvailable(), 
+				this.clearing.getPriceAtCutOff(), acceptedBids.size());
+		return new AuctionResult<T>(super.auctionID, ResultType.NEWROUND, this.trigger, Collections.emptyList(), bidsThisRound, this.clearing.getCurrentPrice(), 
+				this.clearing.getQuantityAvailable(), this.trigger.getDecrementPerRound(), Collections.emptyList(), summary);	
 	}
 
 	/** {@inheritDoc} */
 	protected final void storeBids(final ParticipantResponse response){
-		response.getBids().forEach((Bid bid) ->{
-			// If the agent accepted the current price, then add its bid
-			if(bid.getQuantity() > 0){ 
-				// Ensure that the current price is used
-				Bid price = (bid.getPrice() == this.currentPrice? bid : new Bid(this.currentPrice, bid.getQuantity(), bid.getBidder()));
-				this.allBids.add(price);
-				this.bidsThisRound.add(price); 
-				// Update the available quantity
-				this.quantityAvailable -= bid.getQuantity();
-			}
-		}); 
+		this.clearing.respond();
+		for(Bid bid : response.getBids())
+			this.clearing.bid(this.bidders.getOrdinal(bid.getBidder()), bid.getPrice(), bid.getQuantity());
 	}
 	
-	/** The bids are ordered and the top bids are winners until the available quantity is reached. If a bid is a winning bid, 
-	 * then its price per unit is that of the next bid.If there is no next bid, then the bid's original price is used. */
+	/** The accepted bids are ordered and the top bids are winners until the available quantity is reached. Each winning bid 
+	 * pays the price that it accepted. */
 	protected final AuctionResult<T> getPersonalResults(){  
-		List<AuctionPersonalResult> winners = new ArrayList<>();
-		// Sort the bids from highest to lowest
-		this.allBids.sort(Bid.COMPARATOR);
-		// Reset quantity
-		this.quantityAvailable = this.trigger.getQuantity();
-		// Add winners until quantity or end of bids is reached
-		for(int i = 0; i < this.allBids.size() && this.quantityAvailable > 0; i++){
-			Bid bid = this.allBids.get(i);
-			// Ensure that not too many are sold because at the final price multiple bids came in
-			winners.add(new AuctionPersonalResult(bid, bid.getPrice(), Math.min(this.quantityAvailable, bid.getQuantity()))); 
-			this.quantityAvailable -= bid.getQuantity();
-		} 
-		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, winners, this.allBids, this.currentPrice, Math.max(0, this.quantityAvailable), this.trigger.getDecrementPerRound()); 
+		Allocation allocation = this.clearing.clear();
+		// Materialize the ranked bids, of which the first ones are the winners
+		List<Bid> sortedBids = this.bidders.toBids(this.clearing.getAcceptedBids(), this.clearing.getRanking());
+		List<AuctionPersonalResult> winners = new ArrayList<>(allocation.getNrOfWinners());
+		for(int i = 0; i < allocation.getNrOfWinners(); i++)
+			winners.add(new AuctionPersonalResult(sortedBids.get(i), allocation.getPrice(i), allocation.getQuantity(i))); 
+		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, winners, sortedBids, this.clearing.getCurrentPrice(), allocation.getQuantityAvailable(), this.trigger.getDecrementPerRound()); 
 	}
-}
\ No newline at end of file
+}
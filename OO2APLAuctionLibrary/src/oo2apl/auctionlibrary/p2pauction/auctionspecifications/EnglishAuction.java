@@ -2,14 +2,19 @@ package oo2apl.auctionlibrary.p2pauction.auctionspecifications;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.Allocation;
+import oo2apl.auctionlibrary.engine.EnglishClearing;
 import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
 import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.RoundSummary;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.EnglishOrderBook;
+import oo2apl.auctionlibrary.p2pauction.triggers.AggregatedResponse;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
@@ -22,127 +27,119 @@ import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
  * ordered on price first, and then quantity for tie-breaking, and units are assigned accordingly. 
  * An agent may submit multiple bids per round which will replace the previous bids. However, the new bids are only accepted if the agent's 
  * lowest price/quantity bid is higher than the previous lowest.  
+ * The rules are those of the engine's EnglishClearing. The bids are kept in an order book that is updated incrementally 
+ * when an agent replaces its bids, so that a round does not have to sort all the bids again. 
+ * In a hierarchical auction the relays apply the bidding rules to their shards. The competitive bids that a relay forwards 
+ * then replace the bids that it forwarded before, and the auction continues as long as bids are accepted in some shard. 
+ * 
+ * With proxy bidding (see OrganizeAuction.setProxyBidding) the bids are the maximum prices up to which the auctioneer bids 
+ * on behalf of the bidders. The book then orders the proxies, and after each round only the agents with a proxy that does 
+ * not receive its full quantity are asked to respond, so that they may raise it. The auction finishes when no proxy was 
+ * raised or when no proxy is outbid. A winning proxy pays its maximum, which is what the winner pays when it bids that 
+ * maximum itself, so that the outcome is the same as that of the auction without proxies. 
  * @author Bas Testerink
  * @param <T>
  */
 public class EnglishAuction<T> extends Auction<T> {
-	private final Map<AgentID, List<Bid>> allBids;
+	private final EnglishOrderBook allBids;
+	private final EnglishClearing clearing;
 	private List<Bid> bidsThisRound; 
-	// In an English auction, the current price indicates that if you bid that price plus an increment, then you outbid another person and you are guaranteed
-	// of at least one unit if the auction ends the next round.
-	private double currentPrice;
+	private List<Bid> removedThisRound; // The bids that were replaced by bids of this round
+	private List<AgentID> awaitedRespondents; // The agents that are asked to respond this round
 
 	public EnglishAuction(final OrganizeAuction<T> trigger, final UUID auctionID) {
 		super(trigger, auctionID);  
-		this.allBids = new HashMap<>();
+		this.allBids = new EnglishOrderBook(trigger.getParticipants());
+		this.clearing = new EnglishClearing(this.allBids.getBook(), trigger.getMinimalPrice(), trigger.getQuantity(), trigger.isProxyBidding());
 		this.bidsThisRound = new ArrayList<>(); 
-		this.currentPrice = trigger.getMinimalPrice() - 1;
+		this.removedThisRound = new ArrayList<>();
+		this.awaitedRespondents = trigger.getRespondents();
 	} 
 	
 	/** {@inheritDoc} */
 	public final AuctionAnnouncement<T> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer){
-		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.currentPrice, this.trigger.getQuantity(), this.trigger.getDecrementPerRound());
+		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.clearing.getCurrentPrice(), this.trigger.getQuantity(), this.trigger.getDecrementPerRound());
 	}
 	
 	/** An English auction is finished if there are no bids in the current round, because that indicates that nobody wants to 
-	 * bid on more units, or is willing to increase its minimal price per unit. */
-	protected final boolean isFinished(){ return this.bidsThisRound.isEmpty(); }
+	 * bid on more units, or is willing to increase its minimal price per unit. With proxies only the outbid proxies can 
+	 * still change the outcome. */
+	protected final boolean isFinished(){ return this.clearing.isFinished(); }
+	
+	/** {@inheritDoc} */
+	protected final List<AgentID> getAwaitedRespondents(){ return this.awaitedRespondents; }
 
 	/** An English auction round consists of determining the new current price and making a report. */
 	protected final AuctionResult<?> nextRound(){ 
-		// Determine the new lowest price per unit
-		List<Bid> sorted = getAllBidsFlatAndSorted(); 
-		int available = this.trigger.getQuantity();
-		for(Bid bid : sorted){
-			// If the next bid is a winning bid that would exceed the available quantity, then it means that 
-			// outbidding the next bid will ensure you at least some units if no-one else changes bids. Hence 
-			// the new current price is the price of the next bid in that case. 
-			available -= bid.getQuantity();
-			if(available <= 0){
-				this.currentPrice = bid.getPrice(); 
-				break;
-			}
-		} 
+		// With proxies only the agents with an outbid proxy are asked to respond, as they may raise it
+		if(this.clearing.isProxyBidding()) this.awaitedRespondents = this.allBids.getOutbidSubmitters(this.trigger.getQuantity());
 		
-		// Make report
+		// Raise the current price to the price at which the quantity is covered
+		double priceAtQuantity = this.clearing.nextRound();
+		
+		// Make report of the changes of this round
 		this.bidsThisRound.sort(Bid.COMPARATOR);
-		AuctionResult<T> result = new AuctionResult<T>(super.auctionID, ResultType.NEWROUND, this.trigger, Collections.emptyList(), this.bidsThisRound, this.currentPrice, this.trigger.getQuantity(), this.trigger.getDecrementPerRound());
+		RoundSummary summary = new RoundSummary(this.allBids.getBestPrice(), this.allBids.getTotalQuantity(), priceAtQuantity, this.allBids.size());
+		AuctionResult<T> result = new AuctionResult<T>(super.auctionID, ResultType.NEWROUND, this.trigger, Collections.emptyList(), this.bidsThisRound, this.clearing.getCurrentPrice(), this.trigger.getQuantity(), this.trigger.getDecrementPerRound(),
+				this.removedThisRound, summary);
 		this.bidsThisRound = new ArrayList<>();
+		this.removedThisRound = new ArrayList<>();
 		return result;	
 	}
-	
-	
-	private final List<Bid> getAllBidsFlatAndSorted(){
-		List<Bid> allBids = this.allBids.values().stream().reduce(new ArrayList<>(), 
-				(List<Bid> list, List<Bid> bidsFromAgent)->{
-					list.addAll(bidsFromAgent); 
-					return list;
-				});
-		allBids.sort(Bid.COMPARATOR);
-		return allBids;
-	}
+
 
 	/** 
 	 * An agent can submit a list of bids in a round to overwrite its last submitted list of bids. However, an English auction requires a 
-	 * monotonous increase of what an agent is bidding. In this implementation that is interpreted as that an agent's new list of bids cannot have 
-	 * less units that are bid upon than in the previous list of bids, and the minimal price per unit that occurs in the new list of bids must 
-	 * be higher than the minimal price per unit in the previously submitted list of bids. If the new bids do not comply with this constraint, 
+	 * monotonous increase of what an agent is bidding, see EnglishBook.submit. If the new bids do not comply with this constraint, 
 	 * then the entire list of new bids is ignored. 
 	 */
 	protected final void storeBids(final ParticipantResponse response){
-		List<Bid> previousBids = this.allBids.get(response.getBidder());  
-		if(previousBids != null && previousBids.size() > 0){
-			// An agent cannot bid less containers than the previous bids that it made
-			int previousQuantity = previousBids.stream().mapToInt((Bid b)-> b.getQuantity()).sum();
-			int newQuantity = response.getBids().stream().mapToInt((Bid b)-> b.getQuantity()).sum(); 
-			// The minimal price per container cannot be lowered than the minimal price the agent was willing to pay in the previous round
-			Bid previousLowestBid = previousBids.get(previousBids.size()-1); 
-			boolean illegal = response.getBids().stream().filter((Bid b)->{return b.getPrice() < previousLowestBid.getPrice();}).findAny().isPresent();
-			if(newQuantity >= previousQuantity && !illegal){
-				List<Bid> newBids = new ArrayList<>(response.getBids());
-				// Register the bids
-				newBids.sort(Bid.COMPARATOR);
-				// Check whether these are not exactly the same bids as before
-				if(newBids.size() == previousBids.size()){
-					boolean same = true;
-					for(int i = 0; i < newBids.size(); i++)
-						same &=
-							newBids.get(i).getPrice() == previousBids.get(i).getPrice() &&
-							newBids.get(i).getQuantity() == previousBids.get(i).getQuantity();
-					if(!same){ // The total quantity was same or higher, and the lowest price was not lowered, and at least something changed, hence store the new bids
-						this.bidsThisRound.addAll(newBids);
-						this.allBids.put(response.getBidder(), newBids); 
-					}
-				}
+		if(response instanceof AggregatedResponse){
+			storeAggregatedBids((AggregatedResponse) response);
+			return;
+		}
+		List<Bid> previousBids = this.allBids.getBids(response.getBidder());
+		List<Bid> accepted = this.allBids.submitBids(response.getBidder(), response.getBids(), this.clearing.getCurrentPrice());
+		if(!accepted.isEmpty()){
+			this.clearing.addActivity(1);
+			this.bidsThisRound.addAll(accepted);
+			if(previousBids != null) this.removedThisRound.addAll(previousBids);
+		}
+	}
+	
+	/** The bids of a relay were already checked against the bidding rules in its shard, so they replace the previously 
+	 * forwarded bids of the relay. The forwarded bids that were not forwarded before are reported as the bids of this round, 
+	 * and the bids that are no longer forwarded as the removed bids. */
+	private final void storeAggregatedBids(final AggregatedResponse response){
+		int activity = response.getActivity();
+		List<Bid> previousBids = this.allBids.getBids(response.getBidder());
+		// The relay forwards the same bid objects as long as they are not replaced in its shard
+		Set<Bid> previous = Collections.newSetFromMap(new IdentityHashMap<>());
+		if(previousBids != null) previous.addAll(previousBids);
+		List<Bid> newBids = new ArrayList<>(response.getBids());
+		newBids.sort(Bid.COMPARATOR);
+		Set<Bid> forwarded = Collections.newSetFromMap(new IdentityHashMap<>());
+		forwarded.addAll(newBids);
+		for(Bid bid : newBids)
+			if(!previous.contains(bid)){
+				this.bidsThisRound.add(bid);
+				activity++;
 			}
-		} else {
-			// If the agent bids for the first time, then add those bids from the agent that are above the current price
-			List<Bid> newBids = new ArrayList<>();
-			response.getBids().forEach((Bid bid) -> {
-				// Each bid has to be higher than the the minimal price of the auction at the moment
-				if(bid.getPrice() > this.currentPrice){
-					newBids.add(bid);
-					this.bidsThisRound.add(bid);
-				}
-			}); 
-			// Register the bids
-			newBids.sort(Bid.COMPARATOR);
-			this.allBids.put(response.getBidder(), newBids);
-		}  
+		for(Bid bid : previous)
+			if(!forwarded.contains(bid))
+				this.removedThisRound.add(bid);
+		this.allBids.replaceBids(response.getBidder(), newBids);
+		this.clearing.addActivity(activity);
 	}
 	
-	/** The bids are ordered and the top bids are winners until the available quantity is reached. If an bid is a winning bid, 
-	 * then its price per unit is that of the next bid.If there is no next bid, then the bid's original price is used. */
+	/** The bids are ordered and the top bids are winners until the available quantity is reached. Each winning bid pays its 
+	 * own price. */
 	protected final AuctionResult<T> getPersonalResults(){  
-		List<AuctionPersonalResult> winners = new ArrayList<>();
-		List<Bid> allBidsSorted = getAllBidsFlatAndSorted();
-		int quantityAvailable = this.trigger.getQuantity();
-		// Assign winning bids until the available quantity is assigned, or you run out of bids
-		for(int i = 0; i < allBidsSorted.size() && quantityAvailable > 0; i++){
-			Bid bid = allBidsSorted.get(i); 
-			winners.add(new AuctionPersonalResult(bid, bid.getPrice(), Math.min(quantityAvailable, bid.getQuantity())));
-			quantityAvailable -= bid.getQuantity();
-		}  
-		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, winners, allBidsSorted, this.currentPrice, Math.max(0, quantityAvailable), this.trigger.getDecrementPerRound()); 
+		Allocation allocation = this.clearing.clear();
+		List<Bid> allBidsSorted = this.allBids.getSortedBids();
+		List<AuctionPersonalResult> winners = new ArrayList<>(allocation.getNrOfWinners());
+		for(int i = 0; i < allocation.getNrOfWinners(); i++)
+			winners.add(new AuctionPersonalResult(allBidsSorted.get(i), allocation.getPrice(i), allocation.getQuantity(i)));
+		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, winners, allBidsSorted, this.clearing.getCurrentPrice(), allocation.getQuantityAvailable(), this.trigger.getDecrementPerRound()); 
 	}
 }
@@ -0,0 +1,109 @@
+package oo2apl.auctionlibrary.p2pauction.auctionspecifications;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.Allocation;
+import oo2apl.auctionlibrary.engine.BidBook;
+import oo2apl.auctionlibrary.engine.VickreyClearing;
+import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.LotBid;
+import oo2apl.auctionlibrary.p2pauction.MultiLotSale;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.BidderRegistry;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+/**
+ * A multi-lot auction sells all lots of a MultiLotSale in one sealed-bid round. The announcement lists all lots and each 
+ * participant responds once with LotBids for the lots that it wants. Each lot is cleared as a Vickrey auction by its own 
+ * engine VickreyClearing: until the lot's quantity is reached, each highest bid wins for the price of the bid below it. 
+ * The lots share one bidder registry, which is ranked before clearing so that large sales can clear their lots in 
+ * parallel. 
+ * 
+ * The result contains the winners and the bids of all lots as LotBids, grouped per lot in the order of the lots. Use 
+ * LotResult.split to obtain the result per lot. 
+ * 
+ * @author Bas Testerink
+ * @param <T>
+ */
+public class MultiLotAuction<T> extends Auction<MultiLotSale<T>> {
+	/** Sales with at least this many lots are cleared in parallel. */
+	private final static int PARALLEL_LOTS = 16;
+	private final BidderRegistry bidders;
+	private final VickreyClearing[] clearings; // The clearing per lot
+
+	public MultiLotAuction(final OrganizeAuction<MultiLotSale<T>> trigger, final UUID auctionID) {
+		super(trigger, auctionID);
+		this.bidders = new BidderRegistry(trigger.getParticipants());
+		MultiLotSale<T> sale = trigger.getObjectForSale();
+		this.clearings = new VickreyClearing[sale.size()];
+		for(int i = 0; i < this.clearings.length; i++)
+			this.clearings[i] = new VickreyClearing(sale.getLot(i).getMinimalPrice(), sale.getLot(i).getQuantity(), this.bidders, false, false, 16);
+	}
+
+	/** {@inheritDoc} */
+	public final AuctionAnnouncement<MultiLotSale<T>> makeInitialAnnouncement(final UUID auctionID, final AgentID auctioneer){
+		return new AuctionAnnouncement<>(auctionID, auctioneer, this.trigger.getType(), this.trigger.getObjectForSale(), this.trigger.getMinimalPrice(), 
+				this.trigger.getObjectForSale().getTotalQuantity(), this.trigger.getDecrementPerRound());
+	}
+
+	/** A multi-lot auction is finished with one round. */
+	protected final boolean isFinished(){ return true; }
+
+	/** A multi-lot auction does not need to implement the round method. */
+	protected final AuctionResult<?> nextRound(){ return AuctionResult.WAITING; }
+
+	/** Store the lot bids that exceed the minimal price of their lot. Other bids are ignored. */
+	protected final void storeBids(final ParticipantResponse response){
+		for(Bid bid : response.getBids()){
+			if(bid instanceof LotBid){
+				int lot = ((LotBid) bid).getLot();
+				if(lot >= 0 && lot < this.clearings.length)
+					this.clearings[lot].bid(this.bidders.getOrdinal(bid.getBidder()), bid.getPrice(), bid.getQuantity());
+			}
+		}
+	}
+
+	/** Clear every lot, in parallel if the sale has many lots, and combine the results of the lots. */
+	protected final AuctionResult<MultiLotSale<T>> getPersonalResults(){
+		this.bidders.rankAll(); // Lots only read the registry from here on
+		int nrOfLots = this.clearings.length;
+		@SuppressWarnings({ "unchecked", "rawtypes" }) // Generic arrays cannot be created directly
+		List<AuctionPersonalResult>[] winners = new List[nrOfLots];
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<Bid>[] sortedBids = new List[nrOfLots];
+		int[] unsold = new int[nrOfLots];
+		IntStream lots = IntStream.range(0, nrOfLots);
+		(nrOfLots >= PARALLEL_LOTS ? lots.parallel() : lots).forEach((int lot) -> {
+			Allocation allocation = this.clearings[lot].clear();
+			sortedBids[lot] = toLotBids(lot, this.clearings[lot].getRanking());
+			winners[lot] = new ArrayList<>(allocation.getNrOfWinners());
+			for(int i = 0; i < allocation.getNrOfWinners(); i++)
+				winners[lot].add(new AuctionPersonalResult(sortedBids[lot].get(i), allocation.getPrice(i), allocation.getQuantity(i)));
+			unsold[lot] = allocation.getQuantityAvailable();
+		});
+		List<AuctionPersonalResult> allWinners = new ArrayList<>();
+		List<Bid> allBids = new ArrayList<>();
+		int quantityAvailable = 0;
+		for(int lot = 0; lot < nrOfLots; lot++){
+			allWinners.addAll(winners[lot]);
+			allBids.addAll(sortedBids[lot]);
+			quantityAvailable += unsold[lot];
+		}
+		return new AuctionResult<>(super.auctionID, ResultType.FINISHED, this.trigger, allWinners, allBids, 0d, quantityAvailable, this.trigger.getDecrementPerRound());
+	}
+
+	/** Materialize the ranked bids of the lot as lot bids. */
+	private final List<Bid> toLotBids(final int lot, final BidBook ranking){
+		List<Bid> bids = new ArrayList<>(ranking.size());
+		for(int i = 0; i < ranking.size(); i++)
+			bids.add(new LotBid(lot, ranking.getPrice(i), ranking.getQuantity(i), this.bidders.getBidder(ranking.getBidder(i))));
+		return bids;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package oo2apl.auctionlibrary.p2pauction.auctionspecifications;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.BidBook;
+import oo2apl.auctionlibrary.engine.TopBidHeap;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.BidderRegistry;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.EnglishOrderBook;
+import oo2apl.auctionlibrary.p2pauction.triggers.AggregatedResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * The part of a hierarchical auction that a relay runs for its shard of participants. The relay announces the rounds 
+ * of the auctioneer to its shard, collects the responses of the shard and reduces them to one aggregated response that 
+ * contains only the bids that can still matter for the outcome: 
+ * 	- Vickrey: the best bids of the shard that cover the quantity for sale, plus the runner-up that may set the price. 
+ *  - English: the shard keeps its own order book with the bidding rules of the English auction, and forwards the highest 
+ *    bids that cover the quantity for sale, together with the amount of bids that were accepted in the shard this round. 
+ *  - Dutch: the bids that accepted the current price, plus the declining bid with the highest price as the declaration 
+ *    of the shard for clock skipping. 
+ * As every bid that is among the best bids of the auction is also among the best bids of its shard, the auctioneer 
+ * reaches the same outcome as when all participants responded to it directly. Only the reports of the rounds differ, 
+ * because these contain the forwarded bids. 
+ * 
+ * As with auctions, the responses of a shard are processed one at a time. Responses for another round than the one that 
+ * was relayed last are ignored. If the auctioneer closes a round on its deadline before the shard completed, then the 
+ * incomplete round of the shard is dropped when the next round is relayed. 
+ * 
+ * @author Bas Testerink
+ */
+public final class RelayedAuction {
+	private final UUID auctionID;
+	private final AgentID auctioneer;
+	private final AuctionType type;
+	private final List<AgentID> shard;
+	private final int quantity;
+	private final double minimalPrice;
+	private double currentPrice;
+	private int responseCounter;
+	private int round;
+	// Vickrey
+	private final BidderRegistry bidders;
+	private final TopBidHeap topBids;
+	// English
+	private final EnglishOrderBook book;
+	private int activity;
+	// Dutch
+	private List<Bid> acceptedBids;
+	private Bid declaration; // Declining bid with the highest price, null if there is none
+	
+	/**
+	 * @param announcement The initial announcement of the auctioneer. 
+	 * @param shard The participants that the relay handles. 
+	 */
+	public RelayedAuction(final AuctionAnnouncement<?> announcement, final List<AgentID> shard){
+		this.auctionID = announcement.getAuctionID();
+		this.auctioneer = announcement.getAuctioneer();
+		this.type = announcement.getType();
+		this.shard = shard;
+		this.quantity = announcement.getQuantityAvailable();
+		this.minimalPrice = announcement.getPrice();
+		this.currentPrice = announcement.getPrice();
+		this.responseCounter = 0;
+		this.round = announcement.getRound();
+		this.bidders = this.type == AuctionType.VICKREY ? new BidderRegistry(shard) : null;
+		this.topBids = this.type == AuctionType.VICKREY ? new TopBidHeap(this.quantity, this.bidders) : null;
+		this.book = this.type == AuctionType.ENGLISH ? new EnglishOrderBook(shard) : null;
+		this.activity = 0;
+		this.acceptedBids = new ArrayList<>();
+	}
+	
+	public final UUID getAuctionID(){ return this.auctionID; }
+	public final AgentID getAuctioneer(){ return this.auctioneer; }
+	public final AuctionType getType(){ return this.type; }
+	public final List<AgentID> getShard(){ return this.shard; }
+	
+	/** Adopt the announcement of the auctioneer and produce the same announcement on behalf of the relay, which is 
+	 * to be sent to the shard such that the participants respond to the relay. */
+	public final synchronized <T> AuctionAnnouncement<T> relayAnnouncement(final AuctionAnnouncement<T> announcement, final AgentID relay){
+		this.currentPrice = announcement.getPrice();
+		if(announcement.getRound() != this.round){
+			// Drop what is left of a round that the auctioneer closed without this shard
+			this.round = announcement.getRound();
+			this.responseCounter = 0;
+			this.activity = 0;
+			this.acceptedBids = new ArrayList<>();
+			this.declaration = null;
+		}
+		return new AuctionAnnouncement<>(this.auctionID, relay, this.type, announcement.getItemForSale(), announcement.getPrice(), 
+				announcement.getQuantityAvailable(), announcement.getDecrement(), this.round);
+	}
+	
+	/** Process the response of a participant of the shard. 
+	 * @return The aggregated response for the auctioneer if all participants of the shard responded, otherwise null. */
+	public final synchronized AggregatedResponse handleParticipantResponse(final ParticipantResponse response, final AgentID relay){
+		if(response.getRound() != ParticipantResponse.ANY_ROUND && response.getRound() != this.round) return null;
+		this.responseCounter++;
+		storeBids(response);
+		if(this.responseCounter < this.shard.size()) return null;
+		this.responseCounter = 0;
+		return aggregate(relay);
+	}
+	
+	private final void storeBids(final ParticipantResponse response){
+		if(this.type == AuctionType.VICKREY){
+			// Same filter as the Vickrey auction, but only the bids that can still win or set a price are kept
+			for(Bid bid : response.getBids())
+				if(bid.getPrice() >= this.minimalPrice)
+					this.topBids.offer(bid.getPrice(), bid.getQuantity(), this.bidders.getOrdinal(bid.getBidder()));
+		} else if(this.type == AuctionType.ENGLISH){
+			if(!this.book.submitBids(response.getBidder(), response.getBids(), this.currentPrice).isEmpty())
+				this.activity++;
+		} else {
+			// Dutch: the auctioneer applies the current price to the accepted bids. Multi-lot: the auctioneer sorts the 
+			// bids per lot, so the lot bids are forwarded as they are
+			for(Bid bid : response.getBids()){
+				if(bid.getQuantity() > 0) 
+					this.acceptedBids.add(bid);
+				else if(this.type == AuctionType.DUTCH && (this.declaration == null || bid.getPrice() > this.declaration.getPrice()))
+					this.declaration = bid;
+			}
+		}
+	}
+	
+	/** Produce the reduced response of the shard for this round and reset the round data. */
+	private final AggregatedResponse aggregate(final AgentID relay){
+		List<Bid> bids;
+		int activity = 0;
+		if(this.type == AuctionType.VICKREY){
+			BidBook top = new BidBook(this.topBids.size());
+			this.topBids.drainTo(top);
+			bids = this.bidders.toBids(top, 0, top.size());
+		} else if(this.type == AuctionType.ENGLISH){
+			bids = this.book.getTopBids(this.quantity);
+			activity = this.activity;
+			this.activity = 0;
+		} else {
+			bids = this.acceptedBids;
+			if(this.declaration != null) bids.add(this.declaration);
+			this.acceptedBids = new ArrayList<>();
+			this.declaration = null;
+		}
+		return new AggregatedResponse(this.auctionID, relay, bids, activity, this.round);
+	}
+}
@@ -5,8 +5,12 @@ import java.util.List;
 import java.util.UUID;
 
 import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.Allocation;
+import oo2apl.auctionlibrary.engine.BidBook;
+import oo2apl.auctionlibrary.engine.VickreyClearing;
 import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
 import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.bookkeeping.BidderRegistry;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
 import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
@@ -15,16 +19,25 @@ import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
 /**
  * A Vickrey auction is a one-round auction. The bidders can place price/quantity bids and these bids are then ordered. 
  * Until the quantity is reached, each highest bid is honered with the price of the one below it. 
+ * The rules are those of the engine's VickreyClearing, which stores the bids as primitives with the agents' ordinals of 
+ * a bidder registry. They are only turned into Bid objects when the result is made. 
+ * 
+ * If the trigger specifies streaming clearing, then only the best bids are kept in a bounded heap as they arrive. The 
+ * complete list of bids is then only kept if the trigger asks to retain all bids. 
  * 
  * @author Bas Testerink
  * @param <T>
  */
 public class VickreyAuction<T> extends Auction<T> {
-	private final List<Bid> bids;
+	private final BidderRegistry bidders;
+	private final VickreyClearing clearing;
 
 	public VickreyAuction(final OrganizeAuction<T> trigger, final UUID auctionID) {
 		super(trigger, auctionID);  
-		this.bids = new ArrayList<>();
+		// In case of streaming clearing the participants are ranked up front so that the heap can mostly break ties on ranks
+		this.bidders = trigger.isStreamingClearing() ? new BidderRegistry(trigger.getParticipants()) : new BidderRegistry();
+		this.clearing = new VickreyClearing(trigger.getMinimalPrice(), trigger.getQuantity(), this.bidders, trigger.isStreamingClearing(), 
+				trigger.isRetainingAllBids(), trigger.getParticipants().size());
 	}
 
 	/** {@inheritDoc} */
@@ -40,33 +53,24 @@ public class VickreyAuction<T> extends Auction<T> {
 
 	/** {@inheritDoc} */
 	protected final void storeBids(final ParticipantResponse response){
-		// Store a bid if it exceeds the minimal price
-		response.getBids().forEach((Bid bid) -> {
-			if(bid.getPrice() >= this.trigger.getMinimalPrice())
-				this.bids.add(bid);
-		});  
+		for(Bid bid : response.getBids())
+			this.clearing.bid(this.bidders.getOrdinal(bid.getBidder()), bid.getPrice(), bid.getQuantity());
 	}
 	
 	/** The bids are ordered and the top bids are winners until the available quantity is reached. If a bid is a winning bid, 
 	 * then its price per unit is that of the next bid. If there is no next bid, then the bid's original price is used. */
 	protected final AuctionResult<T> getPersonalResults(){  
-		List<AuctionPersonalResult> winners = new ArrayList<>(); 
-		// Sort the bids
-		this.bids.sort(Bid.COMPARATOR);
-		// Keep track of how many units are assigned
-		int quantityAvailable = this.trigger.getQuantity();
-		// Keep assigning winning bids until you run out of bids or stock
-		for(int i = 0; i < this.bids.size() && quantityAvailable > 0; i++){
-			Bid bid = this.bids.get(i);
-			double paidPrice = bid.getPrice(); 
-			// The bid's price is overwritten if there is a next bid
-			if(i+1 < this.bids.size())
-				paidPrice = this.bids.get(i+1).getPrice();
-			// The quantity of the bid is the quantity that its bidder desired, unless there is not enough available. 
-			// In the latter case, the assigned quantity is whatever is left.
-			winners.add(new AuctionPersonalResult(bid, paidPrice, Math.min(quantityAvailable, bid.getQuantity())));
-			quantityAvailable -= bid.getQuantity();
-		} 
-		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, winners, this.bids, 0d, Math.max(0, quantityAvailable), this.trigger.getDecrementPerRound()); 
+		Allocation allocation = this.clearing.clear();
+		// Materialize the ranked bids, of which the first ones are the winners
+		BidBook ranking = this.clearing.getRanking();
+		List<Bid> sortedBids = this.bidders.toBids(ranking, 0, ranking.size());
+		List<Bid> allSortedBids = sortedBids;
+		BidBook bids = this.clearing.getBids();
+		if(this.trigger.isStreamingClearing() && bids != null) // The ranking only contains the best bids
+			allSortedBids = this.bidders.toBids(bids, bids.sortedIndices(0, bids.size(), this.bidders));
+		List<AuctionPersonalResult> winners = new ArrayList<>(allocation.getNrOfWinners()); 
+		for(int i = 0; i < allocation.getNrOfWinners(); i++)
+			winners.add(new AuctionPersonalResult(sortedBids.get(i), allocation.getPrice(i), allocation.getQuantity(i)));
+		return new AuctionResult<T>(super.auctionID, ResultType.FINISHED, this.trigger, winners, allSortedBids, 0d, allocation.getQuantityAvailable(), this.trigger.getDecrementPerRound()); 
 	}
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package oo2apl.auctionlibrary.p2pauction.bookkeeping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.BidBook;
+import oo2apl.auctionlibrary.engine.BidderOrder;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+/**
+ * A bidder registry assigns each bidder of an auction a dense ordinal (0, 1, 2, ...) the first time that the bidder is 
+ * seen. Bid books can then refer to bidders with a primitive int instead of an object reference. The ordinal -1 is used 
+ * for bids without a bidder (dummy bids). 
+ * 
+ * The registry also caches the name (toString()) of each bidder once, so that ties between bids can be broken in the 
+ * same way as Bid.compareTo does, but without building strings per comparison. The names are also turned into ranks, 
+ * which can be compared as ints and packed together with a quantity in a single long, see getTieBreakKey. Ranks always 
+ * follow the order of the names, so comparisons on ranks and on names can be mixed. If the participants of an auction 
+ * are registered up front, then their ranks are available from the start. 
+ * 
+ * The registry is the bidder order of the primitive bid books of the engine that the auctions use, and turns the bids 
+ * of those books back into Bid objects. 
+ * 
+ * @author Bas Testerink
+ */
+public final class BidderRegistry implements BidderOrder {
+	private final Map<AgentID, Integer> ordinals;
+	private final List<AgentID> bidders;
+	private final List<String> names;
+	private int[] ranks; // Ranks of the names of the bidders with an ordinal below ranks.length
+	
+	public BidderRegistry(){
+		this.ordinals = new HashMap<>();
+		this.bidders = new ArrayList<>();
+		this.names = new ArrayList<>();
+		this.ranks = new int[0];
+	}
+	
+	/** Create a registry where the given bidders are registered and ranked up front. */
+	public BidderRegistry(final List<AgentID> bidders){
+		this();
+		for(AgentID bidder : bidders)
+			getOrdinal(bidder);
+		rank();
+	}
+	
+	/** Get the ordinal of the bidder, the bidder is registered if this is the first time that it is seen. */
+	public final int getOrdinal(final AgentID bidder){
+		if(bidder == null) return NO_BIDDER;
+		Integer ordinal = this.ordinals.get(bidder);
+		if(ordinal == null){
+			ordinal = this.bidders.size();
+			this.ordinals.put(bidder, ordinal);
+			this.bidders.add(bidder);
+			this.names.add(bidder.toString());
+		}
+		return ordinal;
+	}
+	
+	/** Get the bidder that belongs to the ordinal. */
+	public final AgentID getBidder(final int ordinal){
+		return ordinal == NO_BIDDER ? null : this.bidders.get(ordinal);
+	}
+	
+	/** The amount of registered bidders. */
+	public final int size(){ return this.bidders.size(); }
+	
+	/** Compares the bidders of two bids that tie on price and quantity. Returns a negative number if the bid of bidder a 
+	 * comes first, exactly as Bid.compareTo does for the bidders' agent IDs. */
+	public final int compare(final int a, final int b){
+		if(a == NO_BIDDER) return 1;
+		else if(b == NO_BIDDER) return -1;
+		else if(a < this.ranks.length && b < this.ranks.length) return Integer.compare(this.ranks[b], this.ranks[a]);
+		else return this.names.get(b).compareTo(this.names.get(a));
+	}
+	
+	/** 
+	 * Produce a key that orders bids with equal prices in the same way as Bid.compareTo: a higher key comes first. The 
+	 * quantity is packed in the high 32 bits and the rank of the bidder's name in the low 32 bits, where bids without a 
+	 * bidder get the lowest rank. 
+	 */
+	public final long getTieBreakKey(final int quantity, final int bidder){
+		if(this.ranks.length < this.names.size()) rank();
+		int rank = bidder == NO_BIDDER ? 0 : this.ranks[bidder] + 1;
+		return ((long) quantity << 32) | (rank & 0xFFFFFFFFL);
+	}
+	
+	/** Materialize the bid at the given index of the book. */
+	public final Bid toBid(final BidBook book, final int index){
+		return new Bid(book.getPrice(index), book.getQuantity(index), getBidder(book.getBidder(index)));
+	}
+	
+	/** Materialize the bids of the book from index from (inclusive) to index to (exclusive). */
+	public final List<Bid> toBids(final BidBook book, final int from, final int to){
+		List<Bid> result = new ArrayList<>(to - from);
+		for(int i = from; i < to; i++)
+			result.add(toBid(book, i));
+		return result;
+	}
+	
+	/** Materialize the bids of the book at the given indices, in the order of the indices. */
+	public final List<Bid> toBids(final BidBook book, final int[] indices){
+		List<Bid> result = new ArrayList<>(indices.length);
+		for(int index : indices)
+			result.add(toBid(book, index));
+		return result;
+	}
+	
+	/** Rank all registered bidders now rather than at the first tie-break key that needs it. Afterwards the registry can be 
+	 * read (compare, getTieBreakKey, getBidder) from several threads, as long as no bidders are added. */
+	public final void rankAll(){
+		if(this.ranks.length < this.names.size()) rank();
+	}
+	
+	/** Compute the rank per ordinal of the bidder's name in ascending order, for all registered bidders. */
+	private final void rank(){
+		Integer[] sorted = new Integer[this.names.size()];
+		for(int i = 0; i < sorted.length; i++) sorted[i] = i;
+		Arrays.sort(sorted, (Integer a, Integer b) -> this.names.get(a).compareTo(this.names.get(b)));
+		int[] ranks = new int[sorted.length];
+		for(int rank = 0; rank < sorted.length; rank++)
+			ranks[sorted[rank]] = rank;
+		this.ranks = ranks;
+	}
+}
@@ -0,0 +1,120 @@
+package oo2apl.auctionlibrary.p2pauction.bookkeeping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.engine.EnglishBook;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+/**
+ * The bids of the agents in an English auction. The bids are ordered by the engine's EnglishBook, which refers to the
+ * submitting agents and the bidders by their ordinals in a bidder registry, so that ties are broken as Bid.COMPARATOR
+ * does. This book keeps the Bid objects that the agents submitted, so that the reports of the auction contain the same
+ * objects, which relays rely on to tell which of their forwarded bids are new.
+ *
+ * @author Bas Testerink
+ */
+public final class EnglishOrderBook {
+	private final BidderRegistry registry;
+	private final EnglishBook book;
+	/** The current bids per submitting agent, ordered from high to low. */
+	private final Map<AgentID, List<Bid>> submissions;
+	// The bids of a submission as primitives, reused between submissions
+	private double[] prices;
+	private int[] quantities, bidders;
+
+	/** @param participants The participants of the auction, which are ranked up front for tie-breaking. */
+	public EnglishOrderBook(final List<AgentID> participants){
+		this.registry = new BidderRegistry(participants);
+		this.book = new EnglishBook(this.registry);
+		this.submissions = new HashMap<>();
+		this.prices = new double[4];
+		this.quantities = new int[4];
+		this.bidders = new int[4];
+	}
+
+	/** The book of the engine, for a clearing of the engine. */
+	public final EnglishBook getBook(){ return this.book; }
+
+	/** The current bids of the agent ordered from high to low, or null if the agent never placed bids. */
+	public final List<Bid> getBids(final AgentID submitter){ return this.submissions.get(submitter); }
+
+	/** Apply the bidding rules of the English auction to the bids of the submitting agent (see EnglishBook.submit) and
+	 * return the bids that were accepted, ordered from high to low. */
+	public final List<Bid> submitBids(final AgentID submitter, final List<Bid> bids, final double currentPrice){
+		int owner = this.registry.getOrdinal(submitter);
+		toPrimitives(bids);
+		boolean accepted = this.book.submit(owner, this.prices, this.quantities, this.bidders, bids.size(), currentPrice);
+		if(!accepted && this.book.getNrOfBids(owner) > 0) return Collections.emptyList();
+		// The submission changed, possibly to no bids at all
+		List<Bid> newBids = new ArrayList<>(this.book.getNrOfBids(owner));
+		for(int i = 0; i < this.book.getNrOfBids(owner); i++)
+			newBids.add(bids.get(this.book.getOrigin(owner, i)));
+		this.submissions.put(submitter, newBids);
+		return newBids;
+	}
+
+	/** Replace the bids of the submitting agent with the new bids, which must be ordered from high to low. */
+	public final void replaceBids(final AgentID submitter, final List<Bid> newBids){
+		toPrimitives(newBids);
+		this.book.replace(this.registry.getOrdinal(submitter), this.prices, this.quantities, this.bidders, newBids.size());
+		this.submissions.put(submitter, newBids);
+	}
+
+	/** The amount of bids in the book. */
+	public final int size(){ return this.book.size(); }
+
+	/** The summed quantity of all bids in the book. */
+	public final long getTotalQuantity(){ return this.book.getTotalQuantity(); }
+
+	/** The highest price in the book, or Double.NaN if the book is empty. */
+	public final double getBestPrice(){ return this.book.getBestPrice(); }
+
+	/** The price of the bid at which the given quantity is covered, see EnglishBook.getPriceAtQuantity. */
+	public final double getPriceAtQuantity(final int quantity){ return this.book.getPriceAtQuantity(quantity); }
+
+	/** Produce the highest bids of the book that together cover the given quantity, i.e. up to and including the bid at
+	 * which the quantity is reached. All bids are produced if they do not cover the quantity. */
+	public final List<Bid> getTopBids(final int quantity){
+		int[] owners = new int[this.book.size()], positions = new int[this.book.size()];
+		int size = this.book.rank(quantity, owners, positions);
+		List<Bid> result = new ArrayList<>(size);
+		for(int i = 0; i < size; i++)
+			result.add(this.submissions.get(this.registry.getBidder(owners[i])).get(positions[i]));
+		return result;
+	}
+
+	/** Produce the agents that submitted a bid that does not receive its full quantity when the given quantity is assigned
+	 * to the bids from high to low, in the order of their highest such bid. */
+	public final List<AgentID> getOutbidSubmitters(final int quantity){
+		int[] owners = this.book.getOutbidSubmitters(quantity);
+		List<AgentID> outbid = new ArrayList<>(owners.length);
+		for(int owner : owners) outbid.add(this.registry.getBidder(owner));
+		return outbid;
+	}
+
+	/** Whether some bid does not receive its full quantity when the given quantity is assigned to the bids from high to low. */
+	public final boolean hasOutbidSubmitters(final int quantity){ return this.book.hasOutbidSubmitters(quantity); }
+
+	/** Produce all bids in the book from high to low. */
+	public final List<Bid> getSortedBids(){ return getTopBids(Integer.MAX_VALUE); }
+
+	/** Put the bids in the primitive arrays, with the bidders as ordinals of the registry. */
+	private final void toPrimitives(final List<Bid> bids){
+		if(bids.size() > this.prices.length){
+			this.prices = Arrays.copyOf(this.prices, bids.size());
+			this.quantities = Arrays.copyOf(this.quantities, bids.size());
+			this.bidders = Arrays.copyOf(this.bidders, bids.size());
+		}
+		for(int i = 0; i < bids.size(); i++){
+			Bid bid = bids.get(i);
+			this.prices[i] = bid.getPrice();
+			this.quantities[i] = bid.getQuantity();
+			this.bidders[i] = this.registry.getOrdinal(bid.getBidder());
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package oo2apl.auctionlibrary.p2pauction.bookkeeping;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import oo2apl.auctionlibrary.p2pauction.LimitOrder;
+/**
+ * The order book of a continuous double auction. Orders that arrive are matched with price-time priority: against the
+ * best price of the other side first and, within a price, against the order that arrived first. A trade is made at
+ * the price of the resting order. What is not matched rests in the book.
+ *
+ * Each side keeps its price levels in a tree map, so adding a new price level costs O(log P) for P price levels. The
+ * best level of each side is cached, which makes the best bid and ask O(1) and lets an arriving order match without
+ * searching the tree; the tree is only consulted when the best level is used up. A level queues its orders in arrival
+ * order.
+ *
+ * @author Bas Testerink
+ */
+public final class LimitOrderBook {
+	/** The price levels of the buy orders from high to low, and of the sell orders from low to high. */
+	private final TreeMap<Double, PriceLevel> bids, asks;
+	private PriceLevel bestBid, bestAsk; // Null if the side is empty
+	private int restingOrders;
+
+	public LimitOrderBook(){
+		this.bids = new TreeMap<>(Collections.reverseOrder());
+		this.asks = new TreeMap<>();
+	}
+
+	/** Match the order against the other side of the book, report the trades to the listener, and add what is left of the
+	 * order to the book. Returns the quantity of the order that was traded. */
+	public final int submit(final LimitOrder order, final FillListener listener){
+		int remaining = order.getQuantity();
+		if(remaining <= 0) return 0;
+		boolean buy = order.isBuy();
+		double limit = order.getPrice();
+		PriceLevel best = buy ? this.bestAsk : this.bestBid;
+		while(remaining > 0 && best != null && (buy ? best.price <= limit : best.price >= limit)){
+			RestingOrder resting = best.orders.peekFirst();
+			int quantity = Math.min(remaining, resting.remaining);
+			if(buy) listener.fill(order, resting.order, best.price, quantity);
+			else listener.fill(resting.order, order, best.price, quantity);
+			remaining -= quantity;
+			resting.remaining -= quantity;
+			best.volume -= quantity;
+			if(resting.remaining == 0){
+				best.orders.pollFirst();
+				this.restingOrders--;
+				if(best.orders.isEmpty()) best = removeBest(buy ? this.asks : this.bids, !buy);
+			}
+		}
+		if(remaining > 0) rest(order, remaining, buy);
+		return order.getQuantity() - remaining;
+	}
+
+	/** The highest price of the buy orders, or Double.NaN if there are none. */
+	public final double getBestBidPrice(){ return this.bestBid == null ? Double.NaN : this.bestBid.price; }
+
+	/** The lowest price of the sell orders, or Double.NaN if there are none. */
+	public final double getBestAskPrice(){ return this.bestAsk == null ? Double.NaN : this.bestAsk.price; }
+
+	/** The quantity that rests at the best bid price, or 0 if there are no buy orders. */
+	public final long getBestBidVolume(){ return this.bestBid == null ? 0 : this.bestBid.volume; }
+
+	/** The quantity that rests at the best ask price, or 0 if there are no sell orders. */
+	public final long getBestAskVolume(){ return this.bestAsk == null ? 0 : this.bestAsk.volume; }
+
+	/** The amount of orders that rest in the book. */
+	public final int size(){ return this.restingOrders; }
+
+	/** The amount of price levels of the buy or the sell side. */
+	public final int getPriceLevels(final boolean buy){ return buy ? this.bids.size() : this.asks.size(); }
+
+	/** Produce the resting orders of a side from the best price to the worst, in arrival order within a price. The
+	 * orders are produced with the quantity that remains of them. */
+	public final List<LimitOrder> getRestingOrders(final boolean buy){
+		List<LimitOrder> result = new ArrayList<>();
+		for(PriceLevel level : (buy ? this.bids : this.asks).values())
+			for(RestingOrder resting : level.orders)
+				result.add(resting.remaining == resting.order.getQuantity() ? resting.order
+						: new LimitOrder(resting.order.getSide(), resting.order.getPrice(), resting.remaining, resting.order.getBidder()));
+		return result;
+	}
+
+	private final void rest(final LimitOrder order, final int remaining, final boolean buy){
+		TreeMap<Double, PriceLevel> side = buy ? this.bids : this.asks;
+		PriceLevel best = buy ? this.bestBid : this.bestAsk;
+		PriceLevel level;
+		if(best != null && best.price == order.getPrice()) level = best; // Most orders arrive near the top of the book
+		else {
+			level = side.get(order.getPrice());
+			if(level == null){
+				level = new PriceLevel(order.getPrice());
+				side.put(order.getPrice(), level);
+				if(best == null || (buy ? level.price > best.price : level.price < best.price)){
+					if(buy) this.bestBid = level;
+					else this.bestAsk = level;
+				}
+			}
+		}
+		level.orders.addLast(new RestingOrder(order, remaining));
+		level.volume += remaining;
+		this.restingOrders++;
+	}
+
+	/** Remove the empty best level of the side and return the new best level. */
+	private final PriceLevel removeBest(final TreeMap<Double, PriceLevel> side, final boolean buySide){
+		side.pollFirstEntry();
+		PriceLevel best = side.isEmpty() ? null : side.firstEntry().getValue();
+		if(buySide) this.bestBid = best;
+		else this.bestAsk = best;
+		return best;
+	}
+
+	/** Receives the trades of the book. */
+	public interface FillListener {
+		/** The buy and sell order traded the quantity at the price. */
+		public void fill(LimitOrder buyOrder, LimitOrder sellOrder, double price, int quantity);
+	}
+
+	/** The orders at one price, in arrival order, and their summed remaining quantity. */
+	private static final class PriceLevel {
+		private final double price;
+		private final ArrayDeque<RestingOrder> orders;
+		private long volume;
+
+		private PriceLevel(final double price){
+			this.price = price;
+			this.orders = new ArrayDeque<>();
+		}
+	}
+
+	/** An order in the book and the quantity that is left of it. */
+	private static final class RestingOrder {
+		private final LimitOrder order;
+		private int remaining;
+
+		private RestingOrder(final LimitOrder order, final int remaining){
+			this.order = order;
+			this.remaining = remaining;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package oo2apl.auctionlibrary.p2pauction.codec;
+
+import java.nio.ByteBuffer;
+
+import oo2apl.agent.AgentID;
+/**
+ * Functional pair that writes agent identifiers to a buffer and reads them back. How an identifier is resolved is up 
+ * to the deployment, e.g. see IndexedAgentIDCodec for agents that are known to all nodes up front. 
+ * 
+ * @author Bas Testerink
+ */
+public interface AgentIDCodec {
+	/** Write the identifier at the position of the buffer. */
+	public void write(AgentID agent, ByteBuffer buffer);
+	/** Read an identifier at the position of the buffer. */
+	public AgentID read(ByteBuffer buffer);
+}
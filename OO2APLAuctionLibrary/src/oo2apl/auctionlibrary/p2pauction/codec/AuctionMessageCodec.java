@@ -0,0 +1,392 @@
+package oo2apl.auctionlibrary.p2pauction.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder.Side;
+import oo2apl.auctionlibrary.p2pauction.LotBid;
+import oo2apl.auctionlibrary.p2pauction.RoundSummary;
+import oo2apl.auctionlibrary.p2pauction.triggers.AggregatedResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionEnded;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrderFill;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayRelease;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * Binary codec for the messages of auctions about items of type T, so that auctioneers and participants can run in
+ * different processes. The supported messages are AuctionAnnouncement, ParticipantResponse (including
+ * AggregatedResponse), AuctionResult and AuctionEnded, and the RelayAnnouncement and RelayRelease messages of
+ * hierarchical auctions.
+ *
+ * A message is written as a version byte, a message type byte and the fields of the message. Prices are written as
+ * 8-byte doubles and quantities as 4-byte integers, counts and round numbers as varints, UUIDs as two longs, agents
+ * with the agent identifier codec and items with the item codec. The bids of a response mostly belong to the
+ * responding agent, which is then written as a single flag byte instead of the agent.
+ *
+ * The bids of multi-lot auctions are LotBids, of which the lot is written as a varint after the bid. Responses and
+ * AuctionEnded messages with lot bids have their own message types, results of multi-lot auctions are recognized by
+ * their auction type. In the same way the LimitOrders of double auctions and call markets are written with a side byte,
+ * and OrderFills are supported as well.
+ *
+ * Messages are written at the position of the given buffer and read from the position of the given buffer, without
+ * intermediate copies. The buffer must have room for the message, otherwise a BufferOverflowException is thrown.
+ * The codec is stateless apart from its item and agent codecs, so it is thread-safe if those are.
+ *
+ * Note that an AuctionResult contains the OrganizeAuction trigger of the auction. Its bulletin board is local to the
+ * JVM of the auctioneer and is not encoded.
+ *
+ * @author Bas Testerink
+ * @param <T>
+ */
+public final class AuctionMessageCodec<T> {
+	/** The version of the encoding, messages of other versions are rejected. The version is raised whenever the encoding 
+	 * changes. Version 2 added the lot and order responses, the fills and the clock-skipping and proxy-bidding settings 
+	 * of OrganizeAuction. Version 3 added the aggregated order responses of relays. Version 4 added the lot and order 
+	 * AuctionEnded messages. */
+	public static final byte VERSION = 4;
+	private static final byte ANNOUNCEMENT = 1, RESPONSE = 2, AGGREGATED_RESPONSE = 3, RESULT = 4, ENDED = 5, RELAY_ANNOUNCEMENT = 6, RELAY_RELEASE = 7, 
+			LOT_RESPONSE = 8, AGGREGATED_LOT_RESPONSE = 9, ORDER_RESPONSE = 10, FILL = 11, AGGREGATED_ORDER_RESPONSE = 12, LOT_ENDED = 13, ORDER_ENDED = 14;
+	/** How the bids of a message are written: as plain bids, with their lot, or with their order side. */
+	private static final byte PLAIN_BIDS = 0, LOT_BIDS = 1, ORDER_BIDS = 2;
+	private static final byte OWN_BIDDER = 0, OTHER_BIDDER = 1;
+	private static final AuctionType[] AUCTION_TYPES = AuctionType.values();
+	private static final ResultType[] RESULT_TYPES = ResultType.values();
+	private final ItemCodec<T> itemCodec;
+	private final AgentIDCodec agentCodec;
+
+	/**
+	 * @param itemCodec Codec for the items that are for sale.
+	 * @param agentCodec Codec for the identifiers of the auctioneers and participants.
+	 */
+	public AuctionMessageCodec(final ItemCodec<T> itemCodec, final AgentIDCodec agentCodec){
+		this.itemCodec = itemCodec;
+		this.agentCodec = agentCodec;
+	}
+
+	/** Write the message at the position of the buffer. Throws an IllegalArgumentException if the message is not supported. */
+	@SuppressWarnings("unchecked") // The codec is used for auctions of items of type T
+	public final void encode(final Trigger message, final ByteBuffer buffer){
+		buffer.put(VERSION);
+		if(message instanceof AuctionAnnouncement<?>){
+			buffer.put(ANNOUNCEMENT);
+			writeAnnouncement((AuctionAnnouncement<T>) message, buffer);
+		} else if(message instanceof AggregatedResponse){
+			byte kind = getBidKind((ParticipantResponse) message);
+			buffer.put(kind == LOT_BIDS ? AGGREGATED_LOT_RESPONSE : kind == ORDER_BIDS ? AGGREGATED_ORDER_RESPONSE : AGGREGATED_RESPONSE);
+			writeResponse((ParticipantResponse) message, kind, buffer);
+			Varints.write(((AggregatedResponse) message).getActivity(), buffer);
+		} else if(message instanceof ParticipantResponse){
+			byte kind = getBidKind((ParticipantResponse) message);
+			buffer.put(kind == LOT_BIDS ? LOT_RESPONSE : kind == ORDER_BIDS ? ORDER_RESPONSE : RESPONSE);
+			writeResponse((ParticipantResponse) message, kind, buffer);
+		} else if(message instanceof AuctionResult<?> && message != AuctionResult.WAITING){
+			buffer.put(RESULT);
+			writeResult((AuctionResult<T>) message, buffer);
+		} else if(message instanceof AuctionEnded<?>){
+			AuctionEnded<T> ended = (AuctionEnded<T>) message;
+			byte kind = getBidKind(ended.getResult().getBid());
+			buffer.put(kind == LOT_BIDS ? LOT_ENDED : kind == ORDER_BIDS ? ORDER_ENDED : ENDED);
+			writeEnded(ended, kind, buffer);
+		} else if(message instanceof RelayAnnouncement<?>){
+			RelayAnnouncement<T> relayAnnouncement = (RelayAnnouncement<T>) message;
+			buffer.put(RELAY_ANNOUNCEMENT);
+			writeAnnouncement(relayAnnouncement.getAnnouncement(), buffer);
+			buffer.put((byte) (relayAnnouncement.isAssignment() ? 1 : 0));
+			if(relayAnnouncement.isAssignment()) writeAgents(relayAnnouncement.getShard(), buffer);
+		} else if(message instanceof OrderFill){
+			OrderFill fill = (OrderFill) message;
+			buffer.put(FILL);
+			writeUUID(fill.getAuctionID(), buffer);
+			writeBid(fill.getBuyOrder(), null, ORDER_BIDS, buffer);
+			writeBid(fill.getSellOrder(), null, ORDER_BIDS, buffer);
+			buffer.putDouble(fill.getPrice());
+			buffer.putInt(fill.getQuantity());
+		} else if(message instanceof RelayRelease){
+			buffer.put(RELAY_RELEASE);
+			writeUUID(((RelayRelease) message).getAuctionID(), buffer);
+		} else throw new IllegalArgumentException("Cannot encode messages of type "+message.getClass().getName()+".");
+	}
+
+	/** Read a message at the position of the buffer. Throws an IllegalArgumentException if the message has another
+	 * version or an unknown message, auction or result type. */
+	public final Trigger decode(final ByteBuffer buffer){
+		byte version = buffer.get();
+		if(version != VERSION) throw new IllegalArgumentException("Cannot decode messages of version "+version+", expected version "+VERSION+".");
+		byte type = buffer.get();
+		switch(type){
+			case ANNOUNCEMENT: return readAnnouncement(buffer);
+			case RESPONSE: return readResponse(buffer, false, PLAIN_BIDS);
+			case AGGREGATED_RESPONSE: return readResponse(buffer, true, PLAIN_BIDS);
+			case LOT_RESPONSE: return readResponse(buffer, false, LOT_BIDS);
+			case AGGREGATED_LOT_RESPONSE: return readResponse(buffer, true, LOT_BIDS);
+			case ORDER_RESPONSE: return readResponse(buffer, false, ORDER_BIDS);
+			case AGGREGATED_ORDER_RESPONSE: return readResponse(buffer, true, ORDER_BIDS);
+			case FILL: 
+				UUID auctionID = readUUID(buffer);
+				LimitOrder buyOrder = (LimitOrder) readBid(null, ORDER_BIDS, buffer);
+				LimitOrder sellOrder = (LimitOrder) readBid(null, ORDER_BIDS, buffer);
+				double price = buffer.getDouble();
+				return new OrderFill(auctionID, buyOrder, sellOrder, price, buffer.getInt());
+			case RESULT: return readResult(buffer);
+			case ENDED: return readEnded(buffer, PLAIN_BIDS);
+			case LOT_ENDED: return readEnded(buffer, LOT_BIDS);
+			case ORDER_ENDED: return readEnded(buffer, ORDER_BIDS);
+			case RELAY_ANNOUNCEMENT: 
+				AuctionAnnouncement<T> announcement = readAnnouncement(buffer);
+				return new RelayAnnouncement<>(announcement, buffer.get() == 0 ? null : readAgents(buffer));
+			case RELAY_RELEASE: return new RelayRelease(readUUID(buffer));
+			default: throw new IllegalArgumentException("Unknown message type "+type+".");
+		}
+	}
+
+	private final void writeAnnouncement(final AuctionAnnouncement<T> announcement, final ByteBuffer buffer){
+		writeUUID(announcement.getAuctionID(), buffer);
+		this.agentCodec.write(announcement.getAuctioneer(), buffer);
+		buffer.put((byte) announcement.getType().ordinal());
+		this.itemCodec.write(announcement.getItemForSale(), buffer);
+		buffer.putDouble(announcement.getPrice());
+		buffer.putInt(announcement.getQuantityAvailable());
+		buffer.putDouble(announcement.getDecrement());
+		Varints.write(announcement.getRound(), buffer);
+	}
+
+	private final AuctionAnnouncement<T> readAnnouncement(final ByteBuffer buffer){
+		UUID auctionID = readUUID(buffer);
+		AgentID auctioneer = this.agentCodec.read(buffer);
+		AuctionType type = readAuctionType(buffer);
+		T item = this.itemCodec.read(buffer);
+		double price = buffer.getDouble();
+		int quantity = buffer.getInt();
+		double decrement = buffer.getDouble();
+		return new AuctionAnnouncement<>(auctionID, auctioneer, type, item, price, quantity, decrement, Varints.read(buffer));
+	}
+
+	/** Whether the response contains lot bids or orders, its bids are then all written with their lot or side. */
+	private static final byte getBidKind(final ParticipantResponse response){
+		for(Bid bid : response.getBids()){
+			byte kind = getBidKind(bid);
+			if(kind != PLAIN_BIDS) return kind;
+		}
+		return PLAIN_BIDS;
+	}
+
+	/** Whether the bid is a lot bid or an order, or a plain bid (also if null). */
+	private static final byte getBidKind(final Bid bid){
+		return bid instanceof LotBid ? LOT_BIDS : bid instanceof LimitOrder ? ORDER_BIDS : PLAIN_BIDS;
+	}
+
+	/** The bids of results are written according to the type of the auction. */
+	private static final byte getBidKind(final AuctionType type){
+		return type == AuctionType.MULTILOT ? LOT_BIDS : type == AuctionType.DOUBLE || type == AuctionType.CALL ? ORDER_BIDS : PLAIN_BIDS;
+	}
+
+	private final void writeResponse(final ParticipantResponse response, final byte kind, final ByteBuffer buffer){
+		writeUUID(response.getAuctionID(), buffer);
+		this.agentCodec.write(response.getBidder(), buffer);
+		Varints.write(response.getRound() + 1, buffer); // ANY_ROUND (-1) is written as 0
+		writeBids(response.getBids(), response.getBidder(), kind, buffer);
+	}
+
+	private final ParticipantResponse readResponse(final ByteBuffer buffer, final boolean aggregated, final byte kind){
+		UUID auctionID = readUUID(buffer);
+		AgentID bidder = this.agentCodec.read(buffer);
+		int round = Varints.read(buffer) - 1;
+		List<Bid> bids = readBids(bidder, kind, buffer);
+		if(aggregated) return new AggregatedResponse(auctionID, bidder, bids, Varints.read(buffer), round);
+		else return new ParticipantResponse(auctionID, bidder, bids, round);
+	}
+
+	private final void writeResult(final AuctionResult<T> result, final ByteBuffer buffer){
+		writeUUID(result.getAuctionID(), buffer);
+		buffer.put((byte) result.getType().ordinal());
+		writeTrigger(result.getTrigger(), buffer);
+		byte kind = getBidKind(result.getTrigger().getType());
+		Varints.write(result.getPersonalResults().size(), buffer);
+		for(AuctionPersonalResult personalResult : result.getPersonalResults())
+			writePersonalResult(personalResult, kind, buffer);
+		writeBids(result.getBids(), null, kind, buffer);
+		buffer.putDouble(result.getPrice());
+		buffer.putInt(result.getQuantityAvailable());
+		buffer.putDouble(result.getDecrement());
+		writeBids(result.getRemovedBids(), null, kind, buffer);
+		RoundSummary summary = result.getSummary();
+		buffer.put((byte) (summary == null ? 0 : 1));
+		if(summary != null){
+			buffer.putDouble(summary.getBestPrice());
+			buffer.putLong(summary.getTotalQuantity());
+			buffer.putDouble(summary.getPriceAtCutOff());
+			Varints.write(summary.getNrOfBids(), buffer);
+		}
+	}
+
+	private final AuctionResult<T> readResult(final ByteBuffer buffer){
+		UUID auctionID = readUUID(buffer);
+		ResultType type = readResultType(buffer);
+		OrganizeAuction<T> trigger = readTrigger(buffer);
+		byte kind = getBidKind(trigger.getType());
+		int nrOfPersonalResults = Varints.read(buffer);
+		List<AuctionPersonalResult> personalResults = new ArrayList<>(nrOfPersonalResults);
+		for(int i = 0; i < nrOfPersonalResults; i++)
+			personalResults.add(readPersonalResult(kind, buffer));
+		List<Bid> bids = readBids(null, kind, buffer);
+		double price = buffer.getDouble();
+		int quantityAvailable = buffer.getInt();
+		double decrement = buffer.getDouble();
+		List<Bid> removedBids = readBids(null, kind, buffer);
+		RoundSummary summary = null;
+		if(buffer.get() != 0)
+			summary = new RoundSummary(buffer.getDouble(), buffer.getLong(), buffer.getDouble(), Varints.read(buffer));
+		return new AuctionResult<>(auctionID, type, trigger, personalResults, bids, price, quantityAvailable, decrement, removedBids, summary);
+	}
+
+	/** Write the trigger that organized an auction at the position of the buffer, e.g. to journal the auction. Its 
+	 * bulletin board is not written. */
+	public final void writeTrigger(final OrganizeAuction<T> trigger, final ByteBuffer buffer){
+		buffer.put((byte) trigger.getType().ordinal());
+		this.itemCodec.write(trigger.getObjectForSale(), buffer);
+		writeAgents(trigger.getParticipants(), buffer);
+		buffer.putDouble(trigger.getMinimalPrice());
+		buffer.putDouble(trigger.getMaximalPrice());
+		buffer.putDouble(trigger.getDecrementPerRound());
+		buffer.putInt(trigger.getQuantity());
+		buffer.put((byte) ((trigger.isStreamingClearing() ? 1 : 0) | (trigger.isRetainingAllBids() ? 2 : 0) | (trigger.isClockSkipping() ? 4 : 0) | (trigger.isProxyBidding() ? 8 : 0)));
+		writeAgents(trigger.getRelays(), buffer);
+		buffer.putLong(trigger.getRoundDeadline());
+	}
+
+	/** Read the trigger that organized an auction at the position of the buffer. */
+	public final OrganizeAuction<T> readTrigger(final ByteBuffer buffer){
+		AuctionType type = readAuctionType(buffer);
+		T item = this.itemCodec.read(buffer);
+		List<AgentID> participants = readAgents(buffer);
+		double minimalPrice = buffer.getDouble();
+		double maximalPrice = buffer.getDouble();
+		double decrement = buffer.getDouble();
+		int quantity = buffer.getInt();
+		OrganizeAuction<T> trigger = new OrganizeAuction<>(type, item, participants, minimalPrice, maximalPrice, decrement, quantity);
+		byte flags = buffer.get();
+		if((flags & 1) != 0) trigger.setStreamingClearing();
+		trigger.setRetainAllBids((flags & 2) != 0);
+		if((flags & 4) != 0) trigger.setClockSkipping();
+		if((flags & 8) != 0) trigger.setProxyBidding();
+		List<AgentID> relays = readAgents(buffer);
+		if(!relays.isEmpty()) trigger.setRelays(relays);
+		return trigger.setRoundDeadline(buffer.getLong());
+	}
+
+	private final void writeEnded(final AuctionEnded<T> ended, final byte kind, final ByteBuffer buffer){
+		writeUUID(ended.getAuctionID(), buffer);
+		this.itemCodec.write(ended.getItemForSale(), buffer);
+		writePersonalResult(ended.getResult(), kind, buffer);
+	}
+
+	private final AuctionEnded<T> readEnded(final ByteBuffer buffer, final byte kind){
+		UUID auctionID = readUUID(buffer);
+		T item = this.itemCodec.read(buffer);
+		return new AuctionEnded<>(readPersonalResult(kind, buffer), auctionID, item);
+	}
+
+	private final void writePersonalResult(final AuctionPersonalResult result, final byte kind, final ByteBuffer buffer){
+		// The result of agents that did not win is a shared constant without a bid
+		if(result == AuctionPersonalResult.NOTWON || result.getBid() == null){
+			buffer.put((byte) 0);
+		} else {
+			buffer.put((byte) 1);
+			writeBid(result.getBid(), null, kind, buffer);
+			buffer.putDouble(result.getPrice());
+			buffer.putInt(result.getQuantity());
+		}
+	}
+
+	private final AuctionPersonalResult readPersonalResult(final byte kind, final ByteBuffer buffer){
+		if(buffer.get() == 0) return AuctionPersonalResult.NOTWON;
+		Bid bid = readBid(null, kind, buffer);
+		double price = buffer.getDouble();
+		return new AuctionPersonalResult(bid, price, buffer.getInt());
+	}
+
+	/** Write the bids, where bids of the given owner (if not null) are written without their bidder. Lot bids are written 
+	 * with their lot, where other bids get lot 0, and orders with their side, where other bids are buy orders. */
+	private final void writeBids(final List<Bid> bids, final AgentID owner, final byte kind, final ByteBuffer buffer){
+		Varints.write(bids.size(), buffer);
+		for(Bid bid : bids)
+			writeBid(bid, owner, kind, buffer);
+	}
+
+	private final List<Bid> readBids(final AgentID owner, final byte kind, final ByteBuffer buffer){
+		int nrOfBids = Varints.read(buffer);
+		List<Bid> bids = new ArrayList<>(nrOfBids);
+		for(int i = 0; i < nrOfBids; i++)
+			bids.add(readBid(owner, kind, buffer));
+		return bids;
+	}
+
+	private final void writeBid(final Bid bid, final AgentID owner, final byte kind, final ByteBuffer buffer){
+		buffer.putDouble(bid.getPrice());
+		buffer.putInt(bid.getQuantity());
+		if(owner != null && owner.equals(bid.getBidder())){
+			buffer.put(OWN_BIDDER);
+		} else {
+			if(owner != null) buffer.put(OTHER_BIDDER);
+			this.agentCodec.write(bid.getBidder(), buffer);
+		}
+		if(kind == LOT_BIDS) Varints.write(bid instanceof LotBid ? ((LotBid) bid).getLot() : 0, buffer);
+		else if(kind == ORDER_BIDS) buffer.put((byte) (bid instanceof LimitOrder && !((LimitOrder) bid).isBuy() ? 1 : 0));
+	}
+
+	private final Bid readBid(final AgentID owner, final byte kind, final ByteBuffer buffer){
+		double price = buffer.getDouble();
+		int quantity = buffer.getInt();
+		AgentID bidder = owner != null && buffer.get() == OWN_BIDDER ? owner : this.agentCodec.read(buffer);
+		if(kind == LOT_BIDS) return new LotBid(Varints.read(buffer), price, quantity, bidder);
+		else if(kind == ORDER_BIDS) return new LimitOrder(buffer.get() == 0 ? Side.BUY : Side.SELL, price, quantity, bidder);
+		else return new Bid(price, quantity, bidder);
+	}
+
+	private final void writeAgents(final List<AgentID> agents, final ByteBuffer buffer){
+		Varints.write(agents.size(), buffer);
+		for(AgentID agent : agents)
+			this.agentCodec.write(agent, buffer);
+	}
+
+	private final List<AgentID> readAgents(final ByteBuffer buffer){
+		int nrOfAgents = Varints.read(buffer);
+		List<AgentID> agents = new ArrayList<>(nrOfAgents);
+		for(int i = 0; i < nrOfAgents; i++)
+			agents.add(this.agentCodec.read(buffer));
+		return agents;
+	}
+
+	private static final AuctionType readAuctionType(final ByteBuffer buffer){
+		byte ordinal = buffer.get();
+		if(ordinal < 0 || ordinal >= AUCTION_TYPES.length) throw new IllegalArgumentException("Unknown auction type "+ordinal+".");
+		return AUCTION_TYPES[ordinal];
+	}
+
+	private static final ResultType readResultType(final ByteBuffer buffer){
+		byte ordinal = buffer.get();
+		if(ordinal < 0 || ordinal >= RESULT_TYPES.length) throw new IllegalArgumentException("Unknown result type "+ordinal+".");
+		return RESULT_TYPES[ordinal];
+	}
+
+	private static final void writeUUID(final UUID id, final ByteBuffer buffer){
+		buffer.putLong(id.getMostSignificantBits());
+		buffer.putLong(id.getLeastSignificantBits());
+	}
+
+	private static final UUID readUUID(final ByteBuffer buffer){
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+}
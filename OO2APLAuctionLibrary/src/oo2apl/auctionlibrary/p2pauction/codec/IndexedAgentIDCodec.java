@@ -0,0 +1,40 @@
+package oo2apl.auctionlibrary.p2pauction.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import oo2apl.agent.AgentID;
+/**
+ * Agent identifier codec for a directory of agents that is shared by all nodes, e.g. the traders of a market that is 
+ * set up before the auctions start. An agent is written as the varint of its index in the directory, which costs one to 
+ * three bytes for directories up to two million agents. The directory must be the same, in the same order, on every node. 
+ * 
+ * @author Bas Testerink
+ */
+public final class IndexedAgentIDCodec implements AgentIDCodec {
+	private final List<AgentID> directory;
+	private final ConcurrentMap<AgentID, Integer> indices;
+	
+	/** @param directory The agents that can be encoded, in the same order as on the other nodes. */
+	public IndexedAgentIDCodec(final List<AgentID> directory){
+		this.directory = new ArrayList<>(directory);
+		this.indices = new ConcurrentHashMap<>(directory.size() * 2);
+		for(int i = 0; i < this.directory.size(); i++)
+			this.indices.putIfAbsent(this.directory.get(i), i);
+	}
+	
+	/** {@inheritDoc} */
+	public final void write(final AgentID agent, final ByteBuffer buffer){
+		Integer index = this.indices.get(agent);
+		if(index == null) throw new IllegalArgumentException("Agent "+agent+" is not in the directory of the codec.");
+		Varints.write(index, buffer);
+	}
+	
+	/** {@inheritDoc} */
+	public final AgentID read(final ByteBuffer buffer){
+		return this.directory.get(Varints.read(buffer));
+	}
+}
@@ -0,0 +1,31 @@
+package oo2apl.auctionlibrary.p2pauction.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+/**
+ * Functional pair that writes items of type T to a buffer and reads them back. An item codec is needed to encode the 
+ * auction messages that contain the object for sale. 
+ * 
+ * @author Bas Testerink
+ * @param <T>
+ */
+public interface ItemCodec<T> {
+	/** Write the item at the position of the buffer. */
+	public void write(T item, ByteBuffer buffer);
+	/** Read an item at the position of the buffer. */
+	public T read(ByteBuffer buffer);
+	
+	/** Codec for strings, which are written as their UTF-8 bytes preceded by their varint length. */
+	public static final ItemCodec<String> UTF8 = new ItemCodec<String>(){
+		public void write(final String item, final ByteBuffer buffer){
+			byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+			Varints.write(bytes.length, buffer);
+			buffer.put(bytes);
+		}
+		public String read(final ByteBuffer buffer){
+			byte[] bytes = new byte[Varints.read(buffer)];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+}
@@ -0,0 +1,43 @@
+package oo2apl.auctionlibrary.p2pauction.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import oo2apl.auctionlibrary.p2pauction.Lot;
+import oo2apl.auctionlibrary.p2pauction.MultiLotSale;
+/**
+ * Codec for the object for sale of multi-lot auctions. A sale is written as the varint amount of lots, followed per lot 
+ * by its item (with the item codec of the lots), its quantity as a 4-byte integer and its minimal price as a double. 
+ * 
+ * @author Bas Testerink
+ * @param <T>
+ */
+public final class MultiLotSaleCodec<T> implements ItemCodec<MultiLotSale<T>> {
+	private final ItemCodec<T> itemCodec;
+	
+	/** @param itemCodec Codec for the items of the lots. */
+	public MultiLotSaleCodec(final ItemCodec<T> itemCodec){
+		this.itemCodec = itemCodec;
+	}
+	
+	public final void write(final MultiLotSale<T> sale, final ByteBuffer buffer){
+		Varints.write(sale.size(), buffer);
+		for(Lot<T> lot : sale.getLots()){
+			this.itemCodec.write(lot.getItem(), buffer);
+			buffer.putInt(lot.getQuantity());
+			buffer.putDouble(lot.getMinimalPrice());
+		}
+	}
+	
+	public final MultiLotSale<T> read(final ByteBuffer buffer){
+		int nrOfLots = Varints.read(buffer);
+		List<Lot<T>> lots = new ArrayList<>(nrOfLots);
+		for(int i = 0; i < nrOfLots; i++){
+			T item = this.itemCodec.read(buffer);
+			int quantity = buffer.getInt();
+			lots.add(new Lot<>(item, quantity, buffer.getDouble()));
+		}
+		return new MultiLotSale<>(lots);
+	}
+}
@@ -0,0 +1,33 @@
+package oo2apl.auctionlibrary.p2pauction.codec;
+
+import java.nio.ByteBuffer;
+/**
+ * Variable length encoding of non-negative integers: seven bits per byte, least significant group first, where the 
+ * high bit of a byte tells that another byte follows. Small numbers such as counts and indices take a single byte. 
+ * 
+ * @author Bas Testerink
+ */
+final class Varints {
+	private Varints(){}
+	
+	/** Write a non-negative integer. */
+	static final void write(int value, final ByteBuffer buffer){
+		if(value < 0) throw new IllegalArgumentException("Varints must be non-negative, got "+value+".");
+		while((value & ~0x7F) != 0){
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+	
+	/** Read a non-negative integer. */
+	static final int read(final ByteBuffer buffer){
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7){
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if(b >= 0) return value;
+		}
+		throw new IllegalArgumentException("Malformed varint.");
+	}
+}
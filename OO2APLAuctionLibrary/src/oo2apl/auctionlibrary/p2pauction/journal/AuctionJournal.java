@@ -0,0 +1,426 @@
+package oo2apl.auctionlibrary.p2pauction.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.codec.AgentIDCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.AuctionMessageCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.ItemCodec;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+/**
+ * An append-only journal of the inputs of the auctions of an auctioneer context, so that the auctions that were in
+ * progress can be recovered when the JVM of the auctioneer died, see AuctioneerContext.enableJournal. The journal
+ * records the organization of each auction, the responses that the auction accepted, passed round deadlines, closed
+ * auctions and cleared auctions. The rules of an auction are deterministic in these inputs, so replaying the records
+ * in their order rebuilds the auctions with their bids and current round.
+ *
+ * Records are appended to segment files of a fixed size that are mapped in memory. An appended record is in the page
+ * cache of the operating system right away, so it survives a crash of the JVM. A background thread forces the segments
+ * to disk every sync interval, so all records that are appended within an interval share one disk sync (group commit).
+ * Use sync() to wait until the records that were appended so far are on disk. A record is encoded and checksummed by
+ * the appending thread, only the copy into the segment is done under the lock of the journal.
+ *
+ * A record is its length (4 bytes), the CRC32 of its payload (4 bytes) and the payload: the record type, the auction
+ * ID and the fields of the record, where triggers and responses are written with the AuctionMessageCodec. The length
+ * is written last and reading stops at the first empty record or record with a wrong checksum, so a record that was
+ * torn by a crash is never replayed.
+ *
+ * Every so many filled segments (see setSegmentsPerCompaction) the journal compacts its records: the records of the
+ * auctions that are still registered are copied unchanged from the previous compacted file and the filled segments into
+ * a new compacted file, after which those files are deleted. This is record compaction, not a snapshot of the auction
+ * state: the records of a registered auction are kept in full and recovery still replays them. Recovery replays the
+ * latest compacted file and the segments after it, so its cost depends on the auctions that are in progress rather than
+ * on everything the auctioneer ever did.
+ *
+ * @author Bas Testerink
+ * @param <T>
+ */
+public final class AuctionJournal<T> implements Closeable {
+	private static final byte ORGANIZED = 1, RESPONDED = 2, DEADLINE_PASSED = 3, CLOSED = 4, CLEARED = 5;
+	private static final int HEADER = 8, INITIAL_RECORD_SIZE = 1 << 12;
+	private static final String SEGMENT = "journal-", COMPACTED = "compacted-", EXTENSION = ".log", TEMPORARY = ".tmp";
+	private final Path directory;
+	private final AuctionMessageCodec<T> codec;
+	private final ThreadLocal<ByteBuffer> records; // Each appending thread encodes its records in its own buffer
+	private final Object compaction;
+	private int segmentSize = 1 << 26;
+	private long syncIntervalMillis = 10;
+	private int segmentsPerCompaction = 4;
+	private volatile Consumer<Exception> failureListener = (Exception e) -> {};
+	private MappedByteBuffer segment; // The segment that is appended to
+	private long segmentNumber;
+	private long compactedNumber; // The compacted file covers the segments before its number, guarded by the compaction lock
+	private List<MappedByteBuffer> filledSegments; // Filled segments that are not yet synced
+	private long appended, synced;
+	private boolean syncRequested;
+	private volatile boolean running;
+	private Thread syncThread;
+
+	/**
+	 * @param directory The directory of the segment and compacted files, which is created if it does not exist.
+	 * @param itemCodec Codec for the items that are auctioned.
+	 * @param agentCodec Codec for agent identifiers, which must resolve the same agents after a restart.
+	 */
+	public AuctionJournal(final Path directory, final ItemCodec<T> itemCodec, final AgentIDCodec agentCodec){
+		this.directory = directory;
+		this.codec = new AuctionMessageCodec<>(itemCodec, agentCodec);
+		this.records = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_RECORD_SIZE));
+		this.compaction = new Object();
+		this.filledSegments = new ArrayList<>();
+	}
+
+	/** Set the size of a segment file in bytes (default 64MB). A record must fit in a segment. */
+	public final AuctionJournal<T> setSegmentSize(final int segmentSize){
+		this.segmentSize = segmentSize;
+		return this;
+	}
+
+	/** Set the time between two disk syncs (default 10ms). */
+	public final AuctionJournal<T> setSyncInterval(final long syncIntervalMillis){
+		this.syncIntervalMillis = syncIntervalMillis;
+		return this;
+	}
+
+	/** Set the amount of filled segments after which the records are compacted (default 4). */
+	public final AuctionJournal<T> setSegmentsPerCompaction(final int segmentsPerCompaction){
+		this.segmentsPerCompaction = segmentsPerCompaction;
+		return this;
+	}
+
+	/** Set the listener that is told when the sync thread failed to compact the records. The segments of a failed compaction
+	 * are kept, so nothing is lost and the next compaction covers them again. By default failures are ignored. */
+	public final AuctionJournal<T> setFailureListener(final Consumer<Exception> failureListener){
+		this.failureListener = failureListener;
+		return this;
+	}
+
+	/** Find the files of a previous run, start a new segment and start the sync thread. The records of the previous run
+	 * can then be replayed, see replay. */
+	public final AuctionJournal<T> open() throws IOException {
+		Files.createDirectories(this.directory);
+		long lastSegment = 0;
+		for(Path file : list(COMPACTED, TEMPORARY)) Files.delete(file); // A compaction that was not completed
+		for(Path file : list(COMPACTED, EXTENSION)) this.compactedNumber = Math.max(this.compactedNumber, getNumber(file));
+		for(Path file : list(SEGMENT, EXTENSION)) lastSegment = Math.max(lastSegment, getNumber(file));
+		deleteCompacted(this.compactedNumber); // In case the previous run stopped during a compaction
+		synchronized(this){
+			this.segmentNumber = Math.max(lastSegment + 1, Math.max(this.compactedNumber, 1));
+			this.segment = createSegment(this.segmentNumber);
+		}
+		this.running = true;
+		this.syncThread = new Thread(this::run, "auction-journal-sync");
+		this.syncThread.setDaemon(true);
+		this.syncThread.start();
+		return this;
+	}
+
+	/** Replay the records of the previous run, those of the latest compacted file and then those of the later segments, to
+	 * the given replay. Produces the amount of replayed records. */
+	public final long replay(final Replay replay) throws IOException {
+		synchronized(this.compaction){ // The files must not be compacted meanwhile
+			return replay(replay, getPreviousFiles(getSegmentNumber()));
+		}
+	}
+
+	private final long replay(final Replay replay, final List<Path> files) throws IOException {
+		long replayed = 0;
+		for(Path file : files){
+			ByteBuffer buffer = read(file);
+			for(int start = 0; (start = next(buffer, start)) >= 0; start += HEADER + buffer.getInt(start)){
+				ByteBuffer payload = getPayload(buffer, start);
+				byte type = payload.get();
+				UUID auctionID = new UUID(payload.getLong(), payload.getLong());
+				switch(type){
+					case ORGANIZED: replay.organized(auctionID, this.codec.readTrigger(payload)); break;
+					case RESPONDED: replay.responded((ParticipantResponse) this.codec.decode(payload)); break;
+					case DEADLINE_PASSED: replay.deadlinePassed(auctionID, payload.getInt()); break;
+					case CLOSED: replay.closed(auctionID); break;
+					case CLEARED: replay.cleared(auctionID); break;
+					default: throw new IOException("Unknown record type "+type+" in "+file+".");
+				}
+				replayed++;
+			}
+		}
+		return replayed;
+	}
+
+	/** Record that the auction was organized with the given trigger. */
+	public final void recordOrganized(final UUID auctionID, final OrganizeAuction<?> trigger){ append(ORGANIZED, auctionID, trigger, 0); }
+
+	/** Record a response that the auction accepted. */
+	public final void recordResponse(final ParticipantResponse response){ append(RESPONDED, response.getAuctionID(), response, 0); }
+
+	/** Record that the deadline of the round of the auction closed the round. */
+	public final void recordDeadline(final UUID auctionID, final int round){ append(DEADLINE_PASSED, auctionID, null, round); }
+
+	/** Record that the auction was closed. */
+	public final void recordClosed(final UUID auctionID){ append(CLOSED, auctionID, null, 0); }
+
+	/** Record that the auction was cleared from its context, its records are dropped by later compactions. */
+	public final void recordCleared(final UUID auctionID){ append(CLEARED, auctionID, null, 0); }
+
+	/** Wait until the records that were appended so far are synced to disk. */
+	public final synchronized void sync() throws InterruptedException {
+		long target = this.appended;
+		this.syncRequested = true;
+		notifyAll();
+		while(this.synced < target && this.running) wait();
+	}
+
+	/** Compact the records now: keep only the records of the auctions that are registered now, after which only those
+	 * records and the records that are appended from now on are replayed. */
+	public final void compact() throws IOException {
+		long end;
+		synchronized(this){
+			startNextSegment();
+			end = this.segmentNumber;
+		}
+		compact(end, 0);
+	}
+
+	/** The amount of records that were appended since the journal was opened. */
+	public final synchronized long getAppended(){ return this.appended; }
+
+	/** The amount of records of those that are synced to disk. */
+	public final synchronized long getSynced(){ return this.synced; }
+
+	/** Stop the sync thread after a last sync. */
+	public final void close() throws IOException {
+		synchronized(this){
+			this.running = false;
+			notifyAll();
+		}
+		try {
+			if(this.syncThread != null) this.syncThread.join();
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Encode the record in the buffer of the thread and copy it into the segment. */
+	@SuppressWarnings("unchecked") // The journal is used for auctions of items of type T
+	private final void append(final byte type, final UUID auctionID, final Trigger message, final int round){
+		ByteBuffer record = this.records.get();
+		while(true){
+			record.clear();
+			record.position(HEADER);
+			try {
+				record.put(type);
+				record.putLong(auctionID.getMostSignificantBits());
+				record.putLong(auctionID.getLeastSignificantBits());
+				if(type == ORGANIZED) this.codec.writeTrigger((OrganizeAuction<T>) message, record);
+				else if(type == RESPONDED) this.codec.encode(message, record);
+				else if(type == DEADLINE_PASSED) record.putInt(round);
+				break;
+			} catch(BufferOverflowException e){
+				record = ByteBuffer.allocate(record.capacity() << 1);
+				this.records.set(record);
+			}
+		}
+		int length = record.position() - HEADER;
+		if(HEADER + length > this.segmentSize) throw new IllegalArgumentException("A record of "+length+" bytes does not fit in a segment.");
+		CRC32 crc = new CRC32();
+		record.flip().position(HEADER);
+		crc.update(record);
+		record.putInt(4, (int) crc.getValue());
+		record.position(4);
+		synchronized(this){
+			if(this.segment.remaining() < HEADER + length) startNextSegment();
+			int start = this.segment.position();
+			this.segment.position(start + 4);
+			this.segment.put(record);
+			this.segment.putInt(start, length); // Last, so that the record is complete when it has a length
+			this.appended++;
+		}
+	}
+
+	/** Continue with a new segment, the filled segment is synced by the sync thread. */
+	private final void startNextSegment(){
+		try {
+			MappedByteBuffer next = createSegment(this.segmentNumber + 1);
+			this.filledSegments.add(this.segment);
+			this.segment = next;
+			this.segmentNumber++;
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private final MappedByteBuffer createSegment(final long number) throws IOException {
+		try(FileChannel channel = FileChannel.open(getFile(SEGMENT, number, EXTENSION), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			return channel.map(MapMode.READ_WRITE, 0, this.segmentSize); // The file is extended with zeros
+		}
+	}
+
+	/** The sync loop: sync every interval, or earlier when a sync is requested, and compact the records when it is due. */
+	private final void run(){
+		while(true){
+			boolean stopping;
+			synchronized(this){
+				try {
+					if(this.running && !this.syncRequested) wait(this.syncIntervalMillis);
+				} catch(InterruptedException e){
+					this.running = false;
+				}
+				this.syncRequested = false;
+				stopping = !this.running;
+			}
+			syncSegments();
+			if(stopping) return;
+			try {
+				compact(getSegmentNumber(), this.segmentsPerCompaction);
+			} catch(IOException | RuntimeException e){
+				this.failureListener.accept(e); // The segments are kept, so that nothing is lost
+			}
+		}
+	}
+
+	/** Force the filled segments and the current segment to disk. */
+	private final void syncSegments(){
+		List<MappedByteBuffer> filled;
+		MappedByteBuffer current;
+		long target;
+		synchronized(this){
+			if(this.synced == this.appended && this.filledSegments.isEmpty()) return;
+			filled = this.filledSegments;
+			this.filledSegments = new ArrayList<>();
+			current = this.segment;
+			target = this.appended;
+		}
+		for(MappedByteBuffer segment : filled) segment.force();
+		current.force();
+		synchronized(this){
+			this.synced = target;
+			notifyAll();
+		}
+	}
+
+	/** Copy the records of the registered auctions from the segments before the given segment number, which are all filled,
+	 * into a new compacted file and delete those segments and the previous compacted file. Does nothing if there are not more than the given amount of such segments. */
+	private final void compact(final long end, final int minimalSegments) throws IOException {
+		synchronized(this.compaction){
+			if(end - this.compactedNumber <= minimalSegments) return;
+			List<Path> files = getPreviousFiles(end);
+			// The auctions that are still registered at the end of the files
+			Set<UUID> registered = new HashSet<>();
+			for(Path file : files){
+				ByteBuffer buffer = read(file);
+				for(int start = 0; (start = next(buffer, start)) >= 0; start += HEADER + buffer.getInt(start)){
+					byte type = buffer.get(start + HEADER);
+					if(type == ORGANIZED) registered.add(getAuctionID(buffer, start));
+					else if(type == CLEARED) registered.remove(getAuctionID(buffer, start));
+				}
+			}
+			// Copy their records
+			Path temporary = getFile(COMPACTED, end, TEMPORARY);
+			try(FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)){
+				for(Path file : files){
+					ByteBuffer buffer = read(file);
+					for(int start = 0; (start = next(buffer, start)) >= 0; start += HEADER + buffer.getInt(start)){
+						if(!registered.contains(getAuctionID(buffer, start))) continue;
+						ByteBuffer record = buffer.duplicate();
+						record.limit(start + HEADER + buffer.getInt(start)).position(start);
+						while(record.hasRemaining()) compacted.write(record);
+					}
+				}
+				compacted.force(true);
+			}
+			Files.move(temporary, getFile(COMPACTED, end, EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+			this.compactedNumber = end;
+			deleteCompacted(end);
+		}
+	}
+
+	/** Delete the compacted files and segments before the compacted file with the given number. */
+	private final void deleteCompacted(final long compactedNumber) throws IOException {
+		for(Path file : list(COMPACTED, EXTENSION)) if(getNumber(file) < compactedNumber) Files.delete(file);
+		for(Path file : list(SEGMENT, EXTENSION)) if(getNumber(file) < compactedNumber) Files.delete(file);
+	}
+
+	/** The latest compacted file, if any, and the segments from that file up to the given segment number, in order. */
+	private final List<Path> getPreviousFiles(final long end) throws IOException {
+		List<Path> files = new ArrayList<>();
+		Path compacted = getFile(COMPACTED, this.compactedNumber, EXTENSION);
+		if(Files.exists(compacted)) files.add(compacted);
+		List<Path> segments = list(SEGMENT, EXTENSION);
+		segments.sort(null); // The numbers have a fixed width
+		for(Path segment : segments)
+			if(getNumber(segment) >= this.compactedNumber && getNumber(segment) < end) files.add(segment);
+		return files;
+	}
+
+	private final synchronized long getSegmentNumber(){ return this.segmentNumber; }
+
+	private final List<Path> list(final String prefix, final String extension) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, prefix + "*" + extension)){
+			for(Path file : stream) files.add(file);
+		}
+		return files;
+	}
+
+	private final Path getFile(final String prefix, final long number, final String extension){
+		return this.directory.resolve(prefix + String.format("%016d", number) + extension);
+	}
+
+	private static final long getNumber(final Path file){
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+	}
+
+	/** Map the file for reading. */
+	private static final ByteBuffer read(final Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			return channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/** The start of the record at the given position if it is complete, otherwise -1 as it is the end of the file. */
+	private static final int next(final ByteBuffer buffer, final int start){
+		if(buffer.limit() - start < HEADER) return -1;
+		int length = buffer.getInt(start);
+		if(length <= 0 || length > buffer.limit() - start - HEADER) return -1;
+		CRC32 crc = new CRC32();
+		crc.update(getPayload(buffer, start));
+		return (int) crc.getValue() == buffer.getInt(start + 4) ? start : -1;
+	}
+
+	private static final ByteBuffer getPayload(final ByteBuffer buffer, final int start){
+		ByteBuffer payload = buffer.duplicate();
+		payload.limit(start + HEADER + buffer.getInt(start)).position(start + HEADER);
+		return payload;
+	}
+
+	private static final UUID getAuctionID(final ByteBuffer buffer, final int start){
+		return new UUID(buffer.getLong(start + HEADER + 1), buffer.getLong(start + HEADER + 9));
+	}
+
+	/** Receives the replayed records of a journal. */
+	public interface Replay {
+		public void organized(UUID auctionID, OrganizeAuction<?> trigger);
+		public void responded(ParticipantResponse response);
+		public void deadlinePassed(UUID auctionID, int round);
+		public void closed(UUID auctionID);
+		public void cleared(UUID auctionID);
+	}
+}
@@ -0,0 +1,122 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+/**
+ * Registers the metrics of contexts as MBeans on the platform MBean server, under the domain oo2apl.auctionlibrary, and
+ * keeps the platform-wide aggregate of all registered metrics, which is registered as type=Platform at the first
+ * registration. Metrics are registered when they are enabled on a context, see AuctioneerContext.enableMetrics and
+ * BuyerContext.enableMetrics, and unregistered when they are disabled, see disableMetrics of the contexts. Registration
+ * fails silently if the MBean server refuses it, the metrics are then still recorded and can be read via the contexts.
+ *
+ * @author Bas Testerink
+ */
+public final class AuctionMetrics {
+	public static final String DOMAIN = "oo2apl.auctionlibrary";
+	private static final List<AuctioneerMetrics> AUCTIONEERS = new CopyOnWriteArrayList<>();
+	private static final List<BuyerMetrics> BUYERS = new CopyOnWriteArrayList<>();
+	private static final ConcurrentMap<Object, ObjectName> NAMES = new ConcurrentHashMap<>(); // The MBean name of each registered metrics
+	private static final AtomicInteger IDS = new AtomicInteger();
+	private static final PlatformMetrics PLATFORM = new PlatformMetrics();
+	private static volatile boolean platformRegistered = false;
+
+	private AuctionMetrics(){}
+
+	/** Register the metrics of an auctioneer context. */
+	public static final void register(final AuctioneerMetrics metrics){
+		AUCTIONEERS.add(metrics);
+		registerMBean(metrics, "type=AuctioneerContext,id=" + IDS.incrementAndGet());
+	}
+
+	/** Register the metrics of a buyer context with the given name, e.g. the name of the agent. */
+	public static final void register(final BuyerMetrics metrics, final String name){
+		BUYERS.add(metrics);
+		registerMBean(metrics, "type=BuyerContext,name=" + ObjectName.quote(name) + ",id=" + IDS.incrementAndGet());
+	}
+
+	/** Unregister the metrics of an auctioneer context, they are then no longer part of the aggregate. */
+	public static final void unregister(final AuctioneerMetrics metrics){
+		AUCTIONEERS.remove(metrics);
+		unregisterMBean(metrics);
+	}
+
+	/** Unregister the metrics of a buyer context, they are then no longer part of the aggregate. */
+	public static final void unregister(final BuyerMetrics metrics){
+		BUYERS.remove(metrics);
+		unregisterMBean(metrics);
+	}
+
+	/** The aggregate of all registered metrics. */
+	public static final PlatformMetricsMBean getPlatformMetrics(){ return PLATFORM; }
+
+	private static final void registerMBean(final Object mbean, final String properties){
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if(!platformRegistered){
+				synchronized(AuctionMetrics.class){
+					if(!platformRegistered){
+						// The aggregate is not public, so its management interface is given explicitly
+						server.registerMBean(new StandardMBean(PLATFORM, PlatformMetricsMBean.class), new ObjectName(DOMAIN + ":type=Platform"));
+						platformRegistered = true;
+					}
+				}
+			}
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+			server.registerMBean(mbean, name);
+			NAMES.put(mbean, name);
+		} catch(JMException e){
+			// The metrics remain available via the context
+		}
+	}
+
+	private static final void unregisterMBean(final Object mbean){
+		ObjectName name = NAMES.remove(mbean);
+		if(name == null) return; // Was not registered
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch(JMException e){
+			// The MBean was already removed from the server
+		}
+	}
+
+	/** Sums the registered metrics at the moment that an attribute is read. */
+	private static final class PlatformMetrics implements PlatformMetricsMBean {
+		public final int getAuctioneerContexts(){ return AUCTIONEERS.size(); }
+		public final int getBuyerContexts(){ return BUYERS.size(); }
+		public final int getActiveAuctions(){ return AUCTIONEERS.stream().mapToInt(AuctioneerMetrics::getActiveAuctions).sum(); }
+		public final long getAuctionsStarted(){ return AUCTIONEERS.stream().mapToLong(AuctioneerMetrics::getAuctionsStarted).sum(); }
+		public final long getAuctionsFinished(){ return AUCTIONEERS.stream().mapToLong(AuctioneerMetrics::getAuctionsFinished).sum(); }
+		public final long getRounds(){ return AUCTIONEERS.stream().mapToLong(AuctioneerMetrics::getRounds).sum(); }
+		public final long getResponses(){ return AUCTIONEERS.stream().mapToLong(AuctioneerMetrics::getResponses).sum(); }
+		public final long getBids(){ return AUCTIONEERS.stream().mapToLong(AuctioneerMetrics::getBids).sum(); }
+		public final double getRoundLatencyMeanMillis(){ return getRoundLatency().getMeanMillis(); }
+		public final double getRoundLatencyP99Millis(){ return getRoundLatency().getPercentileMillis(0.99); }
+		public final double getRoundLatencyMaxMillis(){ return getRoundLatency().getMaxMillis(); }
+		public final double getClearingMeanMillis(){ return getClearingLatency().getMeanMillis(); }
+		public final double getClearingP99Millis(){ return getClearingLatency().getPercentileMillis(0.99); }
+		public final long getBuyerBids(){ return BUYERS.stream().mapToLong(BuyerMetrics::getBids).sum(); }
+		public final long getEvaluations(){ return BUYERS.stream().mapToLong(BuyerMetrics::getEvaluations).sum(); }
+		public final long getCachedEvaluations(){ return BUYERS.stream().mapToLong(BuyerMetrics::getCachedEvaluations).sum(); }
+
+		private final LatencyHistogram getRoundLatency(){
+			LatencyHistogram aggregate = new LatencyHistogram();
+			for(AuctioneerMetrics metrics : AUCTIONEERS) metrics.getRoundLatency().addTo(aggregate);
+			return aggregate;
+		}
+
+		private final LatencyHistogram getClearingLatency(){
+			LatencyHistogram aggregate = new LatencyHistogram();
+			for(AuctioneerMetrics metrics : AUCTIONEERS) metrics.getClearingLatency().addTo(aggregate);
+			return aggregate;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+/**
+ * The metrics of an auctioneer context, which are recorded by its auctions. The counters are striped adders and the
+ * latencies are kept in lock-free histograms, so auctions that are processed in parallel record without contention.
+ *
+ * @author Bas Testerink
+ */
+public final class AuctioneerMetrics implements AuctioneerMetricsMBean {
+	private static final long RATE_WINDOW_NANOS = 1000000000L; // The minimal length of the window of the response rate
+	private final IntSupplier activeAuctions;
+	private final LongAdder auctionsStarted, auctionsFinished, rounds, responses, bids;
+	private final LatencyHistogram roundLatency, clearingLatency;
+	private long rateWindowStart, rateWindowResponses; // Where the current window of the response rate started
+	private double responseRate; // The response rate of the last completed window
+
+	/** @param activeAuctions Produces the amount of auctions that are running in the context. */
+	public AuctioneerMetrics(final IntSupplier activeAuctions){
+		this.activeAuctions = activeAuctions;
+		this.auctionsStarted = new LongAdder();
+		this.auctionsFinished = new LongAdder();
+		this.rounds = new LongAdder();
+		this.responses = new LongAdder();
+		this.bids = new LongAdder();
+		this.roundLatency = new LatencyHistogram();
+		this.clearingLatency = new LatencyHistogram();
+		this.rateWindowStart = System.nanoTime();
+		this.rateWindowResponses = 0;
+		this.responseRate = 0;
+	}
+
+	// Recording
+	public final void auctionStarted(){ this.auctionsStarted.increment(); }
+
+	public final void responseReceived(final int nrOfBids){
+		this.responses.increment();
+		this.bids.add(nrOfBids);
+	}
+
+	/** A round that took the given time was closed and the auction moved to the next round. */
+	public final void roundClosed(final long roundNanos){
+		this.rounds.increment();
+		this.roundLatency.record(roundNanos);
+	}
+
+	/** The final round that took the given time was closed and the final result took the given time to clear. */
+	public final void auctionFinished(final long roundNanos, final long clearingNanos){
+		roundClosed(roundNanos);
+		this.clearingLatency.record(clearingNanos);
+		this.auctionsFinished.increment();
+	}
+
+	// Reporting
+	public final int getActiveAuctions(){ return this.activeAuctions.getAsInt(); }
+	public final long getAuctionsStarted(){ return this.auctionsStarted.sum(); }
+	public final long getAuctionsFinished(){ return this.auctionsFinished.sum(); }
+	public final long getRounds(){ return this.rounds.sum(); }
+	public final long getResponses(){ return this.responses.sum(); }
+	public final long getBids(){ return this.bids.sum(); }
+	public final double getRoundsPerAuction(){ long finished = getAuctionsFinished(); return finished == 0 ? 0 : getRounds() / (double) finished; }
+	public final double getBidsPerRound(){ long rounds = getRounds(); return rounds == 0 ? 0 : getBids() / (double) rounds; }
+
+	/** The rate of the last completed window, a read after the window ended completes it and starts the next one. All 
+	 * readers therefore see the same rate, however often they read. */
+	public final synchronized double getResponsesPerSecond(){
+		long now = System.nanoTime();
+		if(now - this.rateWindowStart >= RATE_WINDOW_NANOS){
+			long responses = getResponses();
+			this.responseRate = (responses - this.rateWindowResponses) * 1e9 / (now - this.rateWindowStart);
+			this.rateWindowStart = now;
+			this.rateWindowResponses = responses;
+		}
+		return this.responseRate;
+	}
+
+	public final double getRoundLatencyMeanMillis(){ return this.roundLatency.getMeanMillis(); }
+	public final double getRoundLatencyP99Millis(){ return this.roundLatency.getPercentileMillis(0.99); }
+	public final double getRoundLatencyMaxMillis(){ return this.roundLatency.getMaxMillis(); }
+	public final double getClearingMeanMillis(){ return this.clearingLatency.getMeanMillis(); }
+	public final double getClearingP99Millis(){ return this.clearingLatency.getPercentileMillis(0.99); }
+	public final double getClearingMaxMillis(){ return this.clearingLatency.getMaxMillis(); }
+
+	public final LatencyHistogram getRoundLatency(){ return this.roundLatency; }
+	public final LatencyHistogram getClearingLatency(){ return this.clearingLatency; }
+}
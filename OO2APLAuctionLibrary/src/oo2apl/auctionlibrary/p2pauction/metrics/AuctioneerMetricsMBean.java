@@ -0,0 +1,30 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+/**
+ * The management interface of the metrics of an auctioneer context. Latencies are in milliseconds.
+ *
+ * @author Bas Testerink
+ */
+public interface AuctioneerMetricsMBean {
+	/** The amount of auctions that are running, i.e. the backlog of the context. */
+	public int getActiveAuctions();
+	public long getAuctionsStarted();
+	public long getAuctionsFinished();
+	/** The amount of closed rounds, including the final round of each auction. */
+	public long getRounds();
+	public long getResponses();
+	public long getBids();
+	public double getRoundsPerAuction();
+	public double getBidsPerRound();
+	/** The responses per second in the last completed sampling window, which lasts at least a second and ends at the 
+	 * first read after that second. The rate is 0 until the first window is completed. */
+	public double getResponsesPerSecond();
+	/** The time from the start of a round until it is closed. */
+	public double getRoundLatencyMeanMillis();
+	public double getRoundLatencyP99Millis();
+	public double getRoundLatencyMaxMillis();
+	/** The time that determining the final result of an auction takes. */
+	public double getClearingMeanMillis();
+	public double getClearingP99Millis();
+	public double getClearingMaxMillis();
+}
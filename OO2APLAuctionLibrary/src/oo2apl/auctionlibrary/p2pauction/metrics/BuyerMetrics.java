@@ -0,0 +1,46 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+/**
+ * The metrics of a buyer context. The evaluations are read from the evaluation cache of the buyer, which counts them
+ * already, and are as accurate as the cache's counters are when read from another thread.
+ *
+ * @author Bas Testerink
+ */
+public final class BuyerMetrics implements BuyerMetricsMBean {
+	private final LongAdder announcements, bids, auctionsEnded, auctionsWon;
+	private final LongSupplier evaluations, cachedEvaluations;
+
+	/**
+	 * @param evaluations Produces the amount of calls of evaluation functions.
+	 * @param cachedEvaluations Produces the amount of evaluations that were taken from the cache.
+	 */
+	public BuyerMetrics(final LongSupplier evaluations, final LongSupplier cachedEvaluations){
+		this.announcements = new LongAdder();
+		this.bids = new LongAdder();
+		this.auctionsEnded = new LongAdder();
+		this.auctionsWon = new LongAdder();
+		this.evaluations = evaluations;
+		this.cachedEvaluations = cachedEvaluations;
+	}
+
+	// Recording
+	public final void announcementHandled(final int nrOfBids){
+		this.announcements.increment();
+		this.bids.add(nrOfBids);
+	}
+
+	public final void auctionEnded(final boolean won){
+		this.auctionsEnded.increment();
+		if(won) this.auctionsWon.increment();
+	}
+
+	// Reporting
+	public final long getAnnouncements(){ return this.announcements.sum(); }
+	public final long getBids(){ return this.bids.sum(); }
+	public final long getAuctionsEnded(){ return this.auctionsEnded.sum(); }
+	public final long getAuctionsWon(){ return this.auctionsWon.sum(); }
+	public final long getEvaluations(){ return this.evaluations.getAsLong(); }
+	public final long getCachedEvaluations(){ return this.cachedEvaluations.getAsLong(); }
+}
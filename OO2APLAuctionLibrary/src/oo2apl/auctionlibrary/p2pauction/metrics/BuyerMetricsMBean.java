@@ -0,0 +1,17 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+/**
+ * The management interface of the metrics of a buyer context.
+ *
+ * @author Bas Testerink
+ */
+public interface BuyerMetricsMBean {
+	/** The amount of announcements (including new rounds) that the buyer responded to. */
+	public long getAnnouncements();
+	public long getBids();
+	public long getAuctionsEnded();
+	public long getAuctionsWon();
+	/** The calls of evaluation functions, i.e. the evaluations that were not in the evaluation cache. */
+	public long getEvaluations();
+	public long getCachedEvaluations();
+}
@@ -0,0 +1,93 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * A lock-free histogram of latencies in nanoseconds. A latency is counted in a bucket of which the upper bound is at most
+ * 1/8th above it: the buckets are the powers of two, each split in 8 linear sub-buckets. Recording is an increment of
+ * an atomic array element and of two striped adders, so threads that record at the same time do not block each other.
+ * Percentiles are reported as the upper bound of the bucket in which they fall.
+ *
+ * @author Bas Testerink
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+	private final AtomicLongArray buckets;
+	private final LongAdder count, totalNanos;
+	private final AtomicLong maxNanos;
+
+	public LatencyHistogram(){
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.count = new LongAdder();
+		this.totalNanos = new LongAdder();
+		this.maxNanos = new AtomicLong();
+	}
+
+	/** Count a latency, negative latencies count as 0. */
+	public final void record(final long nanos){
+		long value = Math.max(0, nanos);
+		this.buckets.incrementAndGet(getBucket(value));
+		this.count.increment();
+		this.totalNanos.add(value);
+		if(value > this.maxNanos.get()) this.maxNanos.accumulateAndGet(value, Math::max);
+	}
+
+	public final long getCount(){ return this.count.sum(); }
+
+	/** The mean latency in milliseconds, 0 if nothing was recorded. */
+	public final double getMeanMillis(){
+		long count = this.count.sum();
+		return count == 0 ? 0 : this.totalNanos.sum() / 1e6 / count;
+	}
+
+	public final double getMaxMillis(){ return this.maxNanos.get() / 1e6; }
+
+	/** The latency in milliseconds below which the given fraction (e.g. 0.99) of the recorded latencies falls. */
+	public final double getPercentileMillis(final double fraction){
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			counts[i] = this.buckets.get(i);
+			total += counts[i];
+		}
+		if(total == 0) return 0;
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += counts[i];
+			if(seen >= rank) return Math.min(getUpperBound(i), this.maxNanos.get()) / 1e6;
+		}
+		return getMaxMillis();
+	}
+
+	/** Add the counts of this histogram to the given one, e.g. to aggregate the histograms of several contexts. */
+	public final void addTo(final LatencyHistogram aggregate){
+		for(int i = 0; i < BUCKETS; i++){
+			long bucket = this.buckets.get(i);
+			if(bucket > 0) aggregate.buckets.addAndGet(i, bucket);
+		}
+		aggregate.count.add(this.count.sum());
+		aggregate.totalNanos.add(this.totalNanos.sum());
+		aggregate.maxNanos.accumulateAndGet(this.maxNanos.get(), Math::max);
+	}
+
+	/** Values below SUB_BUCKETS have a bucket each, above that the bucket is determined by the highest bit and the
+	 * SUB_BUCKET_BITS bits below it. */
+	private static final int getBucket(final long value){
+		if(value < SUB_BUCKETS) return (int) value;
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/** The highest value that is counted in the bucket. */
+	private static final long getUpperBound(final int bucket){
+		if(bucket < SUB_BUCKETS) return bucket;
+		int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lower = (1L << highestBit) | (subBucket << (highestBit - SUB_BUCKET_BITS));
+		return lower + (1L << (highestBit - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,26 @@
+package oo2apl.auctionlibrary.p2pauction.metrics;
+
+/**
+ * The management interface of the metrics of all contexts of the JVM for which metrics are enabled. Latencies are in
+ * milliseconds.
+ *
+ * @author Bas Testerink
+ */
+public interface PlatformMetricsMBean {
+	public int getAuctioneerContexts();
+	public int getBuyerContexts();
+	public int getActiveAuctions();
+	public long getAuctionsStarted();
+	public long getAuctionsFinished();
+	public long getRounds();
+	public long getResponses();
+	public long getBids();
+	public double getRoundLatencyMeanMillis();
+	public double getRoundLatencyP99Millis();
+	public double getRoundLatencyMaxMillis();
+	public double getClearingMeanMillis();
+	public double getClearingP99Millis();
+	public long getBuyerBids();
+	public long getEvaluations();
+	public long getCachedEvaluations();
+}
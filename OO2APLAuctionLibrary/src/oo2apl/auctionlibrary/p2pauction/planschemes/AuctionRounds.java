@@ -0,0 +1,156 @@
+package oo2apl.auctionlibrary.p2pauction.planschemes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.ExternalProcessToAgentInterface;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.auctionlibrary.p2pauction.AuctionBulletinBoard;
+import oo2apl.auctionlibrary.p2pauction.AuctionMessaging;
+import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayRelease;
+import oo2apl.auctionlibrary.p2pauction.triggers.RoundDeadline;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+/**
+ * The auctioneer's side of the rounds of an auction, shared by the plan schemes that can close a round: announcing 
+ * the (next) round and processing the result of a closed round. A round is announced by message to the participants, 
+ * via the relays of a hierarchical auction, or on the bulletin board of the auction. 
+ * 
+ * Round deadlines are kept by a single timer thread for all auctioneers. When a deadline passes, the timer gives the 
+ * auctioneer a RoundDeadline external trigger, so that the round is closed by a plan of the auctioneer itself. The 
+ * auctioneer must therefore be registered with AuctioneerContext.registerAuctioneer. The deadline of a round is 
+ * cancelled when the round closes before it. 
+ * 
+ * @author Bas Testerink
+ */
+final class AuctionRounds {
+	private final static ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+		Thread thread = new Thread(runnable, "auction-round-deadlines");
+		thread.setDaemon(true); // The timer must not keep the platform alive
+		return thread;
+	});
+	private final static ConcurrentMap<UUID, ScheduledFuture<?>> DEADLINES = new ConcurrentHashMap<>(); // The pending deadline per auction
+	
+	private AuctionRounds(){}
+	
+	/** Send the announcement of a round to the given participants, or via the relays in case of a hierarchical auction, and start 
+	 * the deadline of the round if the auction has one. */
+	static final void announceRound(final PlanToAgentInterface planInterface, final OrganizeAuction<?> trigger, final AuctionAnnouncement<?> announcement, 
+			final List<AgentID> participants){
+		announceRound(planInterface, trigger, announcement, participants, trigger.getRelays());
+	}
+	
+	/** Announce the current round of an auction that was recovered from the journal again, to the respondents of the round that 
+	 * did not respond before the crash, and start its deadline. An auction that finished before the crash is reported and cleaned 
+	 * up instead. */
+	static final void resumeRound(final PlanToAgentInterface planInterface, final AuctioneerContext context, final UUID auctionID, 
+			final AuctioneerContext.Recovery recovery){
+		AuctionResult<?> result = recovery.getResult();
+		if(result != null && result.getType() == ResultType.FINISHED){
+			processResult(planInterface, context, auctionID, result);
+			return;
+		}
+		AuctionAnnouncement<?> announcement = result == null ? context.makeInitialAnnouncement(auctionID, planInterface.getAgentID()) : 
+			context.makeRoundAnnouncement(result, planInterface.getAgentID());
+		List<AgentID> awaited = new ArrayList<>(context.getRoundRespondents(auctionID));
+		awaited.removeAll(recovery.getResponded());
+		OrganizeAuction<?> trigger = context.getTrigger(auctionID);
+		List<AgentID> relays = new ArrayList<>(trigger.getRelays());
+		relays.retainAll(awaited); // The relays respond on behalf of their shards
+		announceRound(planInterface, trigger, announcement, awaited, relays);
+	}
+	
+	private static final void announceRound(final PlanToAgentInterface planInterface, final OrganizeAuction<?> trigger, final AuctionAnnouncement<?> announcement, 
+			final List<AgentID> participants, final List<AgentID> relays){
+		if(trigger.isHierarchical()){
+			if(announcement.getRound() == 0){
+				// Assign each relay its shard, the relays announce the auction to their shards
+				for(AgentID relay : relays){
+					AuctionMessaging.send(planInterface, relay, new RelayAnnouncement<>(announcement, trigger.getShard(trigger.getRelays().indexOf(relay))));
+				}
+			} else {
+				// The relays announce the new round to their shards
+				RelayAnnouncement<?> relayAnnouncement = new RelayAnnouncement<>(announcement, null);
+				for(AgentID relay : relays){ 
+					AuctionMessaging.send(planInterface, relay, relayAnnouncement);
+				}
+			}
+		} else if(trigger.getBulletinBoard() != null){
+			// Publish the round once, the participants that are not yet awake get a wake-up
+			AuctionBulletinBoard board = trigger.getBulletinBoard();
+			board.publish(announcement, trigger.getParticipants(), (AgentID participant) -> planInterface.sendMessage(participant, board.getWakeUp()));
+		} else {
+			for(AgentID participant : participants){ 
+				AuctionMessaging.send(planInterface, participant, announcement);
+			}
+		}
+		if(trigger.hasRoundDeadline()) startDeadline(planInterface, announcement.getAuctionID(), announcement.getRound(), trigger.getRoundDeadline());
+	}
+	
+	/** Throw an IllegalStateException if the auction has a round deadline and the auctioneer is not registered. This is 
+	 * checked before the auction is registered, so that a failure does not leave a half-started auction behind. */
+	static final void checkDeadline(final PlanToAgentInterface planInterface, final OrganizeAuction<?> trigger){
+		if(trigger.hasRoundDeadline()) getAuctioneer(planInterface);
+	}
+	
+	/** Give the auctioneer a RoundDeadline for the round of the auction when the deadline in milliseconds has passed. This 
+	 * replaces the pending deadline of the auction, if any. */
+	static final void startDeadline(final PlanToAgentInterface planInterface, final UUID auctionID, final int round, final long deadlineMillis){
+		final ExternalProcessToAgentInterface auctioneer = getAuctioneer(planInterface);
+		final RoundDeadline deadline = new RoundDeadline(auctionID, round);
+		ScheduledFuture<?> previous = DEADLINES.put(auctionID, TIMER.schedule(() -> auctioneer.addExternalTrigger(deadline), deadlineMillis, TimeUnit.MILLISECONDS));
+		if(previous != null) previous.cancel(false);
+	}
+	
+	/** The registered interface of the auctioneer, to which the timer gives the RoundDeadline triggers. */
+	private static final ExternalProcessToAgentInterface getAuctioneer(final PlanToAgentInterface planInterface){
+		ExternalProcessToAgentInterface auctioneer = planInterface.getContext(AuctioneerContext.class).getAuctioneer(planInterface.getAgentID());
+		if(auctioneer == null) 
+			throw new IllegalStateException("Auctions with a round deadline require that the auctioneer is registered with AuctioneerContext.registerAuctioneer.");
+		return auctioneer;
+	}
+	
+	/** Cancel the pending deadline of the auction, if any. */
+	static final void cancelDeadline(final UUID auctionID){
+		ScheduledFuture<?> deadline = DEADLINES.remove(auctionID);
+		if(deadline != null) deadline.cancel(false);
+	}
+	
+	/** Process the result of a closed round: notify the auctioneer, and either announce the next round or clean up the 
+	 * finished auction. Does nothing if the result is AuctionResult.WAITING. */
+	static final void processResult(final PlanToAgentInterface planInterface, final AuctioneerContext context, final UUID auctionID, final AuctionResult<?> result){
+		// Notify the auctioneer of the current status if the round was finished
+		if(result != AuctionResult.WAITING){ 
+			planInterface.addInternalTrigger(result);
+			cancelDeadline(auctionID); // The round closed
+		}
+		
+		// If an auction is finished, then remove its data
+		if(result.getType() == ResultType.FINISHED){
+			context.clearData(auctionID);
+			if(result.getTrigger().getBulletinBoard() != null)
+				result.getTrigger().getBulletinBoard().remove(auctionID);
+			// Relays can release their shards
+			for(AgentID relay : result.getTrigger().getRelays()){ 
+				AuctionMessaging.send(planInterface, relay, new RelayRelease(auctionID));
+			}
+		} else if(result.getType() == ResultType.NEWROUND){
+			// English and Dutch auctions can have multiple rounds
+			// In case of an English or Dutch auction the current price is published
+			announceRound(planInterface, result.getTrigger(), context.makeRoundAnnouncement(result, planInterface.getAgentID()), 
+					context.getRoundRespondents(auctionID));
+		} // else there are still bids to be received, so do nothing
+	}
+}
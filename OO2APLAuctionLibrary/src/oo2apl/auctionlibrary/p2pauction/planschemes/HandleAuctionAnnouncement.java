@@ -3,6 +3,7 @@ package oo2apl.auctionlibrary.p2pauction.planschemes;
 import oo2apl.agent.AgentContextInterface;
 import oo2apl.agent.PlanToAgentInterface;
 import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionMessaging;
 import oo2apl.auctionlibrary.p2pauction.BuyerContext;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
@@ -26,7 +27,7 @@ public final class HandleAuctionAnnouncement implements FunctionalPlanSchemeInte
 				ParticipantResponse participantResponse = context.registerAuction(announcement, planInterface.getAgentID()); 
 				
 				// Send the bid
-				planInterface.sendMessage(announcement.getAuctioneer(), participantResponse);
+				AuctionMessaging.send(planInterface, announcement.getAuctioneer(), participantResponse);
 			};
 		}
 		return SubPlanInterface.UNINSTANTIATED; 
@@ -0,0 +1,36 @@
+package oo2apl.auctionlibrary.p2pauction.planschemes;
+
+import oo2apl.agent.AgentContextInterface;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionMessaging;
+import oo2apl.auctionlibrary.p2pauction.BuyerContext;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.BoardWakeUp;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.plan.builtin.FunctionalPlanSchemeInterface;
+import oo2apl.plan.builtin.SubPlanInterface;
+/**
+ * This plan scheme handles for participants the wake-up of a bulletin board, by responding to all the new auction 
+ * rounds on the board as if they were announced by message. 
+ * 
+ * @author Bas Testerink
+ */
+public final class HandleBoardWakeUpScheme implements FunctionalPlanSchemeInterface { 
+	public SubPlanInterface getPlan(final Trigger trigger, final AgentContextInterface contextInterface) {
+		if(trigger instanceof BoardWakeUp){
+			BoardWakeUp wakeUp = (BoardWakeUp) trigger;
+			return (PlanToAgentInterface planInterface) -> {
+				// Get the context for decision making
+				BuyerContext context = planInterface.getContext(BuyerContext.class);
+				
+				for(AuctionAnnouncement<?> announcement : wakeUp.getBoard().takeNewAnnouncements(planInterface.getAgentID())){
+					// Get the bid for the round and send it
+					ParticipantResponse participantResponse = context.registerAuction(announcement, planInterface.getAgentID()); 
+					AuctionMessaging.send(planInterface, announcement.getAuctioneer(), participantResponse);
+				}
+			};
+		}
+		return SubPlanInterface.UNINSTANTIATED; 
+	}
+}
@@ -1,25 +1,27 @@
 package oo2apl.auctionlibrary.p2pauction.planschemes;
 
 import oo2apl.agent.AgentContextInterface;
-import oo2apl.agent.AgentID;
 import oo2apl.agent.PlanToAgentInterface;
 import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionMessaging;
 import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
-import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
 import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrderFill;
 import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
-import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
 import oo2apl.plan.builtin.FunctionalPlanSchemeInterface;
 import oo2apl.plan.builtin.SubPlanInterface;
 
 /**
- * This plan scheme deals with the received bids from participants. 
+ * This plan scheme deals with the received bids from participants, or from the relays in case of a hierarchical auction. 
+ * Only responses for auctions that the agent organizes are handled, so that a relay can also be a trader. The trades 
+ * that the orders of a double auction made are sent to the buyer and the seller. 
  * 
  * @author Bas Testerink
  */
 public final class HandleParticipantResponseScheme implements FunctionalPlanSchemeInterface { 
 	public SubPlanInterface getPlan(final Trigger trigger, final AgentContextInterface contextInterface) {
-		if(trigger instanceof ParticipantResponse){ 
+		if(trigger instanceof ParticipantResponse && 
+				contextInterface.getContext(AuctioneerContext.class).isOrganizing(((ParticipantResponse) trigger).getAuctionID())){ 
 			ParticipantResponse participantResponse = (ParticipantResponse) trigger;
 			return (PlanToAgentInterface planInterface) -> {
 				// Get the context for decision making
@@ -28,30 +30,14 @@ public final class HandleParticipantResponseScheme implements FunctionalPlanSche
 				// Make the auction data
 				AuctionResult<?> result = context.handleParticipantResponse(participantResponse);
 				
-				// Notify the auctioneer of the current status if the round was finished
-				if(result != AuctionResult.WAITING){ 
-					planInterface.addInternalTrigger(result);
+				// Send the trades of a double auction
+				for(OrderFill fill : context.takeFills(participantResponse.getAuctionID())){
+					AuctionMessaging.send(planInterface, fill.getBuyer(), fill);
+					AuctionMessaging.send(planInterface, fill.getSeller(), fill);
 				}
 				
-				// If an auction is finished, then remove its data
-				if(result.getType() == ResultType.FINISHED){
-					context.clearData(participantResponse.getAuctionID());
-				} else if(result.getType() == ResultType.NEWROUND){
-					// English and Dutch auctions can have multiple rounds
-					// In case of an English or Dutch auction the current price is published
-					AuctionAnnouncement<?> announcement = new AuctionAnnouncement<>(
-							participantResponse.getAuctionID(), 
-							planInterface.getAgentID(), 
-							result.getTrigger().getType(), 
-							result.getTrigger().getObjectForSale(), 
-							result.getPrice(),
-							result.getQuantityAvailable(),
-							result.getDecrement());
-					for(AgentID participant : result.getTrigger().getParticipants()){ 
-						planInterface.sendMessage(participant, announcement);
-					}
-					
-				} // else there are still bids to be received, so do nothing
+				// Report the result and move to the next round if the round was finished
+				AuctionRounds.processResult(planInterface, context, participantResponse.getAuctionID(), result);
 			};
 		} else return SubPlanInterface.UNINSTANTIATED;
 	}  
@@ -0,0 +1,41 @@
+package oo2apl.auctionlibrary.p2pauction.planschemes;
+
+import oo2apl.agent.AgentContextInterface;
+import oo2apl.agent.AgentID;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionMessaging;
+import oo2apl.auctionlibrary.p2pauction.RelayContext;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.RelayedAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayAnnouncement;
+import oo2apl.plan.builtin.FunctionalPlanSchemeInterface;
+import oo2apl.plan.builtin.SubPlanInterface;
+/**
+ * This plan scheme handles for relays the announcements of the auctioneer of a hierarchical auction, by announcing 
+ * the auction (round) to the relay's shard of participants. 
+ * 
+ * @author Bas Testerink
+ */
+public final class HandleRelayAnnouncementScheme implements FunctionalPlanSchemeInterface { 
+	public SubPlanInterface getPlan(final Trigger trigger, final AgentContextInterface contextInterface) {
+		if(trigger instanceof RelayAnnouncement<?>){
+			RelayAnnouncement<?> relayAnnouncement = (RelayAnnouncement<?>) trigger;
+			return (PlanToAgentInterface planInterface) -> {
+				// Get the context for decision making
+				RelayContext context = planInterface.getContext(RelayContext.class);
+				
+				// Get the shard of the auction, an announcement of an auction that is no longer relayed is ignored
+				RelayedAuction auction = context.getRelayedAuction(relayAnnouncement);
+				if(auction == null) return;
+				
+				// Announce the auction to the shard on behalf of the relay
+				AuctionAnnouncement<?> announcement = auction.relayAnnouncement(relayAnnouncement.getAnnouncement(), planInterface.getAgentID());
+				for(AgentID participant : auction.getShard()){
+					AuctionMessaging.send(planInterface, participant, announcement);
+				}
+			};
+		}
+		return SubPlanInterface.UNINSTANTIATED; 
+	}
+}
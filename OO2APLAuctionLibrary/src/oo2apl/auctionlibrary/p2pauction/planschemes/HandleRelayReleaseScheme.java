@@ -0,0 +1,25 @@
+package oo2apl.auctionlibrary.p2pauction.planschemes;
+
+import oo2apl.agent.AgentContextInterface;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.RelayContext;
+import oo2apl.auctionlibrary.p2pauction.triggers.RelayRelease;
+import oo2apl.plan.builtin.FunctionalPlanSchemeInterface;
+import oo2apl.plan.builtin.SubPlanInterface;
+/**
+ * This plan scheme removes for relays the data of a hierarchical auction that is finished. 
+ * 
+ * @author Bas Testerink
+ */
+public final class HandleRelayReleaseScheme implements FunctionalPlanSchemeInterface { 
+	public SubPlanInterface getPlan(final Trigger trigger, final AgentContextInterface contextInterface) {
+		if(trigger instanceof RelayRelease){
+			RelayRelease release = (RelayRelease) trigger;
+			return (PlanToAgentInterface planInterface) -> {
+				planInterface.getContext(RelayContext.class).clearData(release.getAuctionID());
+			};
+		}
+		return SubPlanInterface.UNINSTANTIATED; 
+	}
+}
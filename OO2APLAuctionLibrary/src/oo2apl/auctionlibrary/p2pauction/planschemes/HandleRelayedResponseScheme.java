@@ -0,0 +1,43 @@
+package oo2apl.auctionlibrary.p2pauction.planschemes;
+
+import oo2apl.agent.AgentContextInterface;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionMessaging;
+import oo2apl.auctionlibrary.p2pauction.RelayContext;
+import oo2apl.auctionlibrary.p2pauction.auctionspecifications.RelayedAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.AggregatedResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+import oo2apl.plan.builtin.FunctionalPlanSchemeInterface;
+import oo2apl.plan.builtin.SubPlanInterface;
+/**
+ * This plan scheme handles for relays the responses of the participants in their shard. Once the whole shard has 
+ * responded, the aggregated response is forwarded to the auctioneer. 
+ * 
+ * @author Bas Testerink
+ */
+public final class HandleRelayedResponseScheme implements FunctionalPlanSchemeInterface { 
+	public SubPlanInterface getPlan(final Trigger trigger, final AgentContextInterface contextInterface) {
+		if(trigger instanceof ParticipantResponse && 
+				contextInterface.getContext(RelayContext.class).isRelaying(((ParticipantResponse) trigger).getAuctionID())){
+			ParticipantResponse participantResponse = (ParticipantResponse) trigger;
+			return (PlanToAgentInterface planInterface) -> {
+				// Get the context for decision making
+				RelayContext context = planInterface.getContext(RelayContext.class);
+				RelayedAuction auction = context.getRelayedAuction(participantResponse.getAuctionID());
+				if(auction == null) return; // The auction was released in the meantime
+				
+				// Register the response and forward the aggregate if the shard is complete
+				AggregatedResponse aggregate = auction.handleParticipantResponse(participantResponse, planInterface.getAgentID());
+				if(aggregate != null){
+					AuctionMessaging.send(planInterface, auction.getAuctioneer(), aggregate);
+					// A Vickrey auction has one round, so the shard is no longer needed
+					if(auction.getType() == AuctionType.VICKREY)
+						context.clearData(auction.getAuctionID());
+				}
+			};
+		}
+		return SubPlanInterface.UNINSTANTIATED; 
+	}
+}
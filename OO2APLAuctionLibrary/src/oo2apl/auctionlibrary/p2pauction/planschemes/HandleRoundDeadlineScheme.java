@@ -0,0 +1,35 @@
+package oo2apl.auctionlibrary.p2pauction.planschemes;
+
+import oo2apl.agent.AgentContextInterface;
+import oo2apl.agent.PlanToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.RoundDeadline;
+import oo2apl.plan.builtin.FunctionalPlanSchemeInterface;
+import oo2apl.plan.builtin.SubPlanInterface;
+/**
+ * This plan scheme closes the round of an auction when its deadline has passed, unless the round was already closed. 
+ * The deadlines are given to the auctioneer as external triggers by the timer of the deadlines. 
+ * 
+ * @author Bas Testerink
+ */
+public final class HandleRoundDeadlineScheme implements FunctionalPlanSchemeInterface { 
+	public SubPlanInterface getPlan(final Trigger trigger, final AgentContextInterface contextInterface) {
+		if(trigger instanceof RoundDeadline){ 
+			RoundDeadline deadline = (RoundDeadline) trigger;
+			return (PlanToAgentInterface planInterface) -> {
+				// Get the context for decision making
+				AuctioneerContext context = planInterface.getContext(AuctioneerContext.class);
+				
+				// Close the round with the responses that arrived
+				AuctionResult<?> result = context.handleRoundDeadline(deadline.getAuctionID(), deadline.getRound());
+				
+				// Report the result and move to the next round if the round was closed by the deadline
+				AuctionRounds.processResult(planInterface, context, deadline.getAuctionID(), result);
+				// Forget the deadline of an auction that was cleared in the meantime
+				if(!context.isOrganizing(deadline.getAuctionID())) AuctionRounds.cancelDeadline(deadline.getAuctionID());
+			};
+		} else return SubPlanInterface.UNINSTANTIATED;
+	}  
+}
@@ -1,7 +1,8 @@
 package oo2apl.auctionlibrary.p2pauction.planschemes;
  
+import java.util.UUID;
+
 import oo2apl.agent.AgentContextInterface;
-import oo2apl.agent.AgentID;
 import oo2apl.agent.PlanToAgentInterface;
 import oo2apl.agent.Trigger;
 import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
@@ -22,14 +23,25 @@ public final class OrganizeAuctionScheme implements FunctionalPlanSchemeInterfac
 				// Get the context for decision making
 				AuctioneerContext context = planInterface.getContext(AuctioneerContext.class);
 				
+				// Fail before the auction is registered and announced if its deadlines cannot be kept
+				AuctionRounds.checkDeadline(planInterface, organize);
+				
 				// Make the auction data
 				AuctionAnnouncement<?> announcement = context.newAuction(organize, planInterface.getAgentID());
 				 
 				// Announce the auction to the participants
-				for(AgentID participant : organize.getParticipants()){ 
-					planInterface.sendMessage(participant, announcement); 
-				}
+				AuctionRounds.announceRound(planInterface, organize, announcement, organize.getParticipants());
 			};
 		} else return SubPlanInterface.UNINSTANTIATED;
 	} 
+	
+	/** Continue an auction that was recovered from the journal: report it if it finished before the crash, otherwise announce 
+	 * its current round again to the respondents that did not respond yet. Does nothing if the auction was already continued. */
+	public static final void resumeAuction(final PlanToAgentInterface planInterface, final UUID auctionID){
+		AuctioneerContext context = planInterface.getContext(AuctioneerContext.class);
+		OrganizeAuction<?> trigger = context.getTrigger(auctionID);
+		if(trigger != null) AuctionRounds.checkDeadline(planInterface, trigger); // Before the recovery is taken
+		AuctioneerContext.Recovery recovery = context.takeRecovery(auctionID);
+		if(recovery != null) AuctionRounds.resumeRound(planInterface, context, auctionID, recovery);
+	}
 }
@@ -0,0 +1,375 @@
+package oo2apl.auctionlibrary.p2pauction.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.ExternalProcessToAgentInterface;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.codec.AgentIDCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.AuctionMessageCodec;
+import oo2apl.auctionlibrary.p2pauction.codec.ItemCodec;
+/**
+ * A gateway that carries auction messages between JVMs over TCP, so that auctioneers, relays and bidders can run on
+ * different nodes. Each node runs one gateway. The gateway knows on which node every remote agent lives (its route
+ * table) and which agents live on its own node.
+ *
+ * Sending a message to a remote agent encodes it with the AuctionMessageCodec in the outgoing buffer of the connection
+ * to the agent's node. A single non-blocking I/O thread writes these buffers, so all messages that are sent while the
+ * previous write is in progress go out in a single write: small messages are batched per connection without waiting
+ * for a timer. Received messages are delivered to the local agents as external triggers.
+ *
+ * A frame on the wire is the length of the frame (4 bytes), the recipient (agent codec) and the message (message codec).
+ * Connections are opened on first use. Messages for unknown local agents are dropped. A connection that receives a
+ * frame that cannot be decoded, or of which the length is not between 1 and the maximal frame size, is closed. A
+ * connection that fails is dropped together with the messages in its buffers, the next message to its node opens a new
+ * connection.
+ *
+ * @author Bas Testerink
+ * @param <T>
+ */
+public final class AuctionGateway<T> implements Closeable {
+	private final static int INITIAL_BUFFER_SIZE = 1 << 16;
+	private volatile int maxFrameSize = 1 << 26;
+	private final InetSocketAddress bindAddress;
+	private final AuctionMessageCodec<T> codec;
+	private final AgentIDCodec agentCodec;
+	private final ConcurrentMap<AgentID, InetSocketAddress> routes;
+	private final ConcurrentMap<AgentID, Consumer<Trigger>> localAgents;
+	private final ConcurrentMap<InetSocketAddress, Connection> connections;
+	private final Queue<Connection> dirty; // Connections with new outgoing data
+	private final AtomicLong sentMessages, receivedMessages, droppedMessages, writes, failedConnections;
+	private volatile boolean running;
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread ioThread;
+
+	/**
+	 * @param bindAddress The address on which the gateway accepts connections of other nodes.
+	 * @param itemCodec Codec for the items that are auctioned.
+	 * @param agentCodec Codec for agent identifiers, which must resolve the same agents on all nodes.
+	 */
+	public AuctionGateway(final InetSocketAddress bindAddress, final ItemCodec<T> itemCodec, final AgentIDCodec agentCodec){
+		this.bindAddress = bindAddress;
+		this.codec = new AuctionMessageCodec<>(itemCodec, agentCodec);
+		this.agentCodec = agentCodec;
+		this.routes = new ConcurrentHashMap<>();
+		this.localAgents = new ConcurrentHashMap<>();
+		this.connections = new ConcurrentHashMap<>();
+		this.dirty = new ConcurrentLinkedQueue<>();
+		this.sentMessages = new AtomicLong();
+		this.receivedMessages = new AtomicLong();
+		this.droppedMessages = new AtomicLong();
+		this.writes = new AtomicLong();
+		this.failedConnections = new AtomicLong();
+	}
+
+	/** Set the maximal length in bytes of a received frame (default 64MB), longer frames close their connection. */
+	public final AuctionGateway<T> setMaxFrameSize(final int maxFrameSize){
+		if(maxFrameSize <= 0 || maxFrameSize > (1 << 30) - 4) throw new IllegalArgumentException("The maximal frame size must be between 1 and 2^30-4 bytes.");
+		this.maxFrameSize = maxFrameSize;
+		return this;
+	}
+
+	/** Open the server socket and start the I/O thread. */
+	public final AuctionGateway<T> start() throws IOException {
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.bind(this.bindAddress);
+		this.server.configureBlocking(false);
+		this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+		this.running = true;
+		this.ioThread = new Thread(this::run, "auction-gateway-"+getLocalAddress().getPort());
+		this.ioThread.setDaemon(true);
+		this.ioThread.start();
+		return this;
+	}
+
+	/** The address on which the gateway accepts connections, which has the actual port if port 0 was bound. */
+	public final InetSocketAddress getLocalAddress(){
+		try {
+			return this.server == null ? this.bindAddress : (InetSocketAddress) this.server.getLocalAddress();
+		} catch(IOException e){
+			return this.bindAddress;
+		}
+	}
+
+	/** Register that the agent lives on the node of the gateway with the given address. */
+	public final AuctionGateway<T> addRoute(final AgentID agent, final InetSocketAddress node){
+		this.routes.put(agent, node);
+		return this;
+	}
+
+	/** Register that the agents live on the node of the gateway with the given address. */
+	public final AuctionGateway<T> addRoutes(final List<AgentID> agents, final InetSocketAddress node){
+		for(AgentID agent : agents) this.routes.put(agent, node);
+		return this;
+	}
+
+	/** Register a local agent, to which received messages are delivered as external triggers. The agent must have
+	 * included the GatewayCapability so that it handles these triggers. */
+	public final AuctionGateway<T> registerLocalAgent(final ExternalProcessToAgentInterface agent){
+		return registerLocalAgent(agent.getAgentID(), agent::addExternalTrigger);
+	}
+
+	/** Register a local recipient of messages with the function that delivers messages to it. */
+	public final AuctionGateway<T> registerLocalAgent(final AgentID agent, final Consumer<Trigger> delivery){
+		this.localAgents.put(agent, delivery);
+		return this;
+	}
+
+	/** Whether the agent lives on another node. */
+	public final boolean isRemote(final AgentID agent){
+		return this.routes.containsKey(agent);
+	}
+
+	/** Send the message to a remote agent. Returns false if the agent is not remote, in which case nothing is sent. A
+	 * message that the codecs cannot encode throws their exception, without affecting the other messages. */
+	public final boolean send(final AgentID recipient, final Trigger message){
+		InetSocketAddress node = this.routes.get(recipient);
+		if(node == null) return false;
+		Connection connection = this.connections.computeIfAbsent(node, Connection::new);
+		connection.append(recipient, message, this.agentCodec, this.codec);
+		this.sentMessages.incrementAndGet();
+		// Only wake the I/O thread if the connection is not already waiting to be flushed
+		if(connection.scheduled.compareAndSet(false, true)){
+			this.dirty.add(connection);
+			this.selector.wakeup();
+		}
+		return true;
+	}
+
+	public final long getSentMessages(){ return this.sentMessages.get(); }
+	public final long getReceivedMessages(){ return this.receivedMessages.get(); }
+	/** The amount of received messages for agents that are not registered as local agents. */
+	public final long getDroppedMessages(){ return this.droppedMessages.get(); }
+	/** The amount of socket writes, which is lower than the amount of sent messages when messages are batched. */
+	public final long getWrites(){ return this.writes.get(); }
+	/** The amount of connections that were closed because they failed, e.g. because they were lost or received a malformed frame. */
+	public final long getFailedConnections(){ return this.failedConnections.get(); }
+
+	/** Stop the I/O thread and close all connections. */
+	public final void close() throws IOException {
+		this.running = false;
+		if(this.selector != null) this.selector.wakeup();
+		try {
+			if(this.ioThread != null) this.ioThread.join(1000);
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		for(Connection connection : this.connections.values())
+			if(connection.channel != null) connection.channel.close();
+		if(this.server != null) this.server.close();
+		if(this.selector != null) this.selector.close();
+	}
+
+	/** The I/O loop: flush the connections with new data and handle the ready channels. */
+	private final void run(){
+		while(this.running){
+			try {
+				this.selector.select();
+				Connection connection;
+				while((connection = this.dirty.poll()) != null){
+					connection.scheduled.set(false);
+					try {
+						flush(connection);
+					} catch(IOException | RuntimeException e){
+						// Only this connection is lost, the other dirty connections are still flushed
+						closeConnection(connection);
+					}
+				}
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while(keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					if(!key.isValid()) continue;
+					if(key.isAcceptable()) accept();
+					else {
+						Connection owner = (Connection) key.attachment();
+						try {
+							if(key.isConnectable() && owner.channel.finishConnect()){
+								owner.connected = true;
+								key.interestOps(SelectionKey.OP_READ);
+								flush(owner);
+							}
+							if(key.isValid() && key.isReadable()) read(owner);
+							if(key.isValid() && key.isWritable()) flush(owner);
+						} catch(IOException | RuntimeException e){
+							// The connection is lost or corrupt, the messages in its buffers are lost as well
+							closeConnection(owner);
+						}
+					}
+				}
+			} catch(IOException e){
+				// A failed select or accept does not affect the connections, the next pass tries again
+			}
+		}
+	}
+
+	/** Close the failed connection and remove it, so that the next message to its node opens a new connection. */
+	private final void closeConnection(final Connection connection){
+		if(connection.closed) return;
+		connection.closed = true;
+		this.failedConnections.incrementAndGet();
+		if(connection.node != null) this.connections.remove(connection.node, connection);
+		if(connection.channel == null) return;
+		SelectionKey key = connection.channel.keyFor(this.selector);
+		if(key != null) key.cancel();
+		try {
+			connection.channel.close();
+		} catch(IOException e){
+			// The channel is discarded anyway
+		}
+	}
+
+	private final void accept() throws IOException {
+		SocketChannel channel = this.server.accept();
+		if(channel == null) return;
+		channel.configureBlocking(false);
+		channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+		Connection connection = new Connection(null);
+		connection.channel = channel;
+		connection.connected = true;
+		channel.register(this.selector, SelectionKey.OP_READ, connection);
+	}
+
+	/** Write the outgoing data of the connection, opening the connection first if needed. */
+	private final void flush(final Connection connection) throws IOException {
+		if(connection.closed) return; // A sender appended to the connection before it was removed
+		if(connection.channel == null){
+			SocketChannel channel = SocketChannel.open();
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+				if(channel.connect(connection.node)) connection.connected = true;
+				channel.register(this.selector, connection.connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connection);
+			} catch(IOException | RuntimeException e){
+				channel.close(); // The caller removes the connection
+				throw e;
+			}
+			connection.channel = channel;
+		}
+		if(!connection.connected) return; // Flushed once connected
+		SelectionKey key = connection.channel.keyFor(this.selector);
+		while(true){
+			if(!connection.writing.hasRemaining() && !connection.swap()){
+				key.interestOps(SelectionKey.OP_READ); // Nothing left to write
+				return;
+			}
+			connection.channel.write(connection.writing);
+			this.writes.incrementAndGet();
+			if(connection.writing.hasRemaining()){
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE); // Continue when the socket is writable
+				return;
+			}
+		}
+	}
+
+	/** Read from the connection and deliver all complete frames. */
+	private final void read(final Connection connection) throws IOException {
+		if(connection.channel.read(connection.reading) < 0) throw new ClosedChannelException();
+		ByteBuffer buffer = connection.reading;
+		buffer.flip();
+		while(buffer.remaining() >= 4){
+			int length = buffer.getInt(buffer.position());
+			if(length <= 0 || length > this.maxFrameSize) throw new IOException("Invalid frame length "+length);
+			if(buffer.remaining() < 4 + length) break;
+			int end = buffer.position() + 4 + length;
+			buffer.position(buffer.position() + 4);
+			ByteBuffer frame = buffer.slice();
+			frame.limit(length);
+			AgentID recipient = this.agentCodec.read(frame);
+			Trigger message = this.codec.decode(frame);
+			if(frame.hasRemaining()) throw new IOException("Frame of "+length+" bytes has "+frame.remaining()+" undecoded bytes");
+			deliver(recipient, message);
+			buffer.position(end);
+		}
+		buffer.compact();
+		// Make room for a frame that does not fit in the buffer
+		if(buffer.position() >= 4 && buffer.getInt(0) + 4 > buffer.capacity()){ // The length was validated above
+			ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(buffer.getInt(0) + 4) << 1);
+			buffer.flip();
+			larger.put(buffer);
+			connection.reading = larger;
+		}
+	}
+
+	private final void deliver(final AgentID recipient, final Trigger message){
+		this.receivedMessages.incrementAndGet();
+		Consumer<Trigger> delivery = this.localAgents.get(recipient);
+		if(delivery == null) this.droppedMessages.incrementAndGet();
+		else delivery.accept(message);
+	}
+
+	/** A connection with the buffers of its outgoing and incoming data. */
+	private static final class Connection {
+		private final InetSocketAddress node; // The remote node, null for accepted connections
+		private final AtomicBoolean scheduled;
+		private SocketChannel channel;
+		private boolean connected, closed; // Only accessed by the I/O thread
+		private ByteBuffer pending; // Frames that are appended by senders, guarded by this connection
+		private ByteBuffer writing; // Frames that are being written by the I/O thread
+		private ByteBuffer reading;
+
+		private Connection(final InetSocketAddress node){
+			this.node = node;
+			this.scheduled = new AtomicBoolean(false);
+			this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+			this.writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+			this.writing.flip();
+			this.reading = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		}
+
+		/** Encode a frame for the recipient at the end of the pending buffer, the buffer grows if the frame does not fit. */
+		private final synchronized void append(final AgentID recipient, final Trigger message, final AgentIDCodec agentCodec, final AuctionMessageCodec<?> codec){
+			while(true){
+				int start = this.pending.position();
+				try {
+					this.pending.putInt(0); // Length, filled in below
+					agentCodec.write(recipient, this.pending);
+					codec.encode(message, this.pending);
+					this.pending.putInt(start, this.pending.position() - start - 4);
+					return;
+				} catch(BufferOverflowException e){
+					this.pending.position(start);
+					ByteBuffer larger = ByteBuffer.allocate(this.pending.capacity() << 1);
+					this.pending.flip();
+					larger.put(this.pending);
+					this.pending = larger;
+				} catch(RuntimeException e){
+					// Drop the partial frame, otherwise its zero length corrupts all later frames of the connection
+					this.pending.position(start);
+					throw e;
+				}
+			}
+		}
+
+		/** Make the pending frames the frames to write. Returns false if there are no pending frames. */
+		private final synchronized boolean swap(){
+			if(this.pending.position() == 0) return false;
+			ByteBuffer written = this.writing;
+			this.writing = this.pending;
+			this.writing.flip();
+			written.clear();
+			this.pending = written;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package oo2apl.auctionlibrary.p2pauction.transport;
+
+import oo2apl.agent.AgentBuilder;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleAuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleParticipantResponseScheme;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRelayAnnouncementScheme;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRelayReleaseScheme;
+import oo2apl.auctionlibrary.p2pauction.planschemes.HandleRelayedResponseScheme;
+/**
+ * An agent builder that connects an agent to the gateway of its node, so that it can take part in auctions with agents 
+ * on other nodes. Include it next to the TraderCapability (and the RelayCapability for relays), e.g. 
+ * x.include(new TraderCapability()).include(new GatewayCapability(gateway)), and register the created agent with 
+ * gateway.registerLocalAgent. 
+ * 
+ * The auction plans send messages to remote agents through the gateway. The gateway delivers messages from other nodes 
+ * as external triggers, hence this capability adds the auction message plan schemes also as external trigger plan schemes. 
+ * 
+ * @author Bas Testerink
+ */
+public final class GatewayCapability extends AgentBuilder {
+	
+	public GatewayCapability(final AuctionGateway<?> gateway){
+		super.addContext(new GatewayContext(gateway));
+		super.addExternalTriggerPlanScheme(new HandleAuctionAnnouncement());
+		super.addExternalTriggerPlanScheme(new HandleParticipantResponseScheme());
+	}
+	
+	/** Also handle the relay messages of hierarchical auctions that arrive from other nodes. Requires the RelayCapability. */
+	public final GatewayCapability withRelaySchemes(){
+		super.addExternalTriggerPlanScheme(new HandleRelayAnnouncementScheme());
+		super.addExternalTriggerPlanScheme(new HandleRelayedResponseScheme());
+		super.addExternalTriggerPlanScheme(new HandleRelayReleaseScheme());
+		return this;
+	}
+}
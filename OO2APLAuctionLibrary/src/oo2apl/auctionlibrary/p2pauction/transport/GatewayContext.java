@@ -0,0 +1,25 @@
+package oo2apl.auctionlibrary.p2pauction.transport;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.Context;
+import oo2apl.agent.Trigger;
+/**
+ * Context that gives the auction plans of an agent access to the gateway of its node, such that messages to agents 
+ * on other nodes are sent through the gateway. See AuctionMessaging.send. 
+ * 
+ * @author Bas Testerink
+ */
+public final class GatewayContext implements Context {
+	private final AuctionGateway<?> gateway;
+	
+	public GatewayContext(final AuctionGateway<?> gateway){
+		this.gateway = gateway;
+	}
+	
+	public final AuctionGateway<?> getGateway(){ return this.gateway; }
+	
+	/** Send the message through the gateway if the recipient is remote. Returns false if the recipient is local. */
+	public final boolean route(final AgentID recipient, final Trigger message){
+		return this.gateway.send(recipient, message);
+	}
+}
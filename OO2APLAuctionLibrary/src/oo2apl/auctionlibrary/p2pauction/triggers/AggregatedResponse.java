@@ -0,0 +1,32 @@
+package oo2apl.auctionlibrary.p2pauction.triggers;
+
+import java.util.List;
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.Bid;
+/**
+ * The response of a relay in a hierarchical auction. It contains the bids of the relay's shard that can still matter 
+ * for the outcome of the auction, on behalf of the bidders in the shard. Besides the bids, the response tells how many 
+ * bids were accepted in the shard this round, because in an English auction a shard can be active without changing 
+ * its competitive bids. 
+ * 
+ * @author Bas Testerink
+ */
+public class AggregatedResponse extends ParticipantResponse {
+	private final int activity;
+	
+	/**
+	 * @param auction The auction to which the response belongs.
+	 * @param relay The relay that aggregated the responses of its shard.
+	 * @param bids The competitive bids of the shard.
+	 * @param activity The amount of bids that were accepted in the shard this round. 
+	 * @param round The round to which the shard responded. 
+	 */
+	public AggregatedResponse(final UUID auction, final AgentID relay, final List<Bid> bids, final int activity, final int round){
+		super(auction, relay, bids, round);
+		this.activity = activity;
+	}
+	
+	public final int getActivity(){ return this.activity; }
+}
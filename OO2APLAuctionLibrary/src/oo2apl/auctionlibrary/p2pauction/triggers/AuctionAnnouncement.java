@@ -19,6 +19,7 @@ public class AuctionAnnouncement<T> implements Trigger {
 	private final double price;  
 	private final double decrement;  
 	private final int quantityAvailable; 
+	private final int round;
 	
 	/** 
 	 * @param auctionID Used by auctioneer to identify the auction to which a bid was made. Use this ID when replying to this trigger.
@@ -29,6 +30,15 @@ public class AuctionAnnouncement<T> implements Trigger {
 	 * @param quantityAvailable The amount of units that are for sale. 
 	 */
 	public AuctionAnnouncement(final UUID auctionID, final AgentID auctioneer, final AuctionType type, final T itemForSale, final double price, final int quantityAvailable, final double decrement){
+		this(auctionID, auctioneer, type, itemForSale, price, quantityAvailable, decrement, 0);
+	}
+	
+	/** 
+	 * Announcement of the given round of an auction, the other parameters are as in the other constructor.
+	 * @param round The number of the round, starting at 0. Participants copy it into their response so that the auctioneer 
+	 * can ignore responses that arrive after their round was closed. 
+	 */
+	public AuctionAnnouncement(final UUID auctionID, final AgentID auctioneer, final AuctionType type, final T itemForSale, final double price, final int quantityAvailable, final double decrement, final int round){
 		this.auctionID = auctionID;
 		this.auctioneer = auctioneer;
 		this.type = type;
@@ -36,6 +46,7 @@ public class AuctionAnnouncement<T> implements Trigger {
 		this.price = price;
 		this.quantityAvailable = quantityAvailable;
 		this.decrement = decrement;
+		this.round = round;
 	}
 	
 	public final AuctionType getType(){ return this.type; } 
@@ -45,4 +56,5 @@ public class AuctionAnnouncement<T> implements Trigger {
 	public final double getPrice(){ return this.price; }  
 	public final int getQuantityAvailable(){ return this.quantityAvailable; }  
 	public final double getDecrement(){ return this.decrement; }  
+	public final int getRound(){ return this.round; }  
 }
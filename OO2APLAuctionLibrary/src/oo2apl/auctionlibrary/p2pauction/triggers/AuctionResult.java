@@ -1,13 +1,17 @@
 package oo2apl.auctionlibrary.p2pauction.triggers;
  
+import java.util.Collections;
 import java.util.List; 
 import java.util.UUID;
 
 import oo2apl.agent.Trigger;
 import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
 import oo2apl.auctionlibrary.p2pauction.Bid;
+import oo2apl.auctionlibrary.p2pauction.RoundSummary;
 /**
  * A container that is used to report on the progress of an auction; either its final results or the inbetween results if a new round is entered. 
+ * The report of a new round only contains the bids that changed during the round, i.e. the new bids and the bids that they replaced, 
+ * together with a summary over all current bids. Use an AuctionBookView to reconstruct all the current bids from the reports. 
  * @author Bas Testerink
  * @param <T>
  */
@@ -22,6 +26,8 @@ public final class AuctionResult<T> implements Trigger {
 	private final List<Bid> bids;
 	private final double price, decrement;
 	private final int quantityAvailable;  
+	private final List<Bid> removedBids;
+	private final RoundSummary summary;
 
 	/**
 	 * 
@@ -33,6 +39,16 @@ public final class AuctionResult<T> implements Trigger {
 	 * @param quantityAvailable The amount of units that are still left over. 
 	 */
 	public AuctionResult(final UUID auctionID, final ResultType type, final OrganizeAuction<T> trigger, final List<AuctionPersonalResult> personalResults, final List<Bid> bids, final double price, final int quantityAvailable, final double decrement){
+		this(auctionID, type, trigger, personalResults, bids, price, quantityAvailable, decrement, Collections.emptyList(), null);
+	}
+	
+	/**
+	 * Report of a round, the other parameters are as in the other constructor.
+	 * @param removedBids The bids that were replaced during the round. 
+	 * @param summary The summary over all current bids, may be null. 
+	 */
+	public AuctionResult(final UUID auctionID, final ResultType type, final OrganizeAuction<T> trigger, final List<AuctionPersonalResult> personalResults, final List<Bid> bids, final double price, final int quantityAvailable, final double decrement, 
+			final List<Bid> removedBids, final RoundSummary summary){
 		this.auctionID = auctionID;
 		this.type = type;
 		this.trigger = trigger;
@@ -41,6 +57,8 @@ public final class AuctionResult<T> implements Trigger {
 		this.price = price;
 		this.quantityAvailable = quantityAvailable;
 		this.decrement = decrement;
+		this.removedBids = removedBids;
+		this.summary = summary;
 	}
 
 	public final UUID getAuctionID(){ return this.auctionID; }
@@ -51,4 +69,7 @@ public final class AuctionResult<T> implements Trigger {
 	public final double getPrice(){ return this.price; }
 	public final int getQuantityAvailable(){ return this.quantityAvailable; }   
 	public final double getDecrement(){ return this.decrement; }
+	/** The bids that were replaced during the round, these are no longer current. */
+	public final List<Bid> getRemovedBids(){ return this.removedBids; }
+	public final RoundSummary getSummary(){ return this.summary; }
 }
@@ -0,0 +1,19 @@
+package oo2apl.auctionlibrary.p2pauction.triggers;
+
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionBulletinBoard;
+/**
+ * Message that wakes up a participant because new auction rounds were published on a bulletin board. The message 
+ * only refers to the board; the participant reads the new rounds from the board itself. 
+ * 
+ * @author Bas Testerink
+ */
+public class BoardWakeUp implements Trigger {
+	private final AuctionBulletinBoard board;
+	
+	public BoardWakeUp(final AuctionBulletinBoard board){
+		this.board = board;
+	}
+	
+	public final AuctionBulletinBoard getBoard(){ return this.board; }
+}
@@ -0,0 +1,36 @@
+package oo2apl.auctionlibrary.p2pauction.triggers;
+
+import java.util.UUID;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.LimitOrder;
+/**
+ * A trade in a double auction: a quantity of the buy order and the sell order were matched at the price of the order 
+ * that rested in the book. The auctioneer sends the fill to the buyer and to the seller. 
+ * 
+ * @author Bas Testerink
+ */
+public class OrderFill implements Trigger {
+	private final UUID auctionID;
+	private final LimitOrder buyOrder, sellOrder;
+	private final double price;
+	private final int quantity;
+	
+	public OrderFill(final UUID auctionID, final LimitOrder buyOrder, final LimitOrder sellOrder, final double price, final int quantity){
+		this.auctionID = auctionID;
+		this.buyOrder = buyOrder;
+		this.sellOrder = sellOrder;
+		this.price = price;
+		this.quantity = quantity;
+	}
+	
+	public final UUID getAuctionID(){ return this.auctionID; }
+	public final LimitOrder getBuyOrder(){ return this.buyOrder; }
+	public final LimitOrder getSellOrder(){ return this.sellOrder; }
+	public final AgentID getBuyer(){ return this.buyOrder.getBidder(); }
+	public final AgentID getSeller(){ return this.sellOrder.getBidder(); }
+	/** The price per unit of the trade. */
+	public final double getPrice(){ return this.price; }
+	public final int getQuantity(){ return this.quantity; }
+}
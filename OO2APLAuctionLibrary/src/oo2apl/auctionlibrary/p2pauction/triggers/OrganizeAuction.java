@@ -1,17 +1,26 @@
 package oo2apl.auctionlibrary.p2pauction.triggers;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import oo2apl.agent.AgentID;
 import oo2apl.agent.Trigger;
+import oo2apl.auctionlibrary.p2pauction.AuctionBulletinBoard;
 /**
  * This trigger represents that the agent wants to organize an auction. It can be adopted for instance as an internal trigger which then fires the 
  * organizing plan schemes that take care of the auction itself.
  * 
+ * Besides the mandatory parameters of the constructor, an auction can be configured with optional settings. These are set 
+ * on the trigger with the setXXXX methods, which return the trigger itself so that they can be chained. 
+ * 
  * @author Bas Testerink
  */
 public class OrganizeAuction<T> implements Trigger {
-	public static enum AuctionType {VICKREY, ENGLISH, DUTCH};  
+	/** The types of auctions. A MULTILOT auction sells the lots of a MultiLotSale, which is then the object for sale. A DOUBLE 
+	 * auction is a continuous market where the participants trade the object with limit orders. A CALL auction collects limit 
+	 * orders during a window and clears them at one uniform price. */
+	public static enum AuctionType {VICKREY, ENGLISH, DUTCH, MULTILOT, DOUBLE, CALL};  
 	private final AuctionType type;
 	private final T objectForSale;
 	private final List<AgentID> participants;  
@@ -19,6 +28,13 @@ public class OrganizeAuction<T> implements Trigger {
 	private final double maximalPrice; // For Dutch auction
 	private final double decrementPerRound; // For Dutch auction
 	private final int quantity; // Available quantity 
+	private boolean streamingClearing = false; // For Vickrey auction
+	private boolean retainAllBids = true; // For Vickrey auction
+	private boolean clockSkipping = false; // For Dutch auction
+	private boolean proxyBidding = false; // For English auction
+	private List<AgentID> relays = Collections.emptyList(); // For hierarchical auctions
+	private long roundDeadline = 0; // Milliseconds per round, 0 if rounds wait for all responses
+	private AuctionBulletinBoard bulletinBoard = null; // Board for announcements, null if announcements are sent as messages
 	
 	public OrganizeAuction(final AuctionType type, final T objectForSale, final List<AgentID> participants, final double minimalPrice,
 			final double maximalPrice, final double decrementPerRound, final int quantity){
@@ -38,5 +54,90 @@ public class OrganizeAuction<T> implements Trigger {
 	public final double getMaximalPrice(){ return this.maximalPrice; }
 	public final double getDecrementPerRound(){ return this.decrementPerRound; }
 	public final int getQuantity(){ return this.quantity; } 
+	public final boolean isStreamingClearing(){ return this.streamingClearing; }
+	public final boolean isRetainingAllBids(){ return this.retainAllBids; }
+	public final boolean isClockSkipping(){ return this.clockSkipping; }
+	public final boolean isProxyBidding(){ return this.proxyBidding; }
+	public final List<AgentID> getRelays(){ return this.relays; }
+	public final boolean isHierarchical(){ return !this.relays.isEmpty(); }
+	public final long getRoundDeadline(){ return this.roundDeadline; }
+	public final boolean hasRoundDeadline(){ return this.roundDeadline > 0; }
+	public final AuctionBulletinBoard getBulletinBoard(){ return this.bulletinBoard; }
+	/** The agents from which the auctioneer receives responses: the relays if the auction is hierarchical and otherwise the participants. */
+	public final List<AgentID> getRespondents(){ return isHierarchical() ? this.relays : this.participants; }
+	
+	/** Run the auction hierarchically: the participants are partitioned in shards, one per relay. Each relay announces the 
+	 * auction to its shard, collects the responses of the shard and forwards one aggregated response to the auctioneer. The 
+	 * relays must have included the RelayCapability. Only as many relays are used as there are participants, so that 
+	 * every relay has a shard that answers it. Relays cannot be combined with proxy bidding. */
+	public final OrganizeAuction<T> setRelays(final List<AgentID> relays){
+		if(this.proxyBidding && !relays.isEmpty()) throw new IllegalStateException("A hierarchical auction cannot use proxy bidding.");
+		this.relays = relays.size() > this.participants.size() ? new ArrayList<>(relays.subList(0, this.participants.size())) : relays;
+		return this;
+	}
+	
+	/** The participants that are handled by the relay with the given index. The participants are split in consecutive 
+	 * shards whose sizes differ at most one. */
+	public final List<AgentID> getShard(final int relayIndex){
+		int nrOfRelays = this.relays.size();
+		int from = (int)((long) this.participants.size() * relayIndex / nrOfRelays);
+		int to = (int)((long) this.participants.size() * (relayIndex + 1) / nrOfRelays);
+		return new ArrayList<>(this.participants.subList(from, to));
+	}
+	
+	/** Close each round at the latest the given amount of milliseconds after it was announced. The round is then closed 
+	 * with the bids that arrived, the participants that did not respond are treated as abstaining and their late 
+	 * responses are ignored. A deadline of 0 (the default) lets each round wait for all responses. In a hierarchical 
+	 * auction the deadline applies to the responses of the relays. */
+	public final OrganizeAuction<T> setRoundDeadline(final long milliseconds){
+		this.roundDeadline = milliseconds;
+		return this;
+	}
+	
+	/** Publish the rounds of the auction on the given bulletin board instead of sending an announcement to each 
+	 * participant. The participants must run in the same JVM as the auctioneer and are woken up to read the board. 
+	 * The board is not used for hierarchical auctions, where the relays announce the rounds. A board cannot be combined 
+	 * with proxy bidding. */
+	public final OrganizeAuction<T> setBulletinBoard(final AuctionBulletinBoard bulletinBoard){
+		if(this.proxyBidding && bulletinBoard != null) throw new IllegalStateException("An auction on a bulletin board cannot use proxy bidding.");
+		this.bulletinBoard = bulletinBoard;
+		return this;
+	}
+	
+	/** Let a Vickrey auction clear while the bids come in. Only the best bids that are needed to determine the winners and 
+	 * their prices are kept, so the reported bids of the result are those best bids, unless setRetainAllBids(true) is 
+	 * used after this setting. */
+	public final OrganizeAuction<T> setStreamingClearing(){
+		this.streamingClearing = true;
+		this.retainAllBids = false;
+		return this;
+	}
+	
+	/** Whether all bids above the minimal price are reported in the result of a Vickrey auction, which is the default 
+	 * unless streaming clearing is used. */
+	public final OrganizeAuction<T> setRetainAllBids(final boolean retainAllBids){
+		this.retainAllBids = retainAllBids;
+		return this;
+	}
+	
+	/** Let the clock of a Dutch auction skip the prices at which nobody accepts. A participant that does not accept declares 
+	 * the highest price at which it would accept as the price of a bid with quantity 0 (see DutchStrategy.getAcceptancePrice), 
+	 * and the clock then drops directly to the first price at or below the highest declaration. The allocation is the same 
+	 * as with the step-by-step clock, only the rounds without acceptances are left out. */
+	public final OrganizeAuction<T> setClockSkipping(){
+		this.clockSkipping = true;
+		return this;
+	}
+	
+	/** Let an English auction treat the bids of the participants as proxies: the maximum prices up to which the auctioneer 
+	 * bids for them. After a round only the participants whose proxy is outbid are asked to respond, so that they may raise 
+	 * it. The winners and their prices are the same as when the proxies were bid directly. Hierarchical auctions and 
+	 * auctions on a bulletin board reach all participants every round, so they cannot use proxy bidding. */
+	public final OrganizeAuction<T> setProxyBidding(){
+		if(isHierarchical()) throw new IllegalStateException("A hierarchical auction cannot use proxy bidding.");
+		if(this.bulletinBoard != null) throw new IllegalStateException("An auction on a bulletin board cannot use proxy bidding.");
+		this.proxyBidding = true;
+		return this;
+	}
 	
 }
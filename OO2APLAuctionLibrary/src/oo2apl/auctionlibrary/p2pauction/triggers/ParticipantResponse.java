@@ -12,14 +12,23 @@ import oo2apl.auctionlibrary.p2pauction.Bid;
  * @author Bas Testerink
  */
 public class ParticipantResponse implements Trigger {
+	/** Round number of responses that do not specify their round, these are counted in whatever round is current. */
+	public static final int ANY_ROUND = -1;
 	private final UUID auction; // Auction in which the bid was made
 	private final AgentID bidder; // The agent that submitted the bids
 	private final List<Bid> bids; // The bids to add to the auction
+	private final int round; // The round to which the bids respond
 	
 	public ParticipantResponse(final UUID auction, final AgentID bidder, final List<Bid> bids){
+		this(auction, bidder, bids, ANY_ROUND);
+	}
+	
+	/** Response to the given round of the auction, as announced with AuctionAnnouncement.getRound(). */
+	public ParticipantResponse(final UUID auction, final AgentID bidder, final List<Bid> bids, final int round){
 		this.auction = auction;
 		this.bidder = bidder;
 		this.bids = bids; 
+		this.round = round;
 	}
 	
 	public final ParticipantResponse addBid(final double price, final int quantity){
@@ -30,6 +39,7 @@ public class ParticipantResponse implements Trigger {
 	public final UUID getAuctionID(){ return this.auction; }
 	public final AgentID getBidder(){ return this.bidder; } 
 	public final List<Bid> getBids(){ return this.bids; }
+	public final int getRound(){ return this.round; }
 	
 	
 }
@@ -0,0 +1,31 @@
+package oo2apl.auctionlibrary.p2pauction.triggers;
+
+import java.util.List;
+
+import oo2apl.agent.AgentID;
+import oo2apl.agent.Trigger;
+/**
+ * Message from the auctioneer of a hierarchical auction to one of its relays. The first message of an auction assigns 
+ * the relay its shard of participants, later messages announce new rounds to the relay, which the relay in turn 
+ * announces to its shard. 
+ * 
+ * @author Bas Testerink
+ * @param <T>
+ */
+public class RelayAnnouncement<T> implements Trigger {
+	private final AuctionAnnouncement<T> announcement;
+	private final List<AgentID> shard;
+	
+	/**
+	 * @param announcement The announcement of the auctioneer. 
+	 * @param shard The participants that the relay handles, or null if the shard was already assigned. 
+	 */
+	public RelayAnnouncement(final AuctionAnnouncement<T> announcement, final List<AgentID> shard){
+		this.announcement = announcement;
+		this.shard = shard;
+	}
+	
+	public final AuctionAnnouncement<T> getAnnouncement(){ return this.announcement; }
+	public final List<AgentID> getShard(){ return this.shard; }
+	public final boolean isAssignment(){ return this.shard != null; }
+}
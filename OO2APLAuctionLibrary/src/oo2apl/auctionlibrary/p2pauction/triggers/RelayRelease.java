@@ -0,0 +1,20 @@
+package oo2apl.auctionlibrary.p2pauction.triggers;
+
+import java.util.UUID;
+
+import oo2apl.agent.Trigger;
+/**
+ * Message from the auctioneer of a hierarchical auction to its relays that the auction is finished, such that the 
+ * relays can release the data of the auction. 
+ * 
+ * @author Bas Testerink
+ */
+public class RelayRelease implements Trigger {
+	private final UUID auctionID;
+	
+	public RelayRelease(final UUID auctionID){
+		this.auctionID = auctionID;
+	}
+	
+	public final UUID getAuctionID(){ return this.auctionID; }
+}
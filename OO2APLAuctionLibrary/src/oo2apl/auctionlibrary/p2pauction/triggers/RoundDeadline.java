@@ -0,0 +1,24 @@
+package oo2apl.auctionlibrary.p2pauction.triggers;
+
+import java.util.UUID;
+
+import oo2apl.agent.Trigger;
+/**
+ * Trigger that tells an auctioneer that the deadline of a round of one of its auctions has passed (see 
+ * OrganizeAuction.setRoundDeadline). The timer of the round deadlines gives it to the auctioneer as an external trigger, 
+ * the MarketSimulator schedules it as an event. 
+ * 
+ * @author Bas Testerink
+ */
+public class RoundDeadline implements Trigger {
+	private final UUID auctionID;
+	private final int round;
+	
+	public RoundDeadline(final UUID auctionID, final int round){
+		this.auctionID = auctionID;
+		this.round = round;
+	}
+	
+	public final UUID getAuctionID(){ return this.auctionID; }
+	public final int getRound(){ return this.round; }
+}
@@ -0,0 +1,96 @@
+package oo2apl.auctionlibrary.simulation;
+
+import java.util.Arrays;
+/**
+ * The pending events of a simulation, ordered by their time and, at the same time, by the order in which they were
+ * scheduled, so that the order of processing does not depend on anything but the schedule. The queue is a binary heap
+ * on parallel arrays, so scheduling an event costs O(log n) without allocating an entry per event.
+ *
+ * @author Bas Testerink
+ */
+final class EventQueue {
+	private double[] times;
+	private long[] sequenceNumbers;
+	private int[] targets;
+	private Object[] events;
+	private int size;
+	private long scheduled;
+
+	EventQueue(){
+		this.times = new double[1024];
+		this.sequenceNumbers = new long[1024];
+		this.targets = new int[1024];
+		this.events = new Object[1024];
+	}
+
+	/** Schedule the event for the target at the given time. */
+	final void add(final double time, final int target, final Object event){
+		if(this.size == this.times.length){
+			int capacity = this.size << 1;
+			this.times = Arrays.copyOf(this.times, capacity);
+			this.sequenceNumbers = Arrays.copyOf(this.sequenceNumbers, capacity);
+			this.targets = Arrays.copyOf(this.targets, capacity);
+			this.events = Arrays.copyOf(this.events, capacity);
+		}
+		int index = this.size++;
+		long sequenceNumber = this.scheduled++;
+		while(index > 0){ // Move the parents that come later down
+			int parent = (index - 1) >>> 1;
+			if(!isBefore(time, sequenceNumber, parent)) break;
+			move(parent, index);
+			index = parent;
+		}
+		set(index, time, sequenceNumber, target, event);
+	}
+
+	final boolean isEmpty(){ return this.size == 0; }
+
+	final int size(){ return this.size; }
+
+	/** The time of the first event, the queue must not be empty. */
+	final double peekTime(){ return this.times[0]; }
+
+	/** The target of the first event, the queue must not be empty. */
+	final int peekTarget(){ return this.targets[0]; }
+
+	/** Remove the first event and produce it, the queue must not be empty. */
+	final Object poll(){
+		Object first = this.events[0];
+		int last = --this.size;
+		double time = this.times[last];
+		long sequenceNumber = this.sequenceNumbers[last];
+		int target = this.targets[last];
+		Object event = this.events[last];
+		this.events[last] = null;
+		int index = 0;
+		while(true){ // Move the children that come earlier up
+			int child = (index << 1) + 1;
+			if(child >= last) break;
+			if(child + 1 < last && isBefore(this.times[child + 1], this.sequenceNumbers[child + 1], child)) child++;
+			if(!isBefore(this.times[child], this.sequenceNumbers[child], time, sequenceNumber)) break;
+			move(child, index);
+			index = child;
+		}
+		if(last > 0) set(index, time, sequenceNumber, target, event);
+		return first;
+	}
+
+	private final boolean isBefore(final double time, final long sequenceNumber, final int index){
+		return isBefore(time, sequenceNumber, this.times[index], this.sequenceNumbers[index]);
+	}
+
+	private static final boolean isBefore(final double time, final long sequenceNumber, final double otherTime, final long otherSequenceNumber){
+		return time < otherTime || (time == otherTime && sequenceNumber < otherSequenceNumber);
+	}
+
+	private final void move(final int from, final int to){
+		set(to, this.times[from], this.sequenceNumbers[from], this.targets[from], this.events[from]);
+	}
+
+	private final void set(final int index, final double time, final long sequenceNumber, final int target, final Object event){
+		this.times[index] = time;
+		this.sequenceNumbers[index] = sequenceNumber;
+		this.targets[index] = target;
+		this.events[index] = event;
+	}
+}
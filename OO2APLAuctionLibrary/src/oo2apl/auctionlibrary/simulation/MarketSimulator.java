@@ -0,0 +1,255 @@
+package oo2apl.auctionlibrary.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import oo2apl.agent.AgentID;
+import oo2apl.auctionlibrary.p2pauction.AuctionPersonalResult;
+import oo2apl.auctionlibrary.p2pauction.AuctioneerContext;
+import oo2apl.auctionlibrary.p2pauction.BuyerContext;
+import oo2apl.auctionlibrary.p2pauction.LotBid;
+import oo2apl.auctionlibrary.p2pauction.MultiLotSale;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionAnnouncement;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionEnded;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction;
+import oo2apl.auctionlibrary.p2pauction.triggers.ParticipantResponse;
+import oo2apl.auctionlibrary.p2pauction.triggers.RoundDeadline;
+import oo2apl.auctionlibrary.p2pauction.triggers.AuctionResult.ResultType;
+import oo2apl.auctionlibrary.p2pauction.triggers.OrganizeAuction.AuctionType;
+/**
+ * A single-threaded discrete-event simulation of an auction market, which runs the auctions of an AuctioneerContext and
+ * the strategies of BuyerContexts without agents or a platform. Time is virtual: the simulation jumps from one event to
+ * the next, so a day of market activity takes as long as processing its messages. Every message is delivered after a
+ * delay that is drawn from the message delay model (default none). Events at the same time are processed in the order
+ * in which they were scheduled, and all randomness (the delays and the auction IDs) comes from one generator with the
+ * given seed, so a simulation with the same seed, bidders and schedule produces the same results in every run.
+ *
+ * The simulation follows the plan schemes of the TraderCapability: an auction is announced to its participants, each
+ * bidder responds to an announcement with BuyerContext.registerAuction, and the auctioneer announces the next round to
+ * the respondents of the round or, when the auction finished, reports the result to the result listener and clears the
+ * auction. The round deadlines of auctions are virtual deadlines. Finished auctions are ended with an AuctionEnded for
+ * every winning bid (per lot for multi-lot auctions) and a not-won AuctionEnded for the other participants, which the
+ * bidders process with BuyerContext.updateDemands, unless this is turned off with setSendAuctionEnded.
+ *
+ * Messages for participants that are not simulated bidders are dropped. Hierarchical auctions and auctions with a
+ * bulletin board are not simulated, as their relays and board are agents and objects of a platform.
+ *
+ * @author Bas Testerink
+ */
+public final class MarketSimulator {
+	private static final int AUCTIONEER = -1;
+	private final SplittableRandom random;
+	private final AuctioneerContext auctioneerContext;
+	private final List<AgentID> bidders;
+	private final List<BuyerContext> buyerContexts;
+	private final Map<AgentID, Integer> bidderIndices;
+	private final Map<UUID, AgentID> auctioneers; // The auctioneer of each registered auction
+	private final EventQueue events;
+	private MessageDelay messageDelay = MessageDelay.constant(0);
+	private Consumer<AuctionResult<?>> resultListener = (AuctionResult<?> result) -> {};
+	private boolean sendAuctionEnded = true;
+	private int nrOfAuctioneers;
+	private double time;
+	private long processedEvents, messages, droppedMessages, finishedAuctions, fills;
+
+	/** @param seed The seed of the generator of the message delays and auction IDs. */
+	public MarketSimulator(final long seed){
+		this.random = new SplittableRandom(seed);
+		this.auctioneerContext = new AuctioneerContext();
+		this.bidders = new ArrayList<>();
+		this.buyerContexts = new ArrayList<>();
+		this.bidderIndices = new HashMap<>();
+		this.auctioneers = new HashMap<>();
+		this.events = new EventQueue();
+	}
+
+	/** Add a bidder with the given demands and strategies, produces its identifier. */
+	public final AgentID addBidder(final BuyerContext buyerContext){
+		AgentID bidder = new AgentID(new UUID(1, this.bidders.size()));
+		this.bidderIndices.put(bidder, this.bidders.size());
+		this.bidders.add(bidder);
+		this.buyerContexts.add(buyerContext);
+		return bidder;
+	}
+
+	/** Add an auctioneer, produces its identifier. All auctioneers share the auctioneer context of the simulation. */
+	public final AgentID addAuctioneer(){
+		return new AgentID(new UUID(0, this.nrOfAuctioneers++));
+	}
+
+	/** Schedule the organization of an auction by the auctioneer at the given virtual time in milliseconds. */
+	public final void schedule(final double timeMillis, final AgentID auctioneer, final OrganizeAuction<?> trigger){
+		if(trigger.isHierarchical() || trigger.getBulletinBoard() != null)
+			throw new IllegalArgumentException("Hierarchical auctions and auctions with a bulletin board are not simulated.");
+		this.events.add(Math.max(timeMillis, this.time), AUCTIONEER, new Organization(auctioneer, trigger));
+	}
+
+	/** Set the model of the delays of messages. */
+	public final MarketSimulator setMessageDelay(final MessageDelay messageDelay){
+		this.messageDelay = messageDelay;
+		return this;
+	}
+
+	/** Set the listener that receives the final results of the auctions. */
+	public final MarketSimulator setResultListener(final Consumer<AuctionResult<?>> resultListener){
+		this.resultListener = resultListener;
+		return this;
+	}
+
+	/** Set whether the participants of finished auctions receive an AuctionEnded (default true). */
+	public final MarketSimulator setSendAuctionEnded(final boolean sendAuctionEnded){
+		this.sendAuctionEnded = sendAuctionEnded;
+		return this;
+	}
+
+	/** Process all events, until no events are left. */
+	public final void run(){ runUntil(Double.POSITIVE_INFINITY); }
+
+	/** Process the events up to and including the given virtual time in milliseconds. */
+	public final void runUntil(final double timeMillis){
+		while(!this.events.isEmpty() && this.events.peekTime() <= timeMillis){
+			this.time = this.events.peekTime();
+			int target = this.events.peekTarget();
+			process(target, this.events.poll());
+			this.processedEvents++;
+		}
+		if(timeMillis != Double.POSITIVE_INFINITY) this.time = Math.max(this.time, timeMillis);
+	}
+
+	/** The virtual time in milliseconds. */
+	public final double getTime(){ return this.time; }
+	public final long getProcessedEvents(){ return this.processedEvents; }
+	public final long getMessages(){ return this.messages; }
+	/** The amount of messages for participants that are not simulated bidders. */
+	public final long getDroppedMessages(){ return this.droppedMessages; }
+	public final long getFinishedAuctions(){ return this.finishedAuctions; }
+	/** The amount of trades in double auctions. */
+	public final long getFills(){ return this.fills; }
+	public final int getPendingEvents(){ return this.events.size(); }
+	public final AuctioneerContext getAuctioneerContext(){ return this.auctioneerContext; }
+	public final List<AgentID> getBidders(){ return this.bidders; }
+
+	/** The context of the bidder, or null if it is not a simulated bidder. */
+	public final BuyerContext getBuyerContext(final AgentID bidder){
+		Integer index = this.bidderIndices.get(bidder);
+		return index == null ? null : this.buyerContexts.get(index);
+	}
+
+	private final void process(final int target, final Object event){
+		if(target == AUCTIONEER){
+			if(event instanceof Organization) organize((Organization) event);
+			else if(event instanceof ParticipantResponse){
+				ParticipantResponse response = (ParticipantResponse) event;
+				AuctionResult<?> result = this.auctioneerContext.handleParticipantResponse(response);
+				this.fills += this.auctioneerContext.takeFills(response.getAuctionID()).size(); // The traders of double auctions do not react to fills
+				processResult(response.getAuctionID(), result);
+			} else if(event instanceof RoundDeadline){
+				RoundDeadline deadline = (RoundDeadline) event;
+				processResult(deadline.getAuctionID(), this.auctioneerContext.handleRoundDeadline(deadline.getAuctionID(), deadline.getRound()));
+			}
+		} else {
+			BuyerContext buyerContext = this.buyerContexts.get(target);
+			if(event instanceof AuctionAnnouncement<?>){
+				AuctionAnnouncement<?> announcement = (AuctionAnnouncement<?>) event;
+				send(buyerContext.registerAuction(announcement, this.bidders.get(target)));
+			} else if(event instanceof AuctionEnded<?>) buyerContext.updateDemands((AuctionEnded<?>) event);
+		}
+	}
+
+	private final void organize(final Organization organization){
+		UUID auctionID = new UUID(this.random.nextLong(), this.random.nextLong());
+		while(this.auctioneerContext.isOrganizing(auctionID)) auctionID = new UUID(this.random.nextLong(), this.random.nextLong());
+		AuctionAnnouncement<?> announcement = this.auctioneerContext.newAuction(organization.trigger, organization.auctioneer, auctionID);
+		this.auctioneers.put(auctionID, organization.auctioneer);
+		announceRound(organization.trigger, announcement, organization.trigger.getParticipants());
+	}
+
+	/** Send the announcement to the participants and start the deadline of the round if the auction has one. */
+	private final void announceRound(final OrganizeAuction<?> trigger, final AuctionAnnouncement<?> announcement, final List<AgentID> participants){
+		for(AgentID participant : participants) send(participant, announcement);
+		if(trigger.hasRoundDeadline())
+			this.events.add(this.time + trigger.getRoundDeadline(), AUCTIONEER, new RoundDeadline(announcement.getAuctionID(), announcement.getRound()));
+	}
+
+	/** Announce the next round or end the finished auction, as AuctionRounds.processResult does for agents. */
+	private final void processResult(final UUID auctionID, final AuctionResult<?> result){
+		if(result.getType() == ResultType.NEWROUND){
+			AgentID auctioneer = this.auctioneers.get(auctionID);
+			announceRound(result.getTrigger(), this.auctioneerContext.makeRoundAnnouncement(result, auctioneer),
+					this.auctioneerContext.getRoundRespondents(auctionID));
+		} else if(result.getType() == ResultType.FINISHED){
+			this.auctioneerContext.clearData(auctionID);
+			this.finishedAuctions++;
+			this.resultListener.accept(result);
+			AgentID auctioneer = this.auctioneers.remove(auctionID);
+			if(this.sendAuctionEnded) endAuction(auctioneer, auctionID, result);
+		}
+	}
+
+	/** Send the winners their results and the other participants a not-won result. In a multi-lot auction this is done per 
+	 * lot, so that every participant receives the end of every lot that it did not win. */
+	private final void endAuction(final AgentID auctioneer, final UUID auctionID, final AuctionResult<?> result){
+		OrganizeAuction<?> trigger = result.getTrigger();
+		boolean multiLot = trigger.getType() == AuctionType.MULTILOT;
+		int nrOfLots = multiLot ? ((MultiLotSale<?>) trigger.getObjectForSale()).size() : 1;
+		List<Set<AgentID>> winners = new ArrayList<>(nrOfLots); // The winners per lot
+		for(int lot = 0; lot < nrOfLots; lot++) winners.add(new HashSet<>());
+		for(AuctionPersonalResult personalResult : result.getPersonalResults()){
+			if(personalResult.getBid() == null) continue;
+			int lot = multiLot && personalResult.getBid() instanceof LotBid ? ((LotBid) personalResult.getBid()).getLot() : 0;
+			winners.get(lot).add(personalResult.getBid().getBidder());
+			send(personalResult.getBid().getBidder(), makeEnded(auctionID, trigger, personalResult));
+		}
+		for(int lot = 0; lot < nrOfLots; lot++){
+			AuctionEnded<?> notWon = multiLot ? 
+					new AuctionEnded<>(AuctionPersonalResult.NOTWON, MultiLotSale.getLotAuctionID(auctionID, lot), ((MultiLotSale<?>) trigger.getObjectForSale()).getLot(lot).getItem()) :
+					new AuctionEnded<>(AuctionPersonalResult.NOTWON, auctionID, trigger.getObjectForSale());
+			for(AgentID participant : trigger.getParticipants())
+				if(!winners.get(lot).contains(participant)) send(participant, notWon);
+		}
+	}
+
+	/** The end of the auction for the winner, which concerns the lot of the bid in case of a multi-lot auction. */
+	private static final AuctionEnded<?> makeEnded(final UUID auctionID, final OrganizeAuction<?> trigger, final AuctionPersonalResult personalResult){
+		if(trigger.getType() == AuctionType.MULTILOT && personalResult.getBid() instanceof LotBid){
+			int lot = ((LotBid) personalResult.getBid()).getLot();
+			MultiLotSale<?> sale = (MultiLotSale<?>) trigger.getObjectForSale();
+			return new AuctionEnded<>(personalResult, MultiLotSale.getLotAuctionID(auctionID, lot), sale.getLot(lot).getItem());
+		}
+		return new AuctionEnded<>(personalResult, auctionID, trigger.getObjectForSale());
+	}
+
+	/** Deliver the message to the bidder after a delay, or drop it if the bidder is not simulated. */
+	private final void send(final AgentID bidder, final Object message){
+		Integer index = this.bidderIndices.get(bidder);
+		if(index == null) this.droppedMessages++;
+		else deliver(index, message);
+	}
+
+	/** Deliver the response to the auctioneer after a delay. */
+	private final void send(final ParticipantResponse response){ deliver(AUCTIONEER, response); }
+
+	private final void deliver(final int target, final Object message){
+		this.messages++;
+		this.events.add(this.time + this.messageDelay.getDelayMillis(this.random), target, message);
+	}
+
+	/** An auction that an auctioneer organizes. */
+	private static final class Organization {
+		private final AgentID auctioneer;
+		private final OrganizeAuction<?> trigger;
+
+		private Organization(final AgentID auctioneer, final OrganizeAuction<?> trigger){
+			this.auctioneer = auctioneer;
+			this.trigger = trigger;
+		}
+	}
+}
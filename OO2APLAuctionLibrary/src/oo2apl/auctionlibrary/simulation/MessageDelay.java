@@ -0,0 +1,29 @@
+package oo2apl.auctionlibrary.simulation;
+
+import java.util.SplittableRandom;
+/**
+ * The delay in virtual milliseconds of a message in a simulation. The delay is drawn from the random generator of the
+ * simulation, so that the delays are the same in every run with the same seed.
+ *
+ * @author Bas Testerink
+ */
+public interface MessageDelay {
+	/** Draw the delay of a message. */
+	public double getDelayMillis(SplittableRandom random);
+
+	/** Every message takes the given delay. */
+	public static MessageDelay constant(final double delayMillis){
+		return (SplittableRandom random) -> delayMillis;
+	}
+
+	/** Delays that are uniformly distributed between the given bounds. */
+	public static MessageDelay uniform(final double minimalMillis, final double maximalMillis){
+		return (SplittableRandom random) -> minimalMillis + random.nextDouble() * (maximalMillis - minimalMillis);
+	}
+
+	/** A fixed latency plus an exponentially distributed delay with the given mean, e.g. for messages of which most are quick
+	 * and some are queued. */
+	public static MessageDelay exponential(final double latencyMillis, final double meanMillis){
+		return (SplittableRandom random) -> latencyMillis - meanMillis * Math.log(1 - random.nextDouble());
+	}
+}